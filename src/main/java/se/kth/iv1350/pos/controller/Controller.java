@@ -1,22 +1,53 @@
 package se.kth.iv1350.pos.controller;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import se.kth.iv1350.pos.integration.AccountingRegistry;
+import se.kth.iv1350.pos.integration.BarcodeDecoder;
+import se.kth.iv1350.pos.integration.CachedDiscountRegistry;
+import se.kth.iv1350.pos.integration.CardAuthorizer;
+import se.kth.iv1350.pos.integration.CardTender;
+import se.kth.iv1350.pos.integration.CoalescingItemLookup;
 import se.kth.iv1350.pos.integration.DabaseFailureException;
-import se.kth.iv1350.pos.integration.InventoryRegistry;
+import se.kth.iv1350.pos.integration.DiscountDatabaseException;
+import se.kth.iv1350.pos.integration.GuardedInventory;
 import se.kth.iv1350.pos.integration.ItemDTO;
+import se.kth.iv1350.pos.integration.ItemLookupResult;
 import se.kth.iv1350.pos.integration.ItemNotFoundException;
 import se.kth.iv1350.pos.integration.Printer;
 import se.kth.iv1350.pos.integration.RegistryCreator;
 import se.kth.iv1350.pos.model.Amount;
 import se.kth.iv1350.pos.model.CashRegister;
+import se.kth.iv1350.pos.model.LowFloatObserver;
+import se.kth.iv1350.pos.model.PaymentDTO;
+import se.kth.iv1350.pos.model.Promotion;
+import se.kth.iv1350.pos.model.PromotionEngine;
 import se.kth.iv1350.pos.model.Receipt;
 import se.kth.iv1350.pos.model.ReceiptDTO;
 import se.kth.iv1350.pos.model.RevenueObserver;
 import se.kth.iv1350.pos.model.Sale;
+import se.kth.iv1350.pos.model.SaleDTO;
+import se.kth.iv1350.pos.model.SaleEventPublisher;
+import se.kth.iv1350.pos.model.SaleIdGenerator;
 import se.kth.iv1350.pos.model.SaleItemDTO;
+import se.kth.iv1350.pos.model.SalePool;
+import se.kth.iv1350.pos.model.Tender;
 import se.kth.iv1350.pos.util.FileLogger;
 
 /**
@@ -25,25 +56,70 @@ import se.kth.iv1350.pos.util.FileLogger;
  * between layers.
  */
 public class Controller {
-    private final InventoryRegistry inventoryRegistry;
+    private static final Duration DEFAULT_PAYMENT_COMPLETION_DEADLINE = Duration.ofSeconds(10);
+    private static final int BACKGROUND_COMPLETION_ATTEMPTS = 5;
+    private static final Duration BACKGROUND_RETRY_DELAY = Duration.ofSeconds(1);
+    private final GuardedInventory inventory;
+    private final CoalescingItemLookup itemLookup;
     private final AccountingRegistry accountingRegistry;
+    private final CardAuthorizer cardAuthorizer;
+    private final CachedDiscountRegistry discountRegistry;
     private final Printer printer;
     private final CashRegister cashRegister;
+    private final SalePool salePool;
+    private final SaleEventPublisher saleEvents = new SaleEventPublisher();
+    private final ExecutorService lookupExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService completionExecutor = Executors.newVirtualThreadPerTaskExecutor();
     private Sale currentSale;
+    private String currentCustomerId;
+    private boolean customerDiscountApplied;
+    private CompletableFuture<SaleItemDTO> pendingItems = CompletableFuture.completedFuture(null);
     private final List<RevenueObserver> revenueObservers = new ArrayList<>();
+    private Duration paymentCompletionDeadline = DEFAULT_PAYMENT_COMPLETION_DEADLINE;
+    private AtomicInteger completedSteps = new AtomicInteger();
+    private final List<PendingTender> pendingTenders = new ArrayList<>();
 
     /**
      * Creates a new <code>Controller</code> instance, with the given {@link RegistryCreator} and
-     * {@link Printer}. Also, instantiates the {@link CashRegister}.
+     * {@link Printer}, for the next register on node zero. Also, instantiates the
+     * {@link CashRegister}.
      *
      * @param registryCreator Used to get access to external systems.
      * @param printer Used to print the {@link Receipt}.
      */
     public Controller(RegistryCreator registryCreator, Printer printer) {
-        inventoryRegistry = registryCreator.getInventoryRegistry();
+        this(registryCreator, printer, SaleIdGenerator.forNextRegister(0));
+    }
+
+    /**
+     * Creates a new <code>Controller</code> instance, with the given {@link RegistryCreator} and
+     * {@link Printer}. Also, instantiates the {@link CashRegister}.
+     *
+     * @param registryCreator Used to get access to external systems.
+     * @param printer Used to print the {@link Receipt}.
+     * @param saleIdGenerator Creates the ID of every sale started by this controller.
+     */
+    public Controller(RegistryCreator registryCreator, Printer printer,
+            SaleIdGenerator saleIdGenerator) {
+        inventory = registryCreator.getGuardedInventory();
+        itemLookup = registryCreator.getItemLookup();
         accountingRegistry = registryCreator.getAccountingRegistry();
+        cardAuthorizer = registryCreator.getCardAuthorizer();
+        discountRegistry = registryCreator.getDiscountRegistry();
         this.printer = printer;
         this.cashRegister = new CashRegister();
+        this.salePool = new SalePool(cashRegister, saleIdGenerator, revenueObservers);
+        revenueObservers.add(saleEvents);
+    }
+
+    /**
+     * Gets the publisher of item and sale events from this controller. Subscribers receive events
+     * as fast as they request them, without slowing down the register.
+     *
+     * @return The sale event publisher.
+     */
+    public SaleEventPublisher getSaleEvents() {
+        return saleEvents;
     }
 
     /**
@@ -54,7 +130,47 @@ public class Controller {
     }
 
     /**
-     * Starts a new <code>Sale</code>.
+     * Registers an observer that is notified when the cash drawer is running low on a
+     * denomination.
+     *
+     * @param observer The observer to add.
+     */
+    public void addLowFloatObserver(LowFloatObserver observer) {
+        cashRegister.getDrawer().addLowFloatObserver(observer);
+    }
+
+    /**
+     * Counts the cash drawer, for example at the end of a shift.
+     *
+     * @return The number of pieces of every denomination in whole kronor, largest first.
+     */
+    public Map<Integer, Integer> countCashDrawer() {
+        return cashRegister.getDrawer().count();
+    }
+
+    /**
+     * Sets how long the accounting update, inventory update and receipt printing may take together
+     * when a payment is completed. The default is ten seconds. A payment never waits longer than
+     * this, calls still running at the deadline are cancelled and not waited for.
+     *
+     * @param deadline The maximum time to wait for the external systems after a payment.
+     */
+    public void setPaymentCompletionDeadline(Duration deadline) {
+        this.paymentCompletionDeadline = deadline;
+    }
+
+    /**
+     * Sets the promotions given in all sales started after this call. The promotions are compiled
+     * once here, so that applying them while items are scanned is fast.
+     *
+     * @param promotions The active promotions.
+     */
+    public void setPromotions(Collection<? extends Promotion> promotions) {
+        salePool.setPromotions(new PromotionEngine(promotions));
+    }
+
+    /**
+     * Starts a new <code>Sale</code> and gives it a new sale ID.
      *
      * @throws IllegalStateException if a sale is already in progress.
      */
@@ -63,14 +179,12 @@ public class Controller {
             FileLogger.log("A sale is already in progress.", new IllegalStateException());
             throw new IllegalStateException("A sale is already in progress.");
         }
-        currentSale = new Sale(cashRegister);
-        for (RevenueObserver observer : revenueObservers) {
-            currentSale.addRevenueObserver(observer);
-        }
+        currentSale = salePool.acquire();
     }
 
     /**
-     * Adds an item to the current {@link Sale}.
+     * Adds an item to the current {@link Sale}. This is a wrapper around
+     * {@link #tryEnterItem(String)} that reports misses and failures as exceptions.
      *
      * @param itemID The <code>String</code> ID of the item to add.
      * @return Information about the added item as a {@link SaleItemDTO}.
@@ -83,21 +197,146 @@ public class Controller {
         if (currentSale == null) {
             throw new IllegalStateException("No sale in progress. Call startSale() first.");
         }
+        ItemEntryResult result;
         try {
-            ItemDTO item = inventoryRegistry.findItemById(itemID);
-            return currentSale.addItem(item);
-        } catch (ItemNotFoundException e) {
-            FileLogger.log("Item not found: " + itemID, e);
-            throw e; // Propagate to view for user-friendly message
-        } catch (DabaseFailureException e) {
-            FileLogger.log("Inventory database error for item: " + itemID, e);
-            throw new OperationFailedException(
-                    "Could not search for item due to system error. Please try again.", e);
+            result = tryEnterItem(itemID);
         } catch (Exception e) {
             FileLogger.log("Unexpected error in enterItem for item: " + itemID, e);
             throw new OperationFailedException(
                     "Unexpected system error occurred. Please contact support.", e);
         }
+        switch (result.status()) {
+            case FOUND:
+                return result.saleItem();
+            case NOT_FOUND:
+                ItemNotFoundException notFound = new ItemNotFoundException(itemID);
+                FileLogger.log("Item not found: " + itemID, notFound);
+                throw notFound; // Propagate to view for user-friendly message
+            default:
+                throw new OperationFailedException(
+                        "Could not search for item due to system error. Please try again.",
+                        new DabaseFailureException(itemID));
+        }
+    }
+
+    /**
+     * Adds an item to the current {@link Sale} without using exceptions for unknown items or
+     * inventory failures. Unknown items are routine at self-checkout and are not logged. Inventory
+     * failures are logged without a stack trace.
+     * <p>
+     * A scanned barcode with a wrong check digit is a misread and is reported as not found without
+     * a lookup. A variable-measure barcode is looked up by its base SKU and added with the weight
+     * or price embedded in it, see {@link BarcodeDecoder}.
+     *
+     * @param itemID The <code>String</code> ID of the item to add, or its scanned barcode.
+     * @return The outcome, with information about the added item if it was found.
+     * @throws IllegalStateException if no sale is started.
+     */
+    public ItemEntryResult tryEnterItem(String itemID) {
+        if (currentSale == null) {
+            throw new IllegalStateException("No sale in progress. Call startSale() first.");
+        }
+        awaitPendingItems();
+        long barcode = BarcodeDecoder.decode(itemID);
+        if (barcode == BarcodeDecoder.INVALID) {
+            return ItemEntryResult.NOT_FOUND;
+        }
+        ItemLookupResult lookup = itemLookup.lookupItem(lookupId(itemID, barcode));
+        switch (lookup.status()) {
+            case FOUND:
+                SaleItemDTO added = addToSale(currentSale, lookup.item(), barcode);
+                saleEvents.publishItemAdded(currentSale.getId(), added);
+                return new ItemEntryResult(lookup.status(), added);
+            case NOT_FOUND:
+                return ItemEntryResult.NOT_FOUND;
+            default:
+                FileLogger.log("Inventory database error for item: " + itemID, null);
+                return ItemEntryResult.BACKEND_FAILURE;
+        }
+    }
+
+    /**
+     * Adds an item to the current {@link Sale} without waiting for the inventory lookup. The lookup
+     * starts at once, in parallel with lookups for earlier scans that have not finished yet, but
+     * the items are added to the sale in the order they were scanned. All other operations on the
+     * sale wait until the items entered so far have been added.
+     *
+     * @param itemID The <code>String</code> ID of the item to add.
+     * @return A future completed with information about the added item. It completes
+     *         exceptionally with {@link ItemNotFoundException} if the item was not found, and with
+     *         {@link OperationFailedException} if a database error or other system error occurred.
+     * @throws IllegalStateException if no sale is started.
+     */
+    public CompletableFuture<SaleItemDTO> enterItemAsync(String itemID) {
+        if (currentSale == null) {
+            throw new IllegalStateException("No sale in progress. Call startSale() first.");
+        }
+        Sale sale = currentSale;
+        long barcode = BarcodeDecoder.decode(itemID);
+        CompletableFuture<ItemLookupResult> lookup = barcode == BarcodeDecoder.INVALID
+                ? CompletableFuture.completedFuture(ItemLookupResult.notFound())
+                : itemLookup.lookupItemAsync(lookupId(itemID, barcode), lookupExecutor);
+        CompletableFuture<SaleItemDTO> added = pendingItems.handle((previous, failure) -> null)
+                .thenCombine(lookup.handle((result, failure) -> result == null
+                        ? ItemLookupResult.backendFailure() : result),
+                        (previous, result) -> addLookedUpItem(sale, itemID, barcode, result));
+        pendingItems = added;
+        return added;
+    }
+
+    /**
+     * Adds the result of an asynchronous lookup to the sale, turning misses and failures into the
+     * same exceptions as {@link #enterItem(String)}.
+     */
+    private SaleItemDTO addLookedUpItem(Sale sale, String itemID, long barcode,
+            ItemLookupResult result) {
+        switch (result.status()) {
+            case FOUND:
+                try {
+                    SaleItemDTO added = addToSale(sale, result.item(), barcode);
+                    saleEvents.publishItemAdded(sale.getId(), added);
+                    return added;
+                } catch (RuntimeException e) {
+                    FileLogger.log("Unexpected error in enterItemAsync for item: " + itemID, e);
+                    throw new CompletionException(new OperationFailedException(
+                            "Unexpected system error occurred. Please contact support.", e));
+                }
+            case NOT_FOUND:
+                throw new CompletionException(new ItemNotFoundException(itemID));
+            default:
+                FileLogger.log("Inventory database error for item: " + itemID, null);
+                throw new CompletionException(new OperationFailedException(
+                        "Could not search for item due to system error. Please try again.",
+                        new DabaseFailureException(itemID)));
+        }
+    }
+
+    /**
+     * Gets the ID to look up for an entered item. Barcodes are looked up by their base SKU in the
+     * form used by the catalog, other input is looked up as it is.
+     */
+    private static String lookupId(String itemID, long barcode) {
+        if (barcode < 0) {
+            return itemID;
+        }
+        long sku = BarcodeDecoder.baseSku(barcode);
+        return sku == barcode && itemID.length() == 13 ? itemID : BarcodeDecoder.toItemId(sku);
+    }
+
+    /**
+     * Adds a looked up item to the sale, with the weight or price of a variable-measure barcode.
+     */
+    private static SaleItemDTO addToSale(Sale sale, ItemDTO item, long barcode) {
+        return BarcodeDecoder.isVariableMeasure(barcode) ? sale.addMeasuredItem(item, barcode)
+                : sale.addItem(item);
+    }
+
+    /**
+     * Waits until all items entered with {@link #enterItemAsync(String)} have been added to the
+     * sale, successfully or not.
+     */
+    private void awaitPendingItems() {
+        pendingItems.handle((item, failure) -> null).join();
     }
 
     /**
@@ -113,14 +352,61 @@ public class Controller {
                     new IllegalStateException());
             throw new IllegalStateException("No sale in progress. Call startSale() first.");
         }
-        return currentSale.setLastItemQuantity(quantity);
+        awaitPendingItems();
+        SaleItemDTO updated = currentSale.setLastItemQuantity(quantity);
+        if (updated != null) {
+            saleEvents.publishItemUpdated(currentSale.getId(), updated);
+        }
+        return updated;
+    }
+
+    /**
+     * Identifies the customer of the current {@link Sale}, so that the customer discounts of the
+     * customer are given. The customer discounts of the promotions are given at once. The
+     * discount in the discount database is fetched in the background, so the customer can be
+     * entered early in the sale, and is given when the sale is ended.
+     *
+     * @param customerId The ID of the customer.
+     * @return The total cost after the discounts given so far, as an {@link Amount}.
+     * @throws IllegalStateException if no sale is started.
+     */
+    public Amount enterCustomer(String customerId) {
+        if (currentSale == null) {
+            throw new IllegalStateException("No sale in progress. Call startSale() first.");
+        }
+        discountRegistry.prefetch(customerId);
+        currentCustomerId = customerId;
+        customerDiscountApplied = false;
+        awaitPendingItems();
+        return currentSale.setCustomer(customerId);
+    }
+
+    /**
+     * Gives the current {@link Sale} the discount of its customer in the discount database. The
+     * discount was prefetched when the customer was entered, so this normally does not wait. If
+     * the discount database fails, the sale continues without that discount. The discount is
+     * given once per customer entered, so the total does not change after the sale is ended.
+     */
+    private void applyCustomerDiscount() {
+        if (currentCustomerId == null || customerDiscountApplied || currentSale.isPaid()) {
+            return;
+        }
+        int discount = 0;
+        try {
+            discount = discountRegistry.getCustomerDiscount(currentCustomerId);
+        } catch (DiscountDatabaseException e) {
+            FileLogger.log("Discount database error for customer: " + currentCustomerId, e);
+        }
+        currentSale.setCustomer(currentCustomerId, discount);
+        customerDiscountApplied = true;
     }
 
     /**
      * Ends the current {@link Sale} and returns the total cost, but does NOT reset the sale.
-     * Payment must be processed before the sale is reset.
+     * Payment must be processed before the sale is reset. If a customer was entered, the discount
+     * of the customer in the discount database is given.
      *
-     * @return The total cost of the sale as an {@link Amount}.
+     * @return The total cost of the sale after all discounts, as an {@link Amount}.
      * @throws IllegalStateException if no sale is started.
      */
     public Amount endSale() {
@@ -129,54 +415,376 @@ public class Controller {
                     new IllegalStateException());
             throw new IllegalStateException("No sale in progress. Call startSale() first.");
         }
+        awaitPendingItems();
+        applyCustomerDiscount();
         return currentSale.completeSale();
     }
 
     /**
-     * Handles a payment for the current <code>Sale</code>. Updates the cash register, external
-     * systems, and prints the receipt. Resets the sale after payment.
+     * Ends the current {@link Sale} and starts authorizing a card payment of part of it, or all of
+     * it, at once. The authorization runs while the cashier takes the rest of the payment in cash,
+     * and {@link #enterPayment(Amount)} waits for it.
+     *
+     * @param cardAmount The amount to pay by card.
+     * @return The rest of the total cost, to pay in cash, rounded to whole kronor.
+     * @throws IllegalStateException if no sale is started.
+     */
+    public Amount endSale(Amount cardAmount) {
+        endSale();
+        return addTender(new CardTender(cardAuthorizer, cardAmount));
+    }
+
+    /**
+     * Adds a tender other than cash to the payment of the current {@link Sale}, and starts
+     * authorizing it without waiting for the authorization to finish.
+     *
+     * @param tender The tender, for example a {@link CardTender}.
+     * @return The rest of the total cost after all tenders added so far, to pay in cash, rounded
+     *         to whole kronor.
+     * @throws IllegalStateException if no sale is started.
+     * @throws IllegalArgumentException if the amount of the tender is not positive or is more than
+     *         the rest of the total cost after the tenders added so far. Nothing is authorized.
+     */
+    public Amount addTender(Tender tender) {
+        if (currentSale == null) {
+            throw new IllegalStateException("No sale in progress. Call startSale() first.");
+        }
+        awaitPendingItems();
+        applyCustomerDiscount();
+        long amount = tender.amount().toMinorUnits();
+        long rest = currentSale.getTotalCost().toMinorUnits() - tenderedAmount().toMinorUnits();
+        if (amount <= 0 || amount > rest) {
+            throw new IllegalArgumentException("Invalid tender amount " + tender.amount()
+                    + ", the rest of the total cost is " + Amount.ofMinorUnits(Math.max(0, rest))
+                    + ".");
+        }
+        pendingTenders.add(new PendingTender(tender, tender.authorize(currentSale.getId())));
+        return currentSale.getCashDue(tenderedAmount());
+    }
+
+    /**
+     * Removes a tender added with {@link #addTender(Tender)} from the payment of the current
+     * {@link Sale}. If the tender is authorized, or is authorized later, its payment is voided.
+     *
+     * @param tender The tender to remove.
+     * @return The rest of the total cost after the remaining tenders, to pay in cash, rounded to
+     *         whole kronor.
+     * @throws IllegalStateException if no sale is started or the payment is already registered.
+     * @throws IllegalArgumentException if the tender is not part of the payment.
+     */
+    public Amount voidTender(Tender tender) {
+        if (currentSale == null) {
+            throw new IllegalStateException("No sale in progress. Call startSale() first.");
+        }
+        if (currentSale.isPaid()) {
+            throw new IllegalStateException("The payment of the sale is already registered.");
+        }
+        for (PendingTender pending : pendingTenders) {
+            if (pending.tender() == tender) {
+                pendingTenders.remove(pending);
+                voidAuthorization(pending);
+                return currentSale.getCashDue(tenderedAmount());
+            }
+        }
+        throw new IllegalArgumentException("The tender is not part of the payment.");
+    }
+
+    /**
+     * Voids the payment of a tender once it is authorized, without waiting for the authorization.
+     * A declined tender has nothing to void.
+     */
+    private static void voidAuthorization(PendingTender pending) {
+        pending.authorization().thenAccept(payment -> {
+            try {
+                pending.tender().voidPayment(payment);
+            } catch (RuntimeException e) {
+                FileLogger.log("Could not void payment " + payment.reference(), e);
+            }
+        });
+    }
+
+    private Amount tenderedAmount() {
+        long tendered = 0;
+        for (PendingTender pending : pendingTenders) {
+            tendered += pending.tender().amount().toMinorUnits();
+        }
+        return Amount.ofMinorUnits(tendered);
+    }
+
+    /**
+     * Waits for all tenders of the current sale to be authorized. Declined tenders are removed, so
+     * that the payment can be retried with the rest of the tenders and more cash.
+     *
+     * @return The authorized payments.
+     * @throws OperationFailedException if a tender was declined.
+     */
+    private List<PaymentDTO> awaitTenders() throws OperationFailedException {
+        List<PaymentDTO> payments = new ArrayList<>(pendingTenders.size());
+        OperationFailedException declined = null;
+        for (PendingTender pending : List.copyOf(pendingTenders)) {
+            try {
+                payments.add(pending.authorization().join());
+            } catch (CompletionException | CancellationException e) {
+                pendingTenders.remove(pending);
+                Throwable cause = e.getCause() == null ? e : e.getCause();
+                if (declined == null) {
+                    declined = new OperationFailedException("Payment of "
+                            + pending.tender().amount() + " was declined. Please collect "
+                            + currentSale.getCashDue(tenderedAmount()) + " in cash instead.",
+                            cause);
+                } else {
+                    declined.addSuppressed(cause);
+                }
+            }
+        }
+        if (declined != null) {
+            throw declined;
+        }
+        return payments;
+    }
+
+    /**
+     * Handles a payment for the current <code>Sale</code>. Waits for the authorization of the
+     * tenders added with {@link #addTender(Tender)} and takes the rest of the total cost in cash,
+     * rounded to whole kronor. Updates the cash register, then updates the external systems and
+     * prints the receipt concurrently. Resets the sale after payment.
+     * <p>
+     * If the payment fails, the sale is kept so that the payment can be retried by calling this
+     * method again. The sale ID is the idempotency key of the retry: a payment that was already
+     * registered is not registered again, the external systems skip sales they have already been
+     * updated with, and only the steps that did not finish are run again.
      *
-     * @param amountPaid The amount paid by the customer as an {@link Amount}.
+     * @param amountPaid The cash paid by the customer as an {@link Amount}. Ignored if the
+     *        payment of the current sale was already registered by an earlier attempt.
      * @return The change to give back to the customer as an {@link Amount}.
      * @throws IllegalStateException if no sale is started.
-     * @throws OperationFailedException if a system error occurs during payment processing.
+     * @throws OperationFailedException if a tender was declined, if a system error occurs during
+     *         payment processing, or if the external systems did not finish within the payment
+     *         completion deadline. A declined tender is removed from the sale.
      */
     public Amount enterPayment(Amount amountPaid) throws OperationFailedException {
         if (currentSale == null) {
             throw new IllegalStateException("No sale in progress. Call startSale() first.");
         }
+        awaitPendingItems();
         try {
-            Amount change = currentSale.processPayment(amountPaid);
-            updateRegistries();
-            sendReceiptToPrinter();
-            currentSale = null; // Reset current sale after processing payment
-            return change;
+            if (!currentSale.isPaid()) {
+                applyCustomerDiscount();
+                currentSale.processPayment(amountPaid, awaitTenders());
+            }
+            ReceiptDTO receipt = receiptForPrinting();
+            completePayment(currentSale.toDTO(), receipt, completedSteps);
+            finishCurrentSale(); // Reset current sale after processing payment
+            return receipt.change();
+        } catch (OperationFailedException e) {
+            FileLogger.log("Error during payment completion.", e);
+            throw e;
         } catch (Exception e) {
             FileLogger.log("Error during payment processing.", e);
-            currentSale = null; // Ensure recovery after error
             throw new OperationFailedException("Payment processing failed. Please try again.", e);
         }
     }
 
     /**
-     * Updates external systems (accounting and inventory registries).
+     * Checks if the payment of the current {@link Sale} is registered, so that the cash is in the
+     * drawer and only the external system updates or the receipt printing are left. Such a sale
+     * can not be cancelled, see {@link #completePaymentInBackground()}.
+     *
+     * @return <code>true</code> if a sale is in progress and its payment is registered.
+     */
+    public boolean isPaymentRegistered() {
+        return currentSale != null && currentSale.isPaid();
+    }
+
+    /**
+     * Cancels the current {@link Sale}, for example when the customer leaves or the payment can
+     * not be taken, so that a new sale can be started. The payments of the tenders added to the
+     * sale are voided.
+     *
+     * @throws IllegalStateException if no sale is started, or if the payment of the sale is
+     *         already registered.
+     */
+    public void cancelSale() {
+        if (currentSale == null) {
+            throw new IllegalStateException("No sale in progress. Call startSale() first.");
+        }
+        awaitPendingItems();
+        if (currentSale.isPaid()) {
+            throw new IllegalStateException("The payment of the sale is already registered. "
+                    + "Retry it with enterPayment() or call completePaymentInBackground().");
+        }
+        pendingTenders.forEach(Controller::voidAuthorization);
+        finishCurrentSale();
+    }
+
+    /**
+     * Hands the external system updates and the receipt printing that did not finish for the
+     * current {@link Sale} over to a background task, and clears the sale so that a new sale can
+     * be started. Used when the payment is registered but retrying its completion with
+     * {@link #enterPayment(Amount)} keeps failing. The background task retries the unfinished
+     * steps a few times, one second apart and then longer, and logs the sale if it gives up.
+     *
+     * @return The change to give back to the customer.
+     * @throws IllegalStateException if no sale is started, or if its payment is not registered.
+     */
+    public Amount completePaymentInBackground() {
+        if (!isPaymentRegistered()) {
+            throw new IllegalStateException("The payment of the current sale is not registered.");
+        }
+        SaleDTO completedSale = currentSale.toDTO();
+        ReceiptDTO receipt = receiptForPrinting();
+        AtomicInteger steps = completedSteps;
+        completionExecutor.execute(() -> retryPaymentCompletion(completedSale, receipt, steps));
+        finishCurrentSale();
+        return receipt.change();
+    }
+
+    /**
+     * Retries the payment completion steps of a sale that did not finish, waiting longer after
+     * every failed attempt.
+     */
+    private void retryPaymentCompletion(SaleDTO completedSale, ReceiptDTO receipt,
+            AtomicInteger steps) {
+        for (int attempt = 1;; attempt++) {
+            try {
+                completePayment(completedSale, receipt, steps);
+                return;
+            } catch (OperationFailedException e) {
+                if (attempt == BACKGROUND_COMPLETION_ATTEMPTS) {
+                    FileLogger.log("Gave up completing the payment of sale "
+                            + completedSale.saleId() + ".", e);
+                    return;
+                }
+            }
+            try {
+                Thread.sleep(BACKGROUND_RETRY_DELAY.multipliedBy(attempt));
+            } catch (InterruptedException e) {
+                FileLogger.log("Stopped completing the payment of sale "
+                        + completedSale.saleId() + ".", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the current {@link Sale} to the pool and clears it, so a new sale can be started.
+     */
+    private void finishCurrentSale() {
+        salePool.release(currentSale);
+        currentSale = null;
+        completedSteps = new AtomicInteger();
+        pendingTenders.clear();
+        currentCustomerId = null;
+        customerDiscountApplied = false;
+    }
+
+    /**
+     * Updates the accounting and inventory registries and prints the receipt, each on its own
+     * virtual thread. The three calls are independent, so the payment only waits for the slowest
+     * one. A failed call does not stop the others, since the cash is already in the drawer and the
+     * registries should be updated anyway. Calls that are not done by the deadline are cancelled
+     * and this method returns without waiting for them. Only the printing is interrupted, the
+     * registry updates are left to finish in the background. If the payment is retried, the
+     * registries wait for an update still running and report its outcome, so a step only counts as
+     * done once the registry was actually updated. Calls that succeeded for the current sale in an
+     * earlier attempt are not made again.
+     *
+     * @param completedSale The completed sale, shared by both registries.
+     * @param receipt The receipt to print.
+     * @param completedSteps One bit per call that succeeded for the sale, updated by this method.
+     * @throws OperationFailedException if any call failed or the deadline passed. The first
+     *         failure is the cause, later failures are added as suppressed exceptions.
+     */
+    private void completePayment(SaleDTO completedSale, ReceiptDTO receipt,
+            AtomicInteger completedSteps) throws OperationFailedException {
+        String[] stepNames = {"accounting update", "inventory update", "receipt printing"};
+        Runnable[] stepCalls = {
+            () -> accountingRegistry.updateAccounting(completedSale),
+            () -> inventory.updateInventory(completedSale),
+            () -> printer.print(receipt)
+        };
+        boolean[] interruptible = {false, false, true};
+        List<Future<Void>> steps = new ArrayList<>(stepNames.length);
+        Throwable failure = null;
+        ExecutorService scope = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            CompletionService<Void> completion = new ExecutorCompletionService<>(scope);
+            int submitted = 0;
+            for (int i = 0; i < stepCalls.length; i++) {
+                boolean alreadyDone = (completedSteps.get() & (1 << i)) != 0;
+                steps.add(alreadyDone ? null : completion.submit(stepCalls[i], null));
+                submitted += alreadyDone ? 0 : 1;
+            }
+            long deadline = System.nanoTime() + paymentCompletionDeadline.toNanos();
+            for (int done = 0; done < submitted; done++) {
+                Future<Void> step = completion.poll(deadline - System.nanoTime(),
+                        TimeUnit.NANOSECONDS);
+                if (step == null) {
+                    TimeoutException timeout = new TimeoutException("Payment completion did not "
+                            + "finish within " + paymentCompletionDeadline.toMillis() + " ms.");
+                    failure = failure == null ? timeout : failure;
+                    break;
+                }
+                try {
+                    step.get();
+                } catch (ExecutionException e) {
+                    failure = failure == null ? e.getCause() : failure;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = e;
+        } finally {
+            cancelUnfinished(steps, interruptible);
+            scope.shutdown();
+        }
+        List<String> failedSteps = new ArrayList<>();
+        for (int i = 0; i < steps.size(); i++) {
+            Future<Void> step = steps.get(i);
+            if (step == null) {
+                continue;
+            }
+            if (step.state() == Future.State.SUCCESS) {
+                completedSteps.getAndAccumulate(1 << i, (done, bit) -> done | bit);
+            } else if (step.state() == Future.State.FAILED) {
+                failedSteps.add(stepNames[i]);
+                if (step.exceptionNow() != failure) {
+                    failure.addSuppressed(step.exceptionNow());
+                }
+            } else if (step.state() == Future.State.CANCELLED) {
+                failedSteps.add(stepNames[i] + " (cancelled)");
+            }
+        }
+        if (failure == null) {
+            return;
+        }
+        throw new OperationFailedException(
+                "Payment completion failed: " + String.join(", ", failedSteps) + ".", failure);
+    }
+
+    /**
+     * Cancels the payment completion steps that have not finished, interrupting only those that
+     * can safely be interrupted.
      */
-    private void updateRegistries() {
-        accountingRegistry.updateAccounting(currentSale.toDTO());
-        inventoryRegistry.updateInventory(currentSale.toDTO());
+    private static void cancelUnfinished(List<Future<Void>> steps, boolean[] interruptible) {
+        for (int i = 0; i < steps.size(); i++) {
+            Future<Void> step = steps.get(i);
+            if (step != null && !step.isDone()) {
+                step.cancel(interruptible[i]);
+            }
+        }
     }
 
     /**
-     * Sends the {@link Receipt} for the current <code>Sale</code> to the {@link Printer}.
+     * Gets the {@link Receipt} for the current <code>Sale</code>, ready for the {@link Printer}.
      */
-    private void sendReceiptToPrinter() {
+    private ReceiptDTO receiptForPrinting() {
         Receipt receipt = currentSale.getReceipt();
         if (receipt == null) {
             FileLogger.log("No receipt available for current sale.", new IllegalStateException());
             throw new IllegalStateException("No receipt available for current sale");
         }
-        ReceiptDTO receiptDTO = receipt.toDTO();
-        printer.print(receiptDTO);
+        return receipt.toDTO();
     }
 
     /**
@@ -190,4 +798,10 @@ public class Controller {
         }
         return null;
     }
+
+    /**
+     * A tender added to the current sale, with its authorization that may still be running.
+     */
+    private record PendingTender(Tender tender, CompletableFuture<PaymentDTO> authorization) {
+    }
 }
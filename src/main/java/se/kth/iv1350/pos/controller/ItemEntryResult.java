@@ -0,0 +1,27 @@
+package se.kth.iv1350.pos.controller;
+
+import se.kth.iv1350.pos.integration.ItemLookupResult.Status;
+import se.kth.iv1350.pos.model.SaleItemDTO;
+
+/**
+ * The outcome of entering an item with {@link Controller#tryEnterItem(String)}. The results for
+ * misses and failures are shared constants, so no objects are created for them.
+ *
+ * @param status Whether the item was found and added, and if not, why.
+ * @param saleItem Information about the added item, or <code>null</code> if the status is not
+ *        {@link Status#FOUND}.
+ */
+public record ItemEntryResult(Status status, SaleItemDTO saleItem) {
+    static final ItemEntryResult NOT_FOUND = new ItemEntryResult(Status.NOT_FOUND, null);
+    static final ItemEntryResult BACKEND_FAILURE =
+            new ItemEntryResult(Status.BACKEND_FAILURE, null);
+
+    /**
+     * Checks if the item was found and added to the sale.
+     *
+     * @return <code>true</code> if the status is {@link Status#FOUND}.
+     */
+    public boolean isAdded() {
+        return status == Status.FOUND;
+    }
+}
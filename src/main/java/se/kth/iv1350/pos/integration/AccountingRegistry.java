@@ -1,36 +1,229 @@
 package se.kth.iv1350.pos.integration;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import se.kth.iv1350.pos.model.PaymentDTO;
 import se.kth.iv1350.pos.model.SaleDTO;
+import se.kth.iv1350.pos.model.VatRateTotal;
 
 /**
  * Simulates an external <code>AccountingRegistry</code> system. Receives sale data as
- * {@link se.kth.iv1350.pos.model.SaleDTO} from the controller.
+ * {@link se.kth.iv1350.pos.model.SaleDTO} from the controller, and books every sale in a local
+ * {@link Ledger}: the cash received is debited to the cash account, payments with other tenders
+ * are debited to the tender receivable account, and the net revenue, the VAT of each rate and the
+ * cash rounding are credited to their accounts.
+ * <p>
+ * Sales are identified by their sale ID. A sale that has already been posted within the
+ * deduplication window is skipped, so a retried accounting update never books a sale twice. The
+ * window is filled from the ledger when the registry is created, so this also holds after a
+ * restart.
  */
 public class AccountingRegistry {
+    /** The cash account. */
+    public static final int CASH_ACCOUNT = 1910;
+    /** The account for payments made with other tenders than cash, such as cards. */
+    public static final int TENDER_RECEIVABLE_ACCOUNT = 1580;
+    /** The sales revenue account, excluding VAT. */
+    public static final int SALES_ACCOUNT = 3001;
+    /** The output VAT account for the 25 percent rate. */
+    public static final int OUTPUT_VAT_25_ACCOUNT = 2611;
+    /** The output VAT account for the 12 percent rate. */
+    public static final int OUTPUT_VAT_12_ACCOUNT = 2621;
+    /** The output VAT account for the 6 percent rate. */
+    public static final int OUTPUT_VAT_6_ACCOUNT = 2631;
+    /** The output VAT account for any other rate. */
+    public static final int OUTPUT_VAT_OTHER_ACCOUNT = 2650;
+    /** The account for cash rounding. */
+    public static final int ROUNDING_ACCOUNT = 3740;
+    private static final Path DEFAULT_LEDGER_DIRECTORY = Path.of("ledger");
+    private static final Duration DEDUPLICATION_WINDOW = Duration.ofHours(1);
+    private static final int DEDUPLICATION_CAPACITY = 16_384;
     private static AccountingRegistry instance;
+    private final Ledger ledger;
+    private final SaleUpdates postedSales =
+            new SaleUpdates(DEDUPLICATION_WINDOW, DEDUPLICATION_CAPACITY);
 
     /**
-     * Returns the singleton instance of <code>AccountingRegistry</code>. If it does not exist, it
-     * is created.
+     * Returns the singleton instance of <code>AccountingRegistry</code>, which keeps its ledger in
+     * <code>./ledger</code>. If it does not exist, it is created.
      *
      * @return The singleton <code>AccountingRegistry</code> instance.
      */
     static AccountingRegistry getInstance() {
         if (instance == null) {
-            instance = new AccountingRegistry();
+            instance = new AccountingRegistry(DEFAULT_LEDGER_DIRECTORY);
         }
         return instance;
     }
 
-    private AccountingRegistry() {}
+    /**
+     * Creates a new instance that keeps its ledger in the specified directory. Only one instance
+     * may use a directory at a time.
+     *
+     * @param ledgerDirectory The directory of the ledger, created if it does not exist.
+     * @throws UncheckedIOException if the ledger could not be opened.
+     */
+    AccountingRegistry(Path ledgerDirectory) {
+        try {
+            ledger = Ledger.open(ledgerDirectory);
+            rememberRecentSales();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the ledger.", e);
+        }
+    }
 
     /**
-     * Updates the <code>AccountingRegistry</code> system with the completed sale data. This method
-     * simulates updating an external accounting system by printing a message to the console.
+     * Marks the sales posted to the ledger within the deduplication window as already posted. The
+     * sales account is read, since every sale is booked on it however it was paid.
+     */
+    private void rememberRecentSales() throws IOException {
+        long windowStart = System.currentTimeMillis() - DEDUPLICATION_WINDOW.toMillis();
+        for (Ledger.StatementLine line : ledger.statement(SALES_ACCOUNT)) {
+            if (line.reference() > 0 && line.timestamp() >= windowStart) {
+                postedSales.markUpdated(line.reference());
+            }
+        }
+    }
+
+    /**
+     * Updates the <code>AccountingRegistry</code> system with the completed sale data, by posting
+     * the sale to the ledger.
      *
      * @param saleDTO The {@link SaleDTO} containing sale information.
+     * @throws UncheckedIOException if the sale could not be written to the ledger.
      */
     public void updateAccounting(SaleDTO saleDTO) {
-        System.out.printf("[%s]: Accounting updated%n", this.getClass().getSimpleName());
+        updateAccounting(List.of(saleDTO));
+    }
+
+    /**
+     * Updates the <code>AccountingRegistry</code> system with a batch of completed sales. All sales
+     * in the batch are written to the ledger together. Sales with an ID that has already been
+     * posted are skipped, sales without an ID are always posted. If a sale is being posted by
+     * another call, for example an earlier attempt that is still running, this call waits for that
+     * post and fails if it fails, so a sale is never taken as posted before it is.
+     *
+     * @param sales The completed sales.
+     * @throws UncheckedIOException if the sales could not be written to the ledger. None of them
+     *         are then posted, and they may be retried.
+     * @throws IllegalStateException if a post of one of the sales made by another call failed.
+     *         The sales of this call are still posted, and the failed sale may be retried.
+     */
+    public void updateAccounting(List<SaleDTO> sales) {
+        long timestamp = System.currentTimeMillis();
+        List<Ledger.Entry> entries = new ArrayList<>(sales.size());
+        List<Long> claimed = new ArrayList<>(sales.size());
+        List<CompletableFuture<Void>> postedElsewhere = new ArrayList<>();
+        Throwable failure = null;
+        try {
+            for (SaleDTO sale : sales) {
+                if (sale.saleId() > 0) {
+                    CompletableFuture<Void> other = postedSales.claim(sale.saleId());
+                    if (other != null) {
+                        postedElsewhere.add(other);
+                        continue;
+                    }
+                    claimed.add(sale.saleId());
+                }
+                entries.add(journalEntryFor(sale, timestamp));
+            }
+            if (!entries.isEmpty()) {
+                ledger.post(entries);
+                System.out.printf("[%s]: Accounting updated%n", this.getClass().getSimpleName());
+            }
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException("Could not post sales to the ledger.", e);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            for (long saleId : claimed) {
+                postedSales.finish(saleId, failure);
+            }
+        }
+        postedElsewhere.forEach(SaleUpdates::await);
+    }
+
+    /**
+     * Gets the current balance of a ledger account.
+     *
+     * @param account The account number, for example {@link #CASH_ACCOUNT}.
+     * @return The balance in öre, positive for a debit balance.
+     */
+    public long getBalance(int account) {
+        return ledger.getBalance(account);
+    }
+
+    /**
+     * Gets the ledger where sales are booked.
+     *
+     * @return The ledger.
+     */
+    public Ledger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * Creates the journal entry for a completed sale.
+     *
+     * @param sale The completed sale.
+     * @param timestamp When the sale was completed, in milliseconds since the epoch.
+     * @return A balanced entry debiting cash and other tenders and crediting revenue, VAT and
+     *         rounding, with the sale ID as reference. A sale without payments is booked as paid
+     *         in cash.
+     */
+    static Ledger.Entry journalEntryFor(SaleDTO sale, long timestamp) {
+        Map<Integer, Long> vatByAccount = new TreeMap<>();
+        long totalVat = 0;
+        for (VatRateTotal rate : sale.vatBreakdown()) {
+            long vat = rate.vat().toMinorUnits();
+            if (vat != 0) {
+                vatByAccount.merge(vatAccountFor(rate.vatRate()), vat, Long::sum);
+                totalVat += vat;
+            }
+        }
+        long total = sale.total().toMinorUnits();
+        List<Ledger.Posting> postings = new ArrayList<>(vatByAccount.size() + 4);
+        if (sale.payments().isEmpty()) {
+            postings.add(new Ledger.Posting(CASH_ACCOUNT, total));
+        } else {
+            Map<Integer, Long> paidByAccount = new TreeMap<>();
+            for (PaymentDTO payment : sale.payments()) {
+                int account = PaymentDTO.CASH.equals(payment.method()) ? CASH_ACCOUNT
+                        : TENDER_RECEIVABLE_ACCOUNT;
+                paidByAccount.merge(account, payment.amount().toMinorUnits(), Long::sum);
+            }
+            paidByAccount.forEach((account, paid) -> postings.add(
+                    new Ledger.Posting(account, paid)));
+        }
+        postings.add(new Ledger.Posting(SALES_ACCOUNT, -(total - totalVat)));
+        vatByAccount.forEach((account, vat) -> postings.add(new Ledger.Posting(account, -vat)));
+        long rounding = sale.rounding();
+        if (rounding != 0) {
+            postings.add(new Ledger.Posting(ROUNDING_ACCOUNT, -rounding));
+        }
+        return new Ledger.Entry(timestamp, sale.saleId(), postings);
+    }
+
+    private static int vatAccountFor(int vatRate) {
+        switch (vatRate) {
+            case 2500:
+                return OUTPUT_VAT_25_ACCOUNT;
+            case 1200:
+                return OUTPUT_VAT_12_ACCOUNT;
+            case 600:
+                return OUTPUT_VAT_6_ACCOUNT;
+            default:
+                return OUTPUT_VAT_OTHER_ACCOUNT;
+        }
     }
 }
@@ -0,0 +1,134 @@
+package se.kth.iv1350.pos.integration;
+
+/**
+ * Decodes scanned GTIN-8, GTIN-12, GTIN-13 and GTIN-14 barcodes. A barcode is decoded straight
+ * from the scanned characters to a <code>long</code> holding its digits, without creating any
+ * objects, and the check digit is validated so misreads are rejected before the item is looked up.
+ * The same product gets the same value whichever length it is scanned with, since the shorter
+ * forms are the longer ones without leading zeros.
+ * <p>
+ * GTIN-13 barcodes with prefix 20 to 29 are variable-measure barcodes printed in the store, laid
+ * out as <code>PP IIIII VVVVV C</code>: the prefix, the item reference, the embedded value and
+ * the check digit. With prefix 20 to 24 the value is the price of the package in öre including
+ * VAT, with prefix 25 to 29 it is the weight in grams. All packages of an item share its base SKU,
+ * the barcode with the value set to zero, which is the ID of the item in the catalog.
+ */
+public final class BarcodeDecoder {
+    /** Returned by {@link #decode(CharSequence)} for a barcode with a wrong check digit. */
+    public static final long INVALID = -1;
+    /** Returned by {@link #decode(CharSequence)} for input that is not a barcode. */
+    public static final long NOT_A_BARCODE = -2;
+    private static final long VARIABLE_MEASURE_FIRST = 2_000_000_000_000L;
+    private static final long EMBEDDED_WEIGHT_FIRST = 2_500_000_000_000L;
+    private static final long VARIABLE_MEASURE_END = 3_000_000_000_000L;
+    private static final long GTIN_13_END = 10_000_000_000_000L;
+    private static final int VALUE_DIGITS = 100_000;
+    private static final int GTIN_13_LENGTH = 13;
+    private static final int GTIN_14_LENGTH = 14;
+
+    private BarcodeDecoder() {
+    }
+
+    /**
+     * Decodes a scanned barcode and validates its check digit.
+     *
+     * @param code The scanned characters.
+     * @return The digits of the barcode as a number, {@link #INVALID} if the check digit is wrong,
+     *         or {@link #NOT_A_BARCODE} if the input is not 8, 12, 13 or 14 digits, such as an
+     *         item ID entered by hand.
+     */
+    public static long decode(CharSequence code) {
+        int length = code.length();
+        if (length != 8 && length != 12 && length != GTIN_13_LENGTH && length != GTIN_14_LENGTH) {
+            return NOT_A_BARCODE;
+        }
+        long value = 0;
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = code.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NOT_A_BARCODE;
+            }
+            value = value * 10 + digit;
+            sum += ((length - i) & 1) == 0 ? digit * 3 : digit;
+        }
+        return sum % 10 == 0 ? value : INVALID;
+    }
+
+    /**
+     * Calculates the check digit for the digits of a barcode before the check digit.
+     *
+     * @param digits The barcode without its check digit, as a number.
+     * @return The check digit.
+     */
+    static int checkDigit(long digits) {
+        int sum = 0;
+        for (int position = 0; digits > 0; position++, digits /= 10) {
+            int digit = (int) (digits % 10);
+            sum += (position & 1) == 0 ? digit * 3 : digit;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Checks if a barcode has a weight or price embedded.
+     *
+     * @param barcode A barcode from {@link #decode(CharSequence)}.
+     * @return <code>true</code> if it is a GTIN-13 with prefix 20 to 29.
+     */
+    public static boolean isVariableMeasure(long barcode) {
+        return barcode >= VARIABLE_MEASURE_FIRST && barcode < VARIABLE_MEASURE_END;
+    }
+
+    /**
+     * Checks if a variable-measure barcode has a weight embedded, as opposed to a price.
+     *
+     * @param barcode A variable-measure barcode.
+     * @return <code>true</code> if the embedded value is a weight in grams.
+     */
+    public static boolean isEmbeddedWeight(long barcode) {
+        return barcode >= EMBEDDED_WEIGHT_FIRST;
+    }
+
+    /**
+     * Gets the value embedded in a variable-measure barcode.
+     *
+     * @param barcode A variable-measure barcode.
+     * @return The weight in grams or the price in öre including VAT, see
+     *         {@link #isEmbeddedWeight(long)}.
+     */
+    public static int embeddedValue(long barcode) {
+        return (int) (barcode / 10 % VALUE_DIGITS);
+    }
+
+    /**
+     * Gets the SKU that identifies the item of a barcode in the catalog. For a variable-measure
+     * barcode this is the barcode with the embedded value set to zero, for other barcodes it is
+     * the barcode itself.
+     *
+     * @param barcode A barcode from {@link #decode(CharSequence)}.
+     * @return The base SKU, a valid barcode.
+     */
+    public static long baseSku(long barcode) {
+        if (!isVariableMeasure(barcode)) {
+            return barcode;
+        }
+        long withoutValue = barcode / (VALUE_DIGITS * 10L) * VALUE_DIGITS;
+        return withoutValue * 10 + checkDigit(withoutValue);
+    }
+
+    /**
+     * Formats a barcode as the item ID used in the catalog, 13 digits with leading zeros, or 14
+     * digits for a GTIN-14 with a packaging indicator.
+     *
+     * @param barcode A barcode from {@link #decode(CharSequence)}.
+     * @return The item ID.
+     */
+    public static String toItemId(long barcode) {
+        char[] digits = new char[barcode < GTIN_13_END ? GTIN_13_LENGTH : GTIN_14_LENGTH];
+        for (int i = digits.length - 1; i >= 0; i--, barcode /= 10) {
+            digits[i] = (char) ('0' + barcode % 10);
+        }
+        return new String(digits);
+    }
+}
@@ -0,0 +1,216 @@
+package se.kth.iv1350.pos.integration;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A cache in front of a {@link DiscountRegistry}, shared by all registers. The discount of a
+ * customer can be prefetched as soon as the customer is identified, so that it has arrived when it
+ * is needed at the end of the sale. Cached discounts are kept for a limited time, so changes in
+ * the discount database reach the registers without a restart.
+ * <p>
+ * The cache holds the lookup itself, not only its result, so all registers asking for a customer
+ * while a lookup is in flight wait for that lookup. Failed lookups are not cached. A register
+ * waits for a lookup at most a limited time, so a hanging discount database does not stop sales.
+ * <p>
+ * When the cache is full, the discounts that were looked up first are evicted first. Lookups still
+ * in flight are never evicted, since registers may be waiting for them.
+ */
+public class CachedDiscountRegistry implements DiscountRegistry {
+    private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(10);
+    private static final int DEFAULT_CAPACITY = 10_000;
+    private static final Duration DEFAULT_LOOKUP_TIMEOUT = Duration.ofSeconds(2);
+    private final DiscountRegistry delegate;
+    private final long timeToLiveNanos;
+    private final long lookupTimeoutNanos;
+    private final int capacity;
+    private final Executor executor;
+    private final LongSupplier clock;
+    private final ConcurrentMap<String, CachedDiscount> discounts = new ConcurrentHashMap<>();
+    private final Queue<Insertion> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedInsertions = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * A lookup of one customer, and when it was started.
+     */
+    private record CachedDiscount(CompletableFuture<Integer> discount, long fetchedAt) {
+    }
+
+    /**
+     * A lookup added to the cache, in the order lookups were added. The lookup may since have
+     * failed or been replaced, and is then no longer in the cache.
+     */
+    private record Insertion(String customerId, CachedDiscount cached) {
+    }
+
+    /**
+     * Creates a new instance that keeps discounts for ten minutes and at most 10000 customers,
+     * waits at most two seconds for a lookup, and performs lookups on virtual threads.
+     *
+     * @param delegate The discount database.
+     */
+    public CachedDiscountRegistry(DiscountRegistry delegate) {
+        this(delegate, DEFAULT_TIME_TO_LIVE, DEFAULT_LOOKUP_TIMEOUT, DEFAULT_CAPACITY,
+                Executors.newVirtualThreadPerTaskExecutor(), System::nanoTime);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param delegate The discount database.
+     * @param timeToLive How long a discount is kept.
+     * @param lookupTimeout How long {@link #getCustomerDiscount(String)} waits for a lookup.
+     * @param capacity The number of customers kept.
+     * @param executor Performs the lookups.
+     * @param clock Returns the current time in nanoseconds.
+     */
+    CachedDiscountRegistry(DiscountRegistry delegate, Duration timeToLive,
+            Duration lookupTimeout, int capacity, Executor executor, LongSupplier clock) {
+        this.delegate = delegate;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.lookupTimeoutNanos = lookupTimeout.toNanos();
+        this.capacity = capacity;
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts looking up the discount of a customer, unless it is cached or already being looked
+     * up. Does not wait for the lookup.
+     *
+     * @param customerId The ID of the customer.
+     * @return A future completed with the percentage, or completed exceptionally with
+     *         {@link DiscountDatabaseException} if the lookup failed. Completing or cancelling it
+     *         does not affect the cache.
+     */
+    public CompletableFuture<Integer> prefetch(String customerId) {
+        return lookup(customerId).discount().copy();
+    }
+
+    /**
+     * Starts looking up the discounts of several customers at once, for example the customers
+     * with sales parked at the registers. The discount database is asked for each customer not
+     * already cached or being looked up, and the lookups run in parallel. Does not wait for them.
+     *
+     * @param customerIds The IDs of the customers.
+     * @return A future completed when all lookups have finished, or completed exceptionally with
+     *         {@link DiscountDatabaseException} if any of them failed.
+     */
+    public CompletableFuture<Void> prefetchAll(Collection<String> customerIds) {
+        return CompletableFuture.allOf(customerIds.stream()
+                .map(this::prefetch)
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Gets the discount of a customer, from the cache if it is there. If a prefetch of the
+     * customer is in flight, waits for it, but no longer than the lookup timeout. A lookup that
+     * times out keeps running, and is used by later calls if it succeeds.
+     *
+     * @param customerId The ID of the customer.
+     * @return The percentage, zero if the customer has no discount.
+     * @throws DiscountDatabaseException if the discount database could not be reached or did not
+     *         reply within the lookup timeout.
+     */
+    @Override
+    public int getCustomerDiscount(String customerId) throws DiscountDatabaseException {
+        try {
+            return lookup(customerId).discount().copy()
+                    .orTimeout(lookupTimeoutNanos, TimeUnit.NANOSECONDS).join();
+        } catch (CompletionException e) {
+            throw new DiscountDatabaseException(customerId, e.getCause());
+        }
+    }
+
+    private CachedDiscount lookup(String customerId) {
+        long now = clock.getAsLong();
+        CachedDiscount cached = discounts.get(customerId);
+        if (cached != null && !isExpired(cached, now)) {
+            hits.increment();
+            return cached;
+        }
+        CompletableFuture<Integer> fetched = new CompletableFuture<>();
+        CachedDiscount current = discounts.compute(customerId,
+                (id, old) -> old != null && !isExpired(old, now) ? old
+                        : new CachedDiscount(fetched, now));
+        if (current.discount() != fetched) {
+            hits.increment();
+            return current;
+        }
+        misses.increment();
+        insertionOrder.add(new Insertion(customerId, current));
+        queuedInsertions.incrementAndGet();
+        evictIfFull();
+        executor.execute(() -> fetch(customerId, current));
+        return current;
+    }
+
+    private void fetch(String customerId, CachedDiscount lookup) {
+        try {
+            lookup.discount().complete(delegate.getCustomerDiscount(customerId));
+        } catch (DiscountDatabaseException | RuntimeException e) {
+            discounts.remove(customerId, lookup);
+            lookup.discount().completeExceptionally(e);
+        }
+    }
+
+    private boolean isExpired(CachedDiscount cached, long now) {
+        return now - cached.fetchedAt() >= timeToLiveNanos;
+    }
+
+    /**
+     * Evicts the oldest lookups while more lookups than the capacity have been added and not yet
+     * evicted. A lookup that has failed or been replaced is only dropped from the insertion order.
+     * A lookup still in flight is moved to the back instead, and every queued lookup is looked at
+     * at most once per call, so a cache full of lookups in flight may briefly exceed its capacity.
+     */
+    private void evictIfFull() {
+        int remaining = queuedInsertions.get();
+        while (queuedInsertions.get() > capacity && remaining-- > 0) {
+            Insertion oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            if (!oldest.cached().discount().isDone()
+                    && discounts.get(oldest.customerId()) == oldest.cached()) {
+                insertionOrder.add(oldest);
+                continue;
+            }
+            discounts.remove(oldest.customerId(), oldest.cached());
+            queuedInsertions.decrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the number of lookups served from the cache, including lookups that waited for a
+     * lookup in flight.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of lookups that had to ask the discount database.
+     *
+     * @return The number of cache misses.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+}
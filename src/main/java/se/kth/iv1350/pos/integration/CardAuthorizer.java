@@ -0,0 +1,29 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.concurrent.CompletableFuture;
+
+import se.kth.iv1350.pos.model.Amount;
+
+/**
+ * Authorizes card payments with the card payment provider.
+ */
+public interface CardAuthorizer {
+    /**
+     * Starts authorizing a card payment. Does not wait for the provider.
+     *
+     * @param saleId The ID of the sale paid, sent to the provider as the payment reference.
+     * @param amount The amount to authorize.
+     * @return A future completed with the authorization code, or completed exceptionally with
+     *         {@link CardDeclinedException} if the payment was declined.
+     */
+    CompletableFuture<String> authorize(long saleId, Amount amount);
+
+    /**
+     * Voids an approved card payment, so that the amount reserved on the card is released. Does
+     * not wait for the provider.
+     *
+     * @param authorizationCode The authorization code of the payment.
+     * @param amount The authorized amount.
+     */
+    void voidAuthorization(String authorizationCode, Amount amount);
+}
@@ -0,0 +1,18 @@
+package se.kth.iv1350.pos.integration;
+
+import se.kth.iv1350.pos.model.Amount;
+
+/**
+ * Thrown to indicate that a card payment was not authorized.
+ */
+public class CardDeclinedException extends Exception {
+    /**
+     * Creates a new instance with a detailed message.
+     *
+     * @param amount The amount that was declined.
+     * @param reason Why the card payment was declined.
+     */
+    public CardDeclinedException(Amount amount, String reason) {
+        super("Card payment of " + amount + " declined: " + reason);
+    }
+}
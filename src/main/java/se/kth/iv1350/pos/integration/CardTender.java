@@ -0,0 +1,44 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.concurrent.CompletableFuture;
+
+import se.kth.iv1350.pos.model.Amount;
+import se.kth.iv1350.pos.model.PaymentDTO;
+import se.kth.iv1350.pos.model.Tender;
+
+/**
+ * A part of a payment made by card, authorized by a {@link CardAuthorizer}.
+ */
+public class CardTender implements Tender {
+    /** The payment method of card payments. */
+    public static final String METHOD = "Card";
+    private final CardAuthorizer authorizer;
+    private final Amount amount;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param authorizer Authorizes the card payment.
+     * @param amount The amount to pay by card.
+     */
+    public CardTender(CardAuthorizer authorizer, Amount amount) {
+        this.authorizer = authorizer;
+        this.amount = amount;
+    }
+
+    @Override
+    public Amount amount() {
+        return amount;
+    }
+
+    @Override
+    public CompletableFuture<PaymentDTO> authorize(long saleId) {
+        return authorizer.authorize(saleId, amount)
+                .thenApply(code -> new PaymentDTO(METHOD, amount, code));
+    }
+
+    @Override
+    public void voidPayment(PaymentDTO payment) {
+        authorizer.voidAuthorization(payment.reference(), amount);
+    }
+}
@@ -0,0 +1,259 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads an item catalog file into a new item index. The file is split into chunks at line
+ * boundaries, and every chunk is memory-mapped and parsed on its own core. Rows are parsed directly
+ * from the mapped bytes, without splitting them into intermediate strings.
+ * <p>
+ * Each row has the form <code>id,name,description,price,vatRate,quantity</code>. Empty lines and
+ * lines starting with <code>#</code> are ignored, as is a header row starting with
+ * <code>id,</code> on the first line. Fields may not contain commas or quotes. If the same item ID
+ * occurs more than once, the last row in the file wins.
+ */
+final class CatalogLoader {
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int FIELD_COUNT = 6;
+    private static final int BOUNDARY_SCAN_SIZE = 4096;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8,
+            1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18};
+
+    /**
+     * Creates one index entry from the fields of a parsed catalog row.
+     *
+     * @param <T> The type of the index entries.
+     */
+    @FunctionalInterface
+    interface EntryFactory<T> {
+        T create(String itemID, String name, String description, double price, double vatRate,
+                int quantity);
+    }
+
+    private CatalogLoader() {}
+
+    /**
+     * Loads the specified catalog file using the default chunk size.
+     *
+     * @param file The catalog file to read.
+     * @param factory Creates the index entry for each row.
+     * @return A new map from item ID to index entry, not shared with anyone else.
+     * @throws IOException if the file could not be read or contains a malformed row.
+     */
+    static <T> Map<String, T> load(Path file, EntryFactory<T> factory) throws IOException {
+        return load(file, factory, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Loads the specified catalog file, parsing chunks of roughly <code>chunkSize</code> bytes in
+     * parallel.
+     *
+     * @param file The catalog file to read.
+     * @param factory Creates the index entry for each row.
+     * @param chunkSize The preferred number of bytes per chunk. Chunks are extended to the next
+     *        line break.
+     * @return A new map from item ID to index entry, not shared with anyone else.
+     * @throws IOException if the file could not be read or contains a malformed row.
+     */
+    static <T> Map<String, T> load(Path file, EntryFactory<T> factory, int chunkSize)
+            throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Chunk> chunks = splitAtLineBoundaries(channel, chunkSize);
+            List<Map<String, T>> parsedChunks;
+            try {
+                parsedChunks = chunks.parallelStream()
+                        .map(chunk -> parseChunk(channel, chunk, factory)).toList();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            int totalEntries = 0;
+            for (Map<String, T> parsed : parsedChunks) {
+                totalEntries += parsed.size();
+            }
+            Map<String, T> index = HashMap.newHashMap(totalEntries);
+            for (Map<String, T> parsed : parsedChunks) {
+                index.putAll(parsed);
+            }
+            return index;
+        }
+    }
+
+    private record Chunk(long start, long length) {}
+
+    private static List<Chunk> splitAtLineBoundaries(FileChannel channel, int chunkSize)
+            throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long size = channel.size();
+        ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(start + chunkSize, size);
+            if (end < size) {
+                end = nextLineStart(channel, end - 1, size, scan);
+            }
+            chunks.add(new Chunk(start, end - start));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size,
+            ByteBuffer scan) throws IOException {
+        while (position < size) {
+            scan.clear();
+            int read = channel.read(scan, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (scan.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static <T> Map<String, T> parseChunk(FileChannel channel, Chunk chunk,
+            EntryFactory<T> factory) {
+        try {
+            MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, chunk.start(), chunk.length());
+            Map<String, T> parsed = new HashMap<>();
+            byte[] line = new byte[256];
+            int[] fieldEnds = new int[FIELD_COUNT];
+            int limit = buffer.limit();
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int length = lineEnd - lineStart;
+                if (length > 0 && buffer.get(lineEnd - 1) == '\r') {
+                    length--;
+                }
+                if (length > line.length) {
+                    line = new byte[Math.max(length, line.length * 2)];
+                }
+                buffer.get(lineStart, line, 0, length);
+                parseRow(line, length, fieldEnds, chunk.start() + lineStart, parsed, factory);
+                lineStart = lineEnd + 1;
+            }
+            return parsed;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> void parseRow(byte[] line, int length, int[] fieldEnds, long fileOffset,
+            Map<String, T> parsed, EntryFactory<T> factory) throws IOException {
+        if (length == 0 || line[0] == '#') {
+            return;
+        }
+        if (fileOffset == 0 && length >= 3 && line[0] == 'i' && line[1] == 'd' && line[2] == ',') {
+            return;
+        }
+        int fields = 0;
+        for (int i = 0; i < length && fields < FIELD_COUNT - 1; i++) {
+            if (line[i] == ',') {
+                fieldEnds[fields++] = i;
+            }
+        }
+        if (fields != FIELD_COUNT - 1) {
+            throw malformedRow(fileOffset, "expected " + FIELD_COUNT + " fields");
+        }
+        fieldEnds[FIELD_COUNT - 1] = length;
+        String itemID = decode(line, 0, fieldEnds[0]);
+        String name = decode(line, fieldEnds[0] + 1, fieldEnds[1]);
+        String description = decode(line, fieldEnds[1] + 1, fieldEnds[2]);
+        double price = parseDecimal(line, fieldEnds[2] + 1, fieldEnds[3], fileOffset);
+        double vatRate = parseDecimal(line, fieldEnds[3] + 1, fieldEnds[4], fileOffset);
+        int quantity = parseQuantity(line, fieldEnds[4] + 1, fieldEnds[5], fileOffset);
+        if (itemID.isEmpty()) {
+            throw malformedRow(fileOffset, "empty item ID");
+        }
+        parsed.put(itemID, factory.create(itemID, name, description, price, vatRate, quantity));
+    }
+
+    private static String decode(byte[] line, int from, int to) {
+        return new String(line, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a plain decimal number such as <code>12.50</code> without creating a string. Other
+     * notations fall back to {@link Double#parseDouble(String)}.
+     */
+    private static double parseDecimal(byte[] line, int from, int to, long fileOffset)
+            throws IOException {
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (int i = from; i < to; i++) {
+            byte b = line[i];
+            if (b >= '0' && b <= '9' && digits < 18) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                return parseDecimalSlow(line, from, to, fileOffset);
+            }
+        }
+        if (digits == 0) {
+            throw malformedRow(fileOffset, "missing number");
+        }
+        return decimals <= 0 ? mantissa : mantissa / POWERS_OF_TEN[decimals];
+    }
+
+    private static double parseDecimalSlow(byte[] line, int from, int to, long fileOffset)
+            throws IOException {
+        try {
+            return Double.parseDouble(decode(line, from, to).trim());
+        } catch (NumberFormatException e) {
+            throw malformedRow(fileOffset, "invalid number");
+        }
+    }
+
+    private static int parseQuantity(byte[] line, int from, int to, long fileOffset)
+            throws IOException {
+        if (from == to) {
+            throw malformedRow(fileOffset, "missing quantity");
+        }
+        long quantity = 0;
+        for (int i = from; i < to; i++) {
+            byte b = line[i];
+            if (b < '0' || b > '9') {
+                throw malformedRow(fileOffset, "invalid quantity");
+            }
+            quantity = quantity * 10 + (b - '0');
+            if (quantity > Integer.MAX_VALUE) {
+                throw malformedRow(fileOffset, "quantity too large");
+            }
+        }
+        return (int) quantity;
+    }
+
+    private static IOException malformedRow(long fileOffset, String reason) {
+        return new IOException(
+                "Malformed catalog row at byte offset " + fileOffset + ": " + reason + ".");
+    }
+}
@@ -0,0 +1,126 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * An immutable, versioned view of the item catalog. A snapshot consists of a large base index and a
+ * small overlay with the items changed since the base was built. Applying a batch of changes
+ * creates a new snapshot that shares the base with the old one. The overlay is an
+ * {@link OverlayTrie}, so the new overlay also shares all but the changed paths with the old one,
+ * and a change costs the same however large the overlay is. When the overlay has grown too large,
+ * it is merged into a new base. The base is a {@link PerfectHashIndex}, since it is never changed
+ * once built.
+ * <p>
+ * Neither the base nor the overlay is modified after the snapshot has been created, so a snapshot
+ * can be read by any number of threads without locking.
+ *
+ * @param <V> The type of the catalog entries.
+ */
+final class CatalogSnapshot<V> {
+    private static final int MIN_OVERLAY_LIMIT = 64;
+    private static final int OVERLAY_LIMIT_DIVISOR = 8;
+
+    private final long version;
+    private final PerfectHashIndex<V> base;
+    private final OverlayTrie<V> overlay;
+    private final int addedItems;
+
+    private CatalogSnapshot(long version, PerfectHashIndex<V> base, OverlayTrie<V> overlay,
+            int addedItems) {
+        this.version = version;
+        this.base = base;
+        this.overlay = overlay;
+        this.addedItems = addedItems;
+    }
+
+    /**
+     * Creates a snapshot with the specified entries and no overlay. The entries are indexed, the
+     * map itself is not kept.
+     *
+     * @param version The version of the new snapshot.
+     * @param entries The catalog entries, keyed by item ID.
+     * @return The new snapshot.
+     */
+    static <V> CatalogSnapshot<V> of(long version, Map<String, V> entries) {
+        return new CatalogSnapshot<>(version, PerfectHashIndex.build(entries),
+                OverlayTrie.empty(), 0);
+    }
+
+    /**
+     * Gets the version of this snapshot. Every new snapshot has a higher version than the one it
+     * was created from.
+     *
+     * @return The version.
+     */
+    long version() {
+        return version;
+    }
+
+    /**
+     * Finds the entry with the specified item ID.
+     *
+     * @param itemID The ID of the item to find.
+     * @return The entry, or <code>null</code> if there is no such item in this snapshot.
+     */
+    V get(String itemID) {
+        if (overlay.size() != 0) {
+            V changed = overlay.get(itemID);
+            if (changed != null) {
+                return changed;
+            }
+        }
+        return base.get(itemID);
+    }
+
+    /**
+     * Gets the number of items in this snapshot.
+     *
+     * @return The number of items.
+     */
+    int size() {
+        return base.size() + addedItems;
+    }
+
+    /**
+     * Calls the specified action once for every item ID in this snapshot.
+     *
+     * @param action The action to call.
+     */
+    void forEachItemID(Consumer<String> action) {
+        base.forEach((itemID, entry) -> action.accept(itemID));
+        overlay.forEach((itemID, entry) -> {
+            if (base.get(itemID) == null) {
+                action.accept(itemID);
+            }
+        });
+    }
+
+    /**
+     * Creates the next version of this snapshot, with the specified entries added or replaced.
+     * This snapshot is not changed.
+     *
+     * @param changes The new entries, keyed by item ID.
+     * @return The new snapshot.
+     */
+    CatalogSnapshot<V> withChanges(Map<String, V> changes) {
+        OverlayTrie<V> newOverlay = overlay;
+        int newAddedItems = addedItems;
+        for (Map.Entry<String, V> change : changes.entrySet()) {
+            String itemID = change.getKey();
+            if (newOverlay.get(itemID) == null && base.get(itemID) == null) {
+                newAddedItems++;
+            }
+            newOverlay = newOverlay.with(itemID, change.getValue());
+        }
+        int overlayLimit = Math.max(MIN_OVERLAY_LIMIT, base.size() / OVERLAY_LIMIT_DIVISOR);
+        if (newOverlay.size() <= overlayLimit) {
+            return new CatalogSnapshot<>(version + 1, base, newOverlay, newAddedItems);
+        }
+        Map<String, V> newBase = HashMap.newHashMap(base.size() + newAddedItems);
+        base.forEach(newBase::put);
+        newOverlay.forEach(newBase::put);
+        return of(version + 1, newBase);
+    }
+}
@@ -0,0 +1,121 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent lookups of the same item ID into one lookup in the underlying
+ * {@link ItemLookup}. The first caller for an ID performs the lookup, and all callers asking for
+ * the same ID while it is in flight receive its result. Once the lookup has finished, the next call
+ * for that ID starts a new lookup, so results are never served from a cache.
+ * <p>
+ * Both the synchronous and the asynchronous lookups share the same in-flight lookups.
+ */
+public class CoalescingItemLookup implements ItemLookup {
+    private final ItemLookup delegate;
+    private final ConcurrentMap<String, CompletableFuture<ItemLookupResult>> inFlight =
+            new ConcurrentHashMap<>();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder coalescedLookups = new LongAdder();
+
+    /**
+     * Creates a new instance in front of the specified lookup.
+     *
+     * @param delegate Performs the actual lookups.
+     */
+    public CoalescingItemLookup(ItemLookup delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Looks up an item, waiting for an identical lookup already in flight if there is one.
+     *
+     * @param itemID The ID of the item to find.
+     * @return The result of the lookup. A lookup that fails with an unexpected exception gives a
+     *         {@link ItemLookupResult.Status#BACKEND_FAILURE} result.
+     */
+    @Override
+    public ItemLookupResult lookupItem(String itemID) {
+        lookups.increment();
+        CompletableFuture<ItemLookupResult> own = new CompletableFuture<>();
+        CompletableFuture<ItemLookupResult> leader = inFlight.putIfAbsent(itemID, own);
+        if (leader != null) {
+            coalescedLookups.increment();
+            return leader.join();
+        }
+        return performLookup(itemID, own);
+    }
+
+    /**
+     * Looks up an item without blocking the caller. If an identical lookup is already in flight,
+     * its result is used, otherwise a new lookup is started on the specified executor.
+     *
+     * @param itemID The ID of the item to find.
+     * @param executor Runs the lookup if a new one is needed.
+     * @return A future completed with the result of the lookup. Completing or cancelling it does
+     *         not affect other callers. If the executor rejects the lookup, it is completed with a
+     *         backend failure.
+     */
+    public CompletableFuture<ItemLookupResult> lookupItemAsync(String itemID, Executor executor) {
+        lookups.increment();
+        CompletableFuture<ItemLookupResult> own = new CompletableFuture<>();
+        CompletableFuture<ItemLookupResult> leader = inFlight.putIfAbsent(itemID, own);
+        if (leader != null) {
+            coalescedLookups.increment();
+            return leader.copy();
+        }
+        try {
+            executor.execute(() -> performLookup(itemID, own));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(itemID, own);
+            own.complete(ItemLookupResult.backendFailure());
+        }
+        return own.copy();
+    }
+
+    private ItemLookupResult performLookup(String itemID, CompletableFuture<ItemLookupResult> own) {
+        ItemLookupResult result = ItemLookupResult.backendFailure();
+        try {
+            result = delegate.lookupItem(itemID);
+        } catch (RuntimeException e) {
+            // Reported to all waiting callers as a backend failure.
+        } finally {
+            inFlight.remove(itemID, own);
+            own.complete(result);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of lookups requested from this instance.
+     *
+     * @return The number of lookups, including coalesced ones.
+     */
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * Gets the number of lookups that were served by another lookup already in flight.
+     *
+     * @return The number of coalesced lookups.
+     */
+    public long getCoalescedLookupCount() {
+        return coalescedLookups.sum();
+    }
+
+    /**
+     * Gets the fraction of lookups that did not reach the underlying lookup because they were
+     * coalesced.
+     *
+     * @return The coalescing ratio between zero and one, or zero if there have been no lookups.
+     */
+    public double getCoalescingRatio() {
+        long total = lookups.sum();
+        return total == 0 ? 0 : (double) coalescedLookups.sum() / total;
+    }
+}
@@ -1,10 +1,14 @@
 package se.kth.iv1350.pos.integration;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 import se.kth.iv1350.pos.model.Amount;
+import se.kth.iv1350.pos.model.PaymentDTO;
 import se.kth.iv1350.pos.model.ReceiptDTO;
+import se.kth.iv1350.pos.model.SaleIdGenerator;
+import se.kth.iv1350.pos.model.VatRateTotal;
 
 public class ConsolePrinter implements Printer {
 
@@ -22,7 +26,7 @@ public class ConsolePrinter implements Printer {
 
     public String createReceiptString(ReceiptDTO receipt) {
         StringBuilder builder = new StringBuilder();
-        appendReceiptHeader(builder);
+        appendReceiptHeader(builder, receipt);
         appendSaleItems(builder, receipt);
         appendReceiptTotal(builder, receipt);
         appendPaymentInfo(builder, receipt);
@@ -30,9 +34,12 @@ public class ConsolePrinter implements Printer {
         return builder.toString();
     }
 
-    private void appendReceiptHeader(StringBuilder builder) {
+    private void appendReceiptHeader(StringBuilder builder, ReceiptDTO receipt) {
         appendLine(builder, "------------------- Begin receipt -------------------");
         appendLine(builder, "Time of Sale: " + getCurrentTime());
+        if (receipt.saleId() != 0) {
+            appendLine(builder, "Receipt No: " + SaleIdGenerator.receiptNumber(receipt.saleId()));
+        }
         endSection(builder);
     }
 
@@ -49,12 +56,31 @@ public class ConsolePrinter implements Printer {
     }
 
     private void appendReceiptTotal(StringBuilder builder, ReceiptDTO receipt) {
+        if (receipt.discount().isPositive()) {
+            appendLine(builder, "Discount: -" + formatAmount(receipt.discount()));
+        }
         appendLine(builder, "Total: " + formatAmount(receipt.total()));
         appendLine(builder, "VAT: " + formatPrice(receipt.totalVat().asDouble()));
+        for (VatRateTotal rate : receipt.vatBreakdown()) {
+            appendLine(builder, "  VAT " + formatRate(rate.vatRate()) + ": "
+                    + formatPrice(rate.vat().asDouble()) + " of " + formatAmount(rate.net()));
+        }
         endSection(builder);
     }
 
     private void appendPaymentInfo(StringBuilder builder, ReceiptDTO receipt) {
+        long paid = 0;
+        for (PaymentDTO payment : receipt.payments()) {
+            paid += payment.amount().toMinorUnits();
+            if (!PaymentDTO.CASH.equals(payment.method())) {
+                appendLine(builder, payment.method() + ": " + formatAmount(payment.amount())
+                        + (payment.reference() == null ? "" : " (" + payment.reference() + ")"));
+            }
+        }
+        long rounding = receipt.payments().isEmpty() ? 0 : paid - receipt.total().toMinorUnits();
+        if (rounding != 0) {
+            appendLine(builder, "Rounding: " + formatPrice(rounding / 100.0) + " SEK");
+        }
         appendLine(builder, "Cash: " + formatPrice(receipt.amountPaid().asDouble()) + " SEK");
         appendLine(builder, "Change: " + formatPrice(receipt.change().asDouble()) + " SEK");
     }
@@ -75,6 +101,10 @@ public class ConsolePrinter implements Printer {
         return formatPrice(amount.asDouble()) + " SEK";
     }
 
+    private String formatRate(int basisPoints) {
+        return BigDecimal.valueOf(basisPoints, 2).stripTrailingZeros().toPlainString() + "%";
+    }
+
     private String formatPrice(double price) {
         return String.format("%.2f", price).replace('.', ':');
     }
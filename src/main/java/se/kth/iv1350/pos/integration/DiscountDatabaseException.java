@@ -0,0 +1,29 @@
+package se.kth.iv1350.pos.integration;
+
+/**
+ * Thrown to indicate a failure in the discount database (e.g., server not running).
+ */
+public class DiscountDatabaseException extends Exception {
+    /**
+     * Creates a new instance with a detailed message.
+     *
+     * @param customerId The customer identifier that triggered the database failure.
+     */
+    public DiscountDatabaseException(String customerId) {
+        super(messageFor(customerId));
+    }
+
+    /**
+     * Creates a new instance with a detailed message and a cause.
+     *
+     * @param customerId The customer identifier that triggered the database failure.
+     * @param cause The failure of the database.
+     */
+    public DiscountDatabaseException(String customerId, Throwable cause) {
+        super(messageFor(customerId), cause);
+    }
+
+    private static String messageFor(String customerId) {
+        return "Discount database failure when searching for customer ID '" + customerId + "'.";
+    }
+}
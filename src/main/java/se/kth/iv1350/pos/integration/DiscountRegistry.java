@@ -0,0 +1,15 @@
+package se.kth.iv1350.pos.integration;
+
+/**
+ * The external discount database, which tells the discounts customers are eligible for.
+ */
+public interface DiscountRegistry {
+    /**
+     * Gets the discount of a customer, a percentage off the total cost of the entire sale.
+     *
+     * @param customerId The ID of the customer.
+     * @return The percentage, zero if the customer has no discount.
+     * @throws DiscountDatabaseException if the discount database could not be reached.
+     */
+    int getCustomerDiscount(String customerId) throws DiscountDatabaseException;
+}
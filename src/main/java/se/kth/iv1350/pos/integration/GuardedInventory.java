@@ -0,0 +1,293 @@
+package se.kth.iv1350.pos.integration;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import se.kth.iv1350.pos.model.SaleDTO;
+
+/**
+ * Guards access to the inventory backend with a circuit breaker. While the backend is healthy,
+ * all calls go through to it. After a number of failures in a row the circuit opens, and for a
+ * while lookups are answered from a local replica of the catalog instead of waiting for a backend
+ * that is likely to fail again. When that time has passed, one probe call is let through. If it
+ * succeeds the circuit closes, otherwise it stays open for another period.
+ * <p>
+ * The replica is synced from the backend after successful calls, at most once per sync interval.
+ * Inventory updates are queued and sent to the backend in order. While the circuit is open they
+ * stay in the queue. They are replayed by the next inventory update, or in the background after
+ * the next successful lookup, so a scan never waits for queued writes. The queue is bounded, and
+ * when it is full a new update is refused, so a backend that is down for long can not exhaust the
+ * memory of the register and no update is lost without the caller knowing.
+ */
+public class GuardedInventory implements ItemLookup {
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(5);
+    private static final Duration SYNC_INTERVAL = Duration.ofSeconds(30);
+    private static final int PENDING_WRITE_CAPACITY = 10_000;
+
+    /**
+     * The states of the circuit breaker.
+     */
+    public enum State {
+        /** Calls go through to the backend. */
+        CLOSED,
+        /** Calls are answered locally without calling the backend. */
+        OPEN,
+        /** One probe call is being made to see if the backend has recovered. */
+        HALF_OPEN
+    }
+
+    private final ItemLookup backend;
+    private final Supplier<ItemLookup> replicaSource;
+    private final Consumer<SaleDTO> backendWriter;
+    private final LongSupplier clock;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final long syncNanos;
+    private final BlockingQueue<SaleDTO> pendingWrites;
+    private final Executor drainExecutor;
+    private final ReentrantLock replayLock = new ReentrantLock();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final LongAdder replicaReads = new LongAdder();
+    private volatile ItemLookup replica;
+    private volatile long lastSync;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    /**
+     * Creates a new instance guarding the specified inventory registry.
+     *
+     * @param inventoryRegistry The inventory backend.
+     */
+    public GuardedInventory(InventoryRegistry inventoryRegistry) {
+        this(inventoryRegistry, inventoryRegistry::replicate, inventoryRegistry::updateInventory,
+                System::nanoTime, FAILURE_THRESHOLD, OPEN_DURATION, SYNC_INTERVAL,
+                PENDING_WRITE_CAPACITY, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Creates a new instance with the specified backend, clock and settings.
+     *
+     * @param backend Performs the lookups in the backend.
+     * @param replicaSource Creates a new local replica of the backend catalog.
+     * @param backendWriter Sends inventory updates to the backend.
+     * @param clock Returns the current time in nanoseconds.
+     * @param failureThreshold The number of failures in a row that opens the circuit.
+     * @param openDuration How long the circuit stays open before a probe call is made.
+     * @param syncInterval The shortest time between two syncs of the replica.
+     * @param pendingWriteCapacity The number of inventory updates that can be queued.
+     * @param drainExecutor Replays queued updates after a successful lookup.
+     */
+    GuardedInventory(ItemLookup backend, Supplier<ItemLookup> replicaSource,
+            Consumer<SaleDTO> backendWriter, LongSupplier clock, int failureThreshold,
+            Duration openDuration, Duration syncInterval, int pendingWriteCapacity,
+            Executor drainExecutor) {
+        this.backend = backend;
+        this.replicaSource = replicaSource;
+        this.backendWriter = backendWriter;
+        this.clock = clock;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.syncNanos = syncInterval.toNanos();
+        this.pendingWrites = new LinkedBlockingQueue<>(pendingWriteCapacity);
+        this.drainExecutor = drainExecutor;
+        this.replica = replicaSource.get();
+        this.lastSync = clock.getAsLong();
+    }
+
+    /**
+     * Looks up an item in the backend, or in the local replica if the circuit is open. A backend
+     * failure while the circuit is closed is returned to the caller, and counts towards opening
+     * the circuit.
+     *
+     * @param itemID The ID of the item to find.
+     * @return The result of the lookup.
+     */
+    @Override
+    public ItemLookupResult lookupItem(String itemID) {
+        if (!allowRequest()) {
+            replicaReads.increment();
+            return replica.lookupItem(itemID);
+        }
+        ItemLookupResult result;
+        try {
+            result = backend.lookupItem(itemID);
+        } catch (RuntimeException e) {
+            result = ItemLookupResult.backendFailure();
+        }
+        if (result.status() == ItemLookupResult.Status.BACKEND_FAILURE) {
+            recordFailure();
+            return result;
+        }
+        recordSuccess();
+        if (!pendingWrites.isEmpty()) {
+            scheduleDrain();
+        }
+        return result;
+    }
+
+    /**
+     * Updates the inventory with the completed sale data. The update is queued and sent to the
+     * backend after all earlier updates. If the circuit is open, or the backend fails, the update
+     * stays in the queue until a backend call succeeds.
+     *
+     * @param saleDTO The <code>SaleDTO</code> containing sale information.
+     * @throws IllegalStateException if the queue is still full after the queued updates have been
+     *         replayed. The update is then not queued, and may be retried once the backend has
+     *         caught up.
+     */
+    public void updateInventory(SaleDTO saleDTO) {
+        boolean queued = pendingWrites.offer(saleDTO);
+        while (allowRequest()) {
+            if (!replayPendingWrites()) {
+                recordFailure();
+                break;
+            }
+            recordSuccess();
+            if (queued) {
+                break;
+            }
+            queued = pendingWrites.offer(saleDTO);
+        }
+        if (!queued) {
+            throw new IllegalStateException("The inventory update queue is full, "
+                    + pendingWrites.size() + " updates are waiting for the backend.");
+        }
+    }
+
+    /**
+     * Gets the current state of the circuit breaker.
+     *
+     * @return The state.
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Gets the number of inventory updates waiting to be sent to the backend.
+     *
+     * @return The number of queued updates.
+     */
+    public int getPendingWriteCount() {
+        return pendingWrites.size();
+    }
+
+    /**
+     * Gets the number of lookups answered from the local replica because the circuit was open.
+     *
+     * @return The number of replica reads.
+     */
+    public long getReplicaReadCount() {
+        return replicaReads.sum();
+    }
+
+    /**
+     * Syncs the local replica with the backend now, regardless of when it was last synced.
+     */
+    public void syncReplica() {
+        replica = replicaSource.get();
+        lastSync = clock.getAsLong();
+    }
+
+    private synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    /**
+     * Records a successful backend call and syncs the replica if it is due.
+     */
+    private void recordSuccess() {
+        synchronized (this) {
+            consecutiveFailures = 0;
+            state = State.CLOSED;
+            probeInFlight = false;
+        }
+        if (clock.getAsLong() - lastSync >= syncNanos) {
+            syncReplica();
+        }
+    }
+
+    private synchronized void recordFailure() {
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * Starts replaying the queued updates in the background, unless a replay is already
+     * scheduled.
+     */
+    private void scheduleDrain() {
+        if (!drainScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            drainExecutor.execute(() -> {
+                try {
+                    if (!replayPendingWrites()) {
+                        recordFailure();
+                    }
+                } finally {
+                    drainScheduled.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            drainScheduled.set(false);
+        }
+    }
+
+    /**
+     * Sends queued updates to the backend in order, stopping at the first failure. The failed
+     * update stays first in the queue.
+     *
+     * @return <code>true</code> if the queue was emptied.
+     */
+    private boolean replayPendingWrites() {
+        replayLock.lock();
+        try {
+            SaleDTO next;
+            while ((next = pendingWrites.peek()) != null) {
+                try {
+                    backendWriter.accept(next);
+                } catch (RuntimeException e) {
+                    return false;
+                }
+                pendingWrites.poll();
+            }
+            return true;
+        } finally {
+            replayLock.unlock();
+        }
+    }
+}
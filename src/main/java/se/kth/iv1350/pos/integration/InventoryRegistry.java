@@ -1,17 +1,41 @@
 package se.kth.iv1350.pos.integration;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
 
 import se.kth.iv1350.pos.model.SaleDTO;
 
 /**
  * Simulates an external inventory system, storing and retrieving item data. Receives sale data as
  * {@link SaleDTO} from the controller.
+ * <p>
+ * The items are kept in an immutable {@link CatalogSnapshot}. Lookups read the current snapshot
+ * through a single volatile read and never lock. Changes are applied by building a new snapshot
+ * and publishing it with a compare-and-set, so a lookup always sees one consistent catalog
+ * version. Writers do not lock either: a writer that loses the race to another one builds its
+ * snapshot again from the catalog that won, so no change is lost. Items already
+ * returned to a sale are plain {@link ItemDTO} copies and keep the prices they were resolved with.
+ * <p>
+ * Every snapshot is published together with an {@link ItemIdFilter} over its item IDs, which
+ * rejects most unknown IDs, such as mis-scans, before the catalog is searched.
  */
-public class InventoryRegistry {
+public class InventoryRegistry implements ItemLookup {
+    private static final Duration DEDUPLICATION_WINDOW = Duration.ofHours(1);
+    private static final int DEDUPLICATION_CAPACITY = 16_384;
     private static InventoryRegistry instance;
-    private final Map<String, ItemData> inventory = new HashMap<>();
+    private final SaleUpdates updatedSales =
+            new SaleUpdates(DEDUPLICATION_WINDOW, DEDUPLICATION_CAPACITY);
+    private final AtomicReference<Catalog> catalog = new AtomicReference<>();
+    private final LongAdder filterRejections = new LongAdder();
+    private final LongAdder filterFalsePositives = new LongAdder();
 
     /**
      * Returns the singleton instance of <code>InventoryRegistry</code>. If it does not exist, it is
@@ -27,9 +51,10 @@ public class InventoryRegistry {
     }
 
     /**
-     * Private constructor to enforce singleton pattern. Initializes inventory.
+     * Creates a new instance with the initial inventory. Apart from tests, the singleton returned
+     * by {@link #getInstance()} is used.
      */
-    private InventoryRegistry() {
+    InventoryRegistry() {
         initializeInventory();
     }
 
@@ -43,15 +68,147 @@ public class InventoryRegistry {
      */
     public ItemDTO findItemById(String itemID)
             throws ItemNotFoundException, DabaseFailureException {
+        ItemLookupResult result = lookupItem(itemID);
+        switch (result.status()) {
+            case FOUND:
+                return result.item();
+            case NOT_FOUND:
+                throw new ItemNotFoundException(itemID);
+            default:
+                throw new DabaseFailureException(itemID);
+        }
+    }
+
+    /**
+     * Looks up an item in the inventory by its ID without throwing exceptions. This is the cheap
+     * path for lookups that often miss, such as mis-scans, since no exception and stack trace are
+     * created for a miss.
+     *
+     * @param itemID The ID of the item to find.
+     * @return The result of the lookup. Misses and failures return shared constant results.
+     */
+    @Override
+    public ItemLookupResult lookupItem(String itemID) {
         // Simulate database failure for a hardcoded ID
         if ("dbfail".equals(itemID)) {
-            throw new DabaseFailureException(itemID);
+            return ItemLookupResult.backendFailure();
+        }
+        return lookupIn(catalog.get(), itemID);
+    }
+
+    /**
+     * Creates a local replica of the catalog as it is right now. The replica answers lookups from
+     * the current catalog snapshot without going through the backend, and is not affected by later
+     * changes. Since snapshots are immutable, creating a replica only copies a reference.
+     *
+     * @return A lookup over the current catalog version.
+     */
+    ItemLookup replicate() {
+        Catalog current = catalog.get();
+        return itemID -> lookupIn(current, itemID);
+    }
+
+    private ItemLookupResult lookupIn(Catalog current, String itemID) {
+        if (!current.idFilter().mightContain(itemID)) {
+            filterRejections.increment();
+            return ItemLookupResult.notFound();
         }
-        ItemData item = inventory.get(itemID);
+        ItemData item = current.items().get(itemID);
         if (item == null) {
-            throw new ItemNotFoundException(itemID);
+            filterFalsePositives.increment();
+            return ItemLookupResult.notFound();
+        }
+        return item.toLookupResult();
+    }
+
+    /**
+     * Gets the estimated false positive rate of the item ID filter, that is the probability that
+     * an unknown ID is not rejected by the filter and has to be searched for in the catalog.
+     *
+     * @return The estimated false positive rate, between zero and one.
+     */
+    public double getItemFilterFalsePositiveRate() {
+        return catalog.get().idFilter().estimatedFalsePositiveRate();
+    }
+
+    /**
+     * Gets the observed false positive rate of the item ID filter, that is the fraction of all
+     * lookups of unknown IDs so far that were not rejected by the filter.
+     *
+     * @return The observed false positive rate, or zero if no unknown IDs have been looked up.
+     */
+    public double getObservedItemFilterFalsePositiveRate() {
+        long falsePositives = filterFalsePositives.sum();
+        long misses = falsePositives + filterRejections.sum();
+        return misses == 0 ? 0 : (double) falsePositives / misses;
+    }
+
+    /**
+     * Gets the version of the catalog currently used for lookups. The version increases every
+     * time the catalog is changed or reloaded.
+     *
+     * @return The current catalog version.
+     */
+    public long getCatalogVersion() {
+        return catalog.get().items().version();
+    }
+
+    /**
+     * Replaces the whole inventory with the items in the specified catalog file. The new catalog
+     * is built off to the side and then swapped in at once, so lookups running during the reload
+     * are never blocked and always see either the old or the new catalog. If loading fails, the
+     * current catalog is kept.
+     *
+     * @param catalogFile The catalog file to load, see {@link CatalogLoader} for its format.
+     * @return The number of items in the new catalog.
+     * @throws IOException if the file could not be read or contains a malformed row.
+     */
+    public int loadCatalog(Path catalogFile) throws IOException {
+        Map<String, ItemData> loaded = CatalogLoader.load(catalogFile, ItemData::new);
+        publish(current -> {
+            CatalogSnapshot<ItemData> items =
+                    CatalogSnapshot.of(current.items().version() + 1, loaded);
+            return new Catalog(items, buildFilter(items));
+        });
+        return loaded.size();
+    }
+
+    /**
+     * Publishes a batch of item changes, such as new prices or VAT rates, as one new catalog
+     * version. Items not yet in the catalog are added with a quantity of zero, existing items keep
+     * their quantity. Lookups see either none or all of the changes in the batch.
+     *
+     * @param updates The new item data. Items are matched by ID.
+     * @return The catalog version that contains the changes.
+     */
+    public long publishItemUpdates(Collection<ItemDTO> updates) {
+        return publish(current -> withItemUpdates(current, updates)).items().version();
+    }
+
+    /**
+     * Creates the catalog with a batch of item changes applied. The ID filter of the current
+     * catalog is copied before new IDs are added, since lookups may be reading it.
+     */
+    private static Catalog withItemUpdates(Catalog current, Collection<ItemDTO> updates) {
+        ItemIdFilter idFilter = current.idFilter();
+        Map<String, ItemData> changes = HashMap.newHashMap(updates.size());
+        for (ItemDTO update : updates) {
+            ItemData existing = current.items().get(update.id());
+            int quantity = existing == null ? 0 : existing.quantity;
+            if (existing == null) {
+                if (idFilter == current.idFilter()) {
+                    idFilter = idFilter.copy();
+                }
+                idFilter.add(update.id());
+            }
+            changes.put(update.id(), new ItemData(update.id(), update.name(),
+                    update.description(), update.price(), update.vatRate(), quantity));
+        }
+        CatalogSnapshot<ItemData> items = current.items().withChanges(changes);
+        if (idFilter.isOverloaded()) {
+            idFilter = buildFilter(items);
         }
-        return item.toDTO();
+        return new Catalog(items, idFilter);
     }
 
     /**
@@ -68,32 +225,104 @@ public class InventoryRegistry {
         if (quantity < 0) {
             return;
         }
-        if (!inventory.containsKey(itemID)) {
-            return;
+        publish(current -> {
+            ItemData item = current.items().get(itemID);
+            if (item == null) {
+                return current;
+            }
+            return new Catalog(
+                    current.items().withChanges(Map.of(itemID, item.withQuantity(quantity))),
+                    current.idFilter());
+        });
+    }
+
+    /**
+     * Publishes a new catalog created from the current one. If another writer publishes first,
+     * the new catalog is created again from the one that writer published.
+     *
+     * @param change Creates the new catalog from the current one, or returns the current one if
+     *        there is nothing to change. Must not modify the current catalog.
+     * @return The published catalog.
+     */
+    private Catalog publish(UnaryOperator<Catalog> change) {
+        while (true) {
+            Catalog current = catalog.get();
+            Catalog next = change.apply(current);
+            if (next == current || catalog.compareAndSet(current, next)) {
+                return next;
+            }
         }
-        inventory.get(itemID).updateQuantity(quantity);
     }
 
     private void initializeInventory() {
+        Map<String, ItemData> inventory = new HashMap<>();
         inventory.put("1", new ItemData("1", "Medicine", "Pain relief medicine", 10, 0.0, 4));
         inventory.put("2", new ItemData("2", "Newspaper", "Aftonbladet", 20, 0.06, 6));
         inventory.put("3", new ItemData("3", "Egg", "Free-range eggs", 30, 0.12, 8));
         inventory.put("4", new ItemData("4", "Phone", "Smartphone", 40, 0.25, 8));
+        inventory.put("7310865004703", new ItemData("7310865004703", "Milk", "Whole milk 1 l",
+                15, 0.12, 20));
+        // Variable-measure items, priced per kilogram or by the price on the label
+        inventory.put("2500101000001", new ItemData("2500101000001", "Ham", "Smoked ham, deli",
+                150, 0.12, 10));
+        inventory.put("2000102000005", new ItemData("2000102000005", "Cheese", "Aged cheese",
+                0, 0.12, 10));
+        CatalogSnapshot<ItemData> items = CatalogSnapshot.of(1, inventory);
+        catalog.set(new Catalog(items, buildFilter(items)));
+    }
+
+    /**
+     * Builds an item ID filter over all items in the specified snapshot, with room for as many
+     * items again to be added incrementally.
+     */
+    private static ItemIdFilter buildFilter(CatalogSnapshot<ItemData> items) {
+        ItemIdFilter idFilter = ItemIdFilter.forExpectedItems(items.size() * 2);
+        items.forEachItemID(idFilter::add);
+        return idFilter;
     }
 
     /**
      * Updates the inventory system with the completed sale data. Currently, does not perform any
-     * actual operations.
+     * actual operations. A sale with an ID that has already been updated within the last hour is
+     * skipped, so retried and replayed updates are only applied once. If the sale is being updated
+     * by another call, this call waits for that update.
      *
      * @param saleDTO The <code>SaleDTO</code> containing sale information.
+     * @throws IllegalStateException if an update of the sale made by another call failed.
      */
     public void updateInventory(SaleDTO saleDTO) {
-        System.out.printf("[%s]: Inventory updated.%n", this.getClass().getSimpleName());
+        long saleId = saleDTO.saleId();
+        if (saleId > 0) {
+            CompletableFuture<Void> other = updatedSales.claim(saleId);
+            if (other != null) {
+                SaleUpdates.await(other);
+                return;
+            }
+        }
+        try {
+            System.out.printf("[%s]: Inventory updated for sale %d.%n",
+                    this.getClass().getSimpleName(), saleId);
+        } catch (RuntimeException | Error e) {
+            if (saleId > 0) {
+                updatedSales.finish(saleId, e);
+            }
+            throw e;
+        }
+        if (saleId > 0) {
+            updatedSales.finish(saleId, null);
+        }
+    }
+
+    /**
+     * A catalog snapshot together with the ID filter built for it, published as one unit.
+     */
+    private record Catalog(CatalogSnapshot<ItemData> items, ItemIdFilter idFilter) {
     }
 
     /**
      * Represents a database item, including its ID, name, description, price, VAT rate, and
-     * quantity. Can not be seen by other classes.
+     * quantity. Can not be seen by other classes. Instances are immutable, apart from a cached
+     * lookup result, since they are shared between catalog snapshots.
      */
     private static final class ItemData {
         private final String itemID;
@@ -101,8 +330,8 @@ public class InventoryRegistry {
         private final String description;
         private final double price;
         private final double vatRate;
-        @SuppressWarnings("unused")
-        private int quantity;
+        private final int quantity;
+        private ItemLookupResult lookupResult;
 
         private ItemData(String itemID, String name, String description, double price,
                 double vatRate, int quantity) {
@@ -114,12 +343,23 @@ public class InventoryRegistry {
             this.quantity = quantity;
         }
 
-        private ItemDTO toDTO() {
-            return new ItemDTO(itemID, name, description, price, vatRate);
+        /**
+         * Gets the lookup result for this item. The result is created on the first lookup and
+         * reused after that. Since the result is immutable, a race between two first lookups
+         * only creates one extra copy.
+         */
+        private ItemLookupResult toLookupResult() {
+            ItemLookupResult result = lookupResult;
+            if (result == null) {
+                result = ItemLookupResult
+                        .found(new ItemDTO(itemID, name, description, price, vatRate));
+                lookupResult = result;
+            }
+            return result;
         }
 
-        private void updateQuantity(int quantity) {
-            this.quantity = quantity;
+        private ItemData withQuantity(int quantity) {
+            return new ItemData(itemID, name, description, price, vatRate, quantity);
         }
     }
 
@@ -0,0 +1,134 @@
+package se.kth.iv1350.pos.integration;
+
+/**
+ * A Bloom filter over the item IDs in the catalog, used to reject unknown IDs before searching the
+ * catalog. The filter never rejects an ID that has been added, but may let a small fraction of
+ * unknown IDs through.
+ * <p>
+ * IDs can be added at any time. Adding is not thread-safe, so IDs are only added to a filter that
+ * has not been published yet, for example a {@link #copy()} of the current one, before the
+ * catalog containing the new IDs is published. Readers that have seen that catalog through a
+ * volatile read also see the added bits.
+ */
+final class ItemIdFilter {
+    private static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    private static final int MIN_BITS = 1024;
+    private static final int MAX_HASHES = 16;
+    private static final double LN2 = Math.log(2);
+
+    private final long[] words;
+    private final long bitMask;
+    private final int hashCount;
+    private final int expectedItems;
+    private volatile int itemCount;
+
+    private ItemIdFilter(long[] words, int hashCount, int expectedItems, int itemCount) {
+        this.words = words;
+        this.bitMask = (long) words.length * Long.SIZE - 1;
+        this.hashCount = hashCount;
+        this.expectedItems = expectedItems;
+        this.itemCount = itemCount;
+    }
+
+    /**
+     * Creates an empty filter sized for the specified number of items at a false positive rate of
+     * about one percent.
+     *
+     * @param expectedItems The number of IDs the filter should hold.
+     * @return The new filter.
+     */
+    static ItemIdFilter forExpectedItems(int expectedItems) {
+        int items = Math.max(expectedItems, 1);
+        double optimalBits = -items * Math.log(DEFAULT_FALSE_POSITIVE_RATE) / (LN2 * LN2);
+        int bitCount = MIN_BITS;
+        while (bitCount < optimalBits && bitCount < (1 << 30)) {
+            bitCount <<= 1;
+        }
+        int hashCount = (int) Math.round((double) bitCount / items * LN2);
+        return new ItemIdFilter(new long[bitCount / Long.SIZE],
+                Math.clamp(hashCount, 1, MAX_HASHES), items, 0);
+    }
+
+    /**
+     * Creates a copy of this filter, which IDs can be added to without changing this filter.
+     *
+     * @return The copy.
+     */
+    ItemIdFilter copy() {
+        return new ItemIdFilter(words.clone(), hashCount, expectedItems, itemCount);
+    }
+
+    /**
+     * Adds an item ID to the filter.
+     *
+     * @param itemID The ID to add.
+     */
+    void add(String itemID) {
+        long hash = hash(itemID);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        itemCount++;
+    }
+
+    /**
+     * Checks if an item ID may have been added to the filter.
+     *
+     * @param itemID The ID to check.
+     * @return <code>false</code> if the ID has definitely not been added, <code>true</code> if it
+     *         probably has.
+     */
+    boolean mightContain(String itemID) {
+        long hash = hash(itemID);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if more IDs have been added than the filter was sized for, so that the false positive
+     * rate is higher than intended and the filter should be rebuilt larger.
+     *
+     * @return <code>true</code> if the filter is overloaded.
+     */
+    boolean isOverloaded() {
+        return itemCount > expectedItems;
+    }
+
+    /**
+     * Estimates the false positive rate from the number of added IDs and the filter size.
+     *
+     * @return The probability that an unknown ID is let through.
+     */
+    double estimatedFalsePositiveRate() {
+        double bitCount = bitMask + 1;
+        return Math.pow(1 - Math.exp(-hashCount * itemCount / bitCount), hashCount);
+    }
+
+    private static long hash(String itemID) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < itemID.length(); i++) {
+            hash ^= itemID.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,15 @@
+package se.kth.iv1350.pos.integration;
+
+/**
+ * Looks up items by their ID without throwing exceptions for misses or failures. Implemented by
+ * the {@link InventoryRegistry} and by layers placed in front of it.
+ */
+public interface ItemLookup {
+    /**
+     * Looks up an item by its ID.
+     *
+     * @param itemID The ID of the item to find.
+     * @return The result of the lookup.
+     */
+    ItemLookupResult lookupItem(String itemID);
+}
@@ -0,0 +1,65 @@
+package se.kth.iv1350.pos.integration;
+
+/**
+ * The outcome of looking up an item in the inventory, returned instead of throwing an exception
+ * when the item is missing or the inventory can not be reached. The results for misses and
+ * failures are shared constants, so no objects are created for them.
+ *
+ * @param status Whether the item was found, and if not, why.
+ * @param item The item that was found, or <code>null</code> if the status is not
+ *        {@link Status#FOUND}.
+ */
+public record ItemLookupResult(Status status, ItemDTO item) {
+    private static final ItemLookupResult NOT_FOUND = new ItemLookupResult(Status.NOT_FOUND, null);
+    private static final ItemLookupResult BACKEND_FAILURE =
+            new ItemLookupResult(Status.BACKEND_FAILURE, null);
+
+    /**
+     * The possible outcomes of an item lookup.
+     */
+    public enum Status {
+        /** The item exists and is included in the result. */
+        FOUND,
+        /** There is no item with the specified ID. */
+        NOT_FOUND,
+        /** The inventory could not be searched. */
+        BACKEND_FAILURE
+    }
+
+    /**
+     * Creates the result for a found item.
+     *
+     * @param item The found item.
+     * @return A result with status {@link Status#FOUND}.
+     */
+    public static ItemLookupResult found(ItemDTO item) {
+        return new ItemLookupResult(Status.FOUND, item);
+    }
+
+    /**
+     * Gets the shared result for a missing item.
+     *
+     * @return The result with status {@link Status#NOT_FOUND}.
+     */
+    public static ItemLookupResult notFound() {
+        return NOT_FOUND;
+    }
+
+    /**
+     * Gets the shared result for a failed lookup.
+     *
+     * @return The result with status {@link Status#BACKEND_FAILURE}.
+     */
+    public static ItemLookupResult backendFailure() {
+        return BACKEND_FAILURE;
+    }
+
+    /**
+     * Checks if the item was found.
+     *
+     * @return <code>true</code> if the status is {@link Status#FOUND}.
+     */
+    public boolean isFound() {
+        return status == Status.FOUND;
+    }
+}
@@ -0,0 +1,400 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * A durable double-entry ledger kept in append-only segment files in one directory. Every journal
+ * entry is a set of postings to accounts that sum to zero, with debits as positive and credits as
+ * negative amounts in öre. Entries are never changed once written.
+ * <p>
+ * Entries are appended to the newest segment. When a segment reaches its size limit, a new
+ * segment is started, named after the sequence number of its first entry. Each entry is stored as
+ * one binary record with a CRC32 checksum, and is forced to disk before {@link #post} returns.
+ * Posting a batch of entries writes and forces them together, which is much cheaper than posting
+ * them one by one.
+ * <p>
+ * The balance of every account is kept in memory and is rebuilt from the segments when the ledger
+ * is opened. A record that was only partly written when the process stopped is cut off at the end
+ * of the newest segment. Account statements are read from memory-mapped segments.
+ */
+public class Ledger implements Closeable {
+    static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".ledger";
+    private static final int LENGTH_SIZE = Integer.BYTES;
+    private static final int HEADER_SIZE = Long.BYTES * 3 + Integer.BYTES;
+    private static final int POSTING_SIZE = Integer.BYTES + Long.BYTES;
+    private static final int CRC_SIZE = Integer.BYTES;
+    private static final int MAX_POSTINGS = 1024;
+
+    /**
+     * One posting in a journal entry.
+     *
+     * @param account The account number.
+     * @param amount The amount in öre, positive for a debit and negative for a credit.
+     */
+    public record Posting(int account, long amount) {
+    }
+
+    /**
+     * A balanced journal entry.
+     *
+     * @param timestamp When the entry was made, in milliseconds since the epoch.
+     * @param reference A reference to the source of the entry, such as a sale number, or zero.
+     * @param postings The postings. They must sum to zero.
+     */
+    public record Entry(long timestamp, long reference, List<Posting> postings) {
+        /**
+         * Creates a new instance and checks that it balances.
+         *
+         * @throws IllegalArgumentException if the entry has no postings, too many postings, or
+         *         the postings do not sum to zero.
+         */
+        public Entry {
+            postings = List.copyOf(postings);
+            if (postings.isEmpty() || postings.size() > MAX_POSTINGS) {
+                throw new IllegalArgumentException(
+                        "An entry must have between 1 and " + MAX_POSTINGS + " postings.");
+            }
+            long sum = 0;
+            for (Posting posting : postings) {
+                sum += posting.amount();
+            }
+            if (sum != 0) {
+                throw new IllegalArgumentException("Entry does not balance, off by " + sum);
+            }
+        }
+    }
+
+    /**
+     * One line in an account statement.
+     *
+     * @param sequence The sequence number of the journal entry.
+     * @param timestamp When the entry was made, in milliseconds since the epoch.
+     * @param reference The reference of the entry.
+     * @param amount The amount posted to the account, positive for a debit.
+     * @param balance The balance of the account after this line.
+     */
+    public record StatementLine(long sequence, long timestamp, long reference, long amount,
+            long balance) {
+    }
+
+    private final Path directory;
+    private final long segmentSize;
+    private final Map<Integer, Long> balances = new ConcurrentHashMap<>();
+    private final List<Path> sealedSegments = new ArrayList<>();
+    private Path activeSegment;
+    private FileChannel activeChannel;
+    private long activeSize;
+    private long nextSequence = 1;
+
+    private Ledger(Path directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Opens the ledger in the specified directory, creating it if it does not exist.
+     *
+     * @param directory The directory holding the segment files.
+     * @return The opened ledger.
+     * @throws IOException if the ledger could not be read, or a segment other than the newest one
+     *         is damaged.
+     */
+    public static Ledger open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens the ledger in the specified directory with the specified segment size limit.
+     *
+     * @param directory The directory holding the segment files.
+     * @param segmentSize The size in bytes after which a new segment is started.
+     * @return The opened ledger.
+     * @throws IOException if the ledger could not be read, or a segment other than the newest one
+     *         is damaged.
+     */
+    static Ledger open(Path directory, long segmentSize) throws IOException {
+        Files.createDirectories(directory);
+        Ledger ledger = new Ledger(directory, segmentSize);
+        ledger.recover();
+        return ledger;
+    }
+
+    private void recover() throws IOException {
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            long validSize = scan(segment, Files.size(segment),
+                    (sequence, timestamp, reference, account, amount) -> {
+                        balances.merge(account, amount, Long::sum);
+                        nextSequence = Math.max(nextSequence, sequence + 1);
+                    });
+            boolean newest = i == segments.size() - 1;
+            if (validSize < Files.size(segment) && !newest) {
+                throw new IOException("Damaged ledger segment: " + segment);
+            }
+            if (newest) {
+                activeSegment = segment;
+                activeChannel = FileChannel.open(segment, StandardOpenOption.WRITE);
+                activeChannel.truncate(validSize);
+                activeChannel.position(validSize);
+                activeSize = validSize;
+            } else {
+                sealedSegments.add(segment);
+            }
+        }
+        if (activeSegment == null) {
+            startSegment();
+        }
+    }
+
+    /**
+     * Posts one journal entry.
+     *
+     * @param entry The entry to post.
+     * @return The sequence number of the entry.
+     * @throws IOException if the entry could not be written. The entry is then not posted.
+     */
+    public long post(Entry entry) throws IOException {
+        return post(List.of(entry));
+    }
+
+    /**
+     * Posts a batch of journal entries with a single write and a single force to disk.
+     *
+     * @param entries The entries to post, in order.
+     * @return The sequence number of the last entry, or of the last entry before the batch if the
+     *         batch is empty.
+     * @throws IOException if the entries could not be written. None of them are then posted.
+     */
+    public synchronized long post(List<Entry> entries) throws IOException {
+        if (activeChannel == null) {
+            throw new IOException("The ledger is closed.");
+        }
+        if (!activeChannel.isOpen()) {
+            reopenActiveSegment();
+        }
+        if (entries.isEmpty()) {
+            return nextSequence - 1;
+        }
+        int batchSize = 0;
+        for (Entry entry : entries) {
+            batchSize += recordSize(entry.postings().size());
+        }
+        if (activeSize > 0 && activeSize + batchSize > segmentSize) {
+            sealActiveSegment();
+            startSegment();
+        }
+        ByteBuffer batch = ByteBuffer.allocate(batchSize);
+        CRC32 crc = new CRC32();
+        long sequence = nextSequence;
+        for (Entry entry : entries) {
+            writeRecord(batch, crc, sequence++, entry);
+        }
+        batch.flip();
+        try {
+            while (batch.hasRemaining()) {
+                activeChannel.write(batch);
+            }
+            activeChannel.force(false);
+        } catch (IOException e) {
+            if (activeChannel.isOpen()) {
+                activeChannel.truncate(activeSize);
+                activeChannel.position(activeSize);
+            }
+            throw e;
+        }
+        activeSize += batchSize;
+        nextSequence = sequence;
+        for (Entry entry : entries) {
+            for (Posting posting : entry.postings()) {
+                balances.merge(posting.account(), posting.amount(), Long::sum);
+            }
+        }
+        return sequence - 1;
+    }
+
+    /**
+     * Gets the current balance of an account. Reading a balance never touches the disk.
+     *
+     * @param account The account number.
+     * @return The balance in öre, positive for a debit balance. Zero for unused accounts.
+     */
+    public long getBalance(int account) {
+        return balances.getOrDefault(account, 0L);
+    }
+
+    /**
+     * Gets the sequence number of the last posted entry.
+     *
+     * @return The last sequence number, or zero if the ledger is empty.
+     */
+    public synchronized long getLastSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * Reads the statement of an account, with every posting made to it in order.
+     *
+     * @param account The account number.
+     * @return The statement lines with running balances.
+     * @throws IOException if a segment could not be read.
+     */
+    public List<StatementLine> statement(int account) throws IOException {
+        List<Path> segments;
+        long readableSize;
+        synchronized (this) {
+            segments = new ArrayList<>(sealedSegments);
+            segments.add(activeSegment);
+            readableSize = activeSize;
+        }
+        List<StatementLine> lines = new ArrayList<>();
+        long[] balance = {0};
+        for (int i = 0; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            long size = i == segments.size() - 1 ? readableSize : Files.size(segment);
+            scan(segment, size, (sequence, timestamp, reference, postingAccount, amount) -> {
+                if (postingAccount == account) {
+                    balance[0] += amount;
+                    lines.add(new StatementLine(sequence, timestamp, reference, amount,
+                            balance[0]));
+                }
+            });
+        }
+        return Collections.unmodifiableList(lines);
+    }
+
+    /**
+     * Closes the ledger. Later posts fail.
+     *
+     * @throws IOException if the segment file could not be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (activeChannel != null) {
+            activeChannel.close();
+            activeChannel = null;
+        }
+    }
+
+    /**
+     * Opens the active segment again after its channel was closed by an interrupt of a thread
+     * writing to it, and removes anything written by the interrupted write.
+     */
+    private void reopenActiveSegment() throws IOException {
+        activeChannel = FileChannel.open(activeSegment, StandardOpenOption.WRITE);
+        activeChannel.truncate(activeSize);
+        activeChannel.position(activeSize);
+    }
+
+    private void sealActiveSegment() throws IOException {
+        activeChannel.close();
+        sealedSegments.add(activeSegment);
+    }
+
+    private void startSegment() throws IOException {
+        activeSegment = directory.resolve(
+                String.format("%s%019d%s", SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        activeChannel = FileChannel.open(activeSegment, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+        activeSize = 0;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static int recordSize(int postingCount) {
+        return LENGTH_SIZE + HEADER_SIZE + postingCount * POSTING_SIZE + CRC_SIZE;
+    }
+
+    private static void writeRecord(ByteBuffer buffer, CRC32 crc, long sequence, Entry entry) {
+        int start = buffer.position();
+        int postingCount = entry.postings().size();
+        buffer.putInt(HEADER_SIZE + postingCount * POSTING_SIZE);
+        buffer.putLong(sequence);
+        buffer.putLong(entry.timestamp());
+        buffer.putLong(entry.reference());
+        buffer.putInt(postingCount);
+        for (Posting posting : entry.postings()) {
+            buffer.putInt(posting.account());
+            buffer.putLong(posting.amount());
+        }
+        crc.reset();
+        crc.update(buffer.duplicate().position(start + LENGTH_SIZE).limit(buffer.position()));
+        buffer.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Receives the postings found while scanning a segment.
+     */
+    @FunctionalInterface
+    private interface PostingVisitor {
+        void visit(long sequence, long timestamp, long reference, int account, long amount);
+    }
+
+    /**
+     * Scans the valid records at the start of a segment, stopping at the first record that is
+     * incomplete or fails its checksum.
+     *
+     * @return The number of bytes of valid records.
+     */
+    private long scan(Path segment, long size, PostingVisitor visitor) throws IOException {
+        if (size == 0) {
+            return 0;
+        }
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        CRC32 crc = new CRC32();
+        int position = 0;
+        while (size - position >= LENGTH_SIZE) {
+            int length = mapped.getInt(position);
+            int postingCount = (length - HEADER_SIZE) / POSTING_SIZE;
+            if (length < HEADER_SIZE || postingCount > MAX_POSTINGS
+                    || size - position < recordSize(postingCount)
+                    || HEADER_SIZE + postingCount * POSTING_SIZE != length) {
+                break;
+            }
+            int body = position + LENGTH_SIZE;
+            crc.reset();
+            crc.update(mapped.slice(body, length));
+            if ((int) crc.getValue() != mapped.getInt(body + length)
+                    || mapped.getInt(body + Long.BYTES * 3) != postingCount) {
+                break;
+            }
+            long sequence = mapped.getLong(body);
+            long timestamp = mapped.getLong(body + Long.BYTES);
+            long reference = mapped.getLong(body + Long.BYTES * 2);
+            int posting = body + HEADER_SIZE;
+            for (int i = 0; i < postingCount; i++, posting += POSTING_SIZE) {
+                visitor.visit(sequence, timestamp, reference, mapped.getInt(posting),
+                        mapped.getLong(posting + Integer.BYTES));
+            }
+            position += recordSize(postingCount);
+        }
+        return position;
+    }
+}
@@ -0,0 +1,76 @@
+package se.kth.iv1350.pos.integration;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import se.kth.iv1350.pos.model.Amount;
+import se.kth.iv1350.pos.model.SaleIdGenerator;
+
+/**
+ * A local stand-in for the card payment provider. Every authorization takes a fixed time, as a
+ * real authorization would, and payments up to a limit are approved. The authorization code is
+ * made from the sale ID, so retried authorizations of one sale get the same code. Nothing is
+ * reserved on a card, so voiding an authorization only counts the void.
+ */
+public class LocalCardAuthorizer implements CardAuthorizer {
+    private static final Duration DEFAULT_LATENCY = Duration.ofMillis(300);
+    private static final Amount DEFAULT_LIMIT = Amount.of(20_000);
+    private final Executor delayedExecutor;
+    private final long limitMinorUnits;
+    private final AtomicInteger voidCount = new AtomicInteger();
+
+    /**
+     * Creates a new instance that takes 300 ms per authorization and approves payments up to
+     * 20000 SEK.
+     */
+    public LocalCardAuthorizer() {
+        this(DEFAULT_LATENCY, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param latency How long every authorization takes.
+     * @param limit The largest payment that is approved.
+     */
+    public LocalCardAuthorizer(Duration latency, Amount limit) {
+        this.delayedExecutor = CompletableFuture.delayedExecutor(latency.toNanos(),
+                TimeUnit.NANOSECONDS, Executors.newVirtualThreadPerTaskExecutor());
+        this.limitMinorUnits = limit.toMinorUnits();
+    }
+
+    @Override
+    public CompletableFuture<String> authorize(long saleId, Amount amount) {
+        CompletableFuture<String> authorization = new CompletableFuture<>();
+        delayedExecutor.execute(() -> {
+            if (!amount.isPositive()) {
+                authorization.completeExceptionally(
+                        new CardDeclinedException(amount, "invalid amount"));
+            } else if (amount.toMinorUnits() > limitMinorUnits) {
+                authorization.completeExceptionally(
+                        new CardDeclinedException(amount, "over the limit"));
+            } else {
+                authorization.complete("A" + SaleIdGenerator.receiptNumber(saleId));
+            }
+        });
+        return authorization;
+    }
+
+    @Override
+    public void voidAuthorization(String authorizationCode, Amount amount) {
+        voidCount.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of authorizations voided so far.
+     *
+     * @return The number of voids.
+     */
+    public int getVoidCount() {
+        return voidCount.get();
+    }
+}
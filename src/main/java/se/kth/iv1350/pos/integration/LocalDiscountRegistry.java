@@ -0,0 +1,46 @@
+package se.kth.iv1350.pos.integration;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * A local stand-in for the discount database. Every lookup takes a fixed time, as a query to the
+ * real database would, and a few hardcoded customers have discounts.
+ */
+public class LocalDiscountRegistry implements DiscountRegistry {
+    private static final Duration DEFAULT_LATENCY = Duration.ofMillis(200);
+    private final Duration latency;
+    private final Map<String, Integer> discounts;
+
+    /**
+     * Creates a new instance that takes 200 ms per lookup.
+     */
+    public LocalDiscountRegistry() {
+        this(DEFAULT_LATENCY);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param latency How long every lookup takes.
+     */
+    public LocalDiscountRegistry(Duration latency) {
+        this.latency = latency;
+        this.discounts = Map.of("1001", 10, "1002", 5, "1003", 15);
+    }
+
+    @Override
+    public int getCustomerDiscount(String customerId) throws DiscountDatabaseException {
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DiscountDatabaseException(customerId, e);
+        }
+        // Simulate database failure for a hardcoded ID
+        if ("dbfail".equals(customerId)) {
+            throw new DiscountDatabaseException(customerId);
+        }
+        return discounts.getOrDefault(customerId, 0);
+    }
+}
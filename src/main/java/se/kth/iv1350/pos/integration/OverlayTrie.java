@@ -0,0 +1,203 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable map from item IDs to catalog entries, used as the overlay of a
+ * {@link CatalogSnapshot}. Adding an entry creates a new map that shares all but the path to the
+ * entry with the old one, so a write copies a few small nodes instead of the whole overlay.
+ * <p>
+ * The map is a hash array mapped trie. Each level uses five bits of the hash of the item ID to
+ * pick one of at most 32 children, and only the children that exist are stored. IDs with the same
+ * hash are kept in a short list at the deepest level.
+ *
+ * @param <V> The type of the entries.
+ */
+final class OverlayTrie<V> {
+    private static final int BITS_PER_LEVEL = 5;
+    private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+    private static final OverlayTrie<?> EMPTY = new OverlayTrie<>(new Node(0, new Object[0]), 0);
+
+    private final Node root;
+    private final int size;
+
+    private OverlayTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Gets the empty map.
+     *
+     * @return A map without entries.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> OverlayTrie<V> empty() {
+        return (OverlayTrie<V>) EMPTY;
+    }
+
+    /**
+     * Gets the number of entries in this map.
+     *
+     * @return The number of entries.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Finds the entry with the specified item ID.
+     *
+     * @param itemID The ID of the item to find.
+     * @return The entry, or <code>null</code> if there is no such item in this map.
+     */
+    @SuppressWarnings("unchecked")
+    V get(String itemID) {
+        int hash = hash(itemID);
+        Node node = root;
+        for (int shift = 0;; shift += BITS_PER_LEVEL) {
+            int bit = bitFor(hash, shift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[node.indexOf(bit)];
+            if (slot instanceof Node child) {
+                node = child;
+                continue;
+            }
+            for (Leaf leaf = (Leaf) slot; leaf != null; leaf = leaf.next) {
+                if (leaf.hash == hash && leaf.itemID.equals(itemID)) {
+                    return (V) leaf.entry;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Creates a map with the specified entry added or replaced. This map is not changed.
+     *
+     * @param itemID The ID of the item.
+     * @param entry The new entry.
+     * @return The new map.
+     */
+    OverlayTrie<V> with(String itemID, V entry) {
+        int newSize = get(itemID) == null ? size + 1 : size;
+        return new OverlayTrie<>(put(root, 0, hash(itemID), itemID, entry), newSize);
+    }
+
+    /**
+     * Calls the specified action once for every entry in this map, in no particular order.
+     *
+     * @param action The action to call with the item ID and the entry.
+     */
+    void forEach(BiConsumer<String, ? super V> action) {
+        forEach(root, action);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void forEach(Node node, BiConsumer<String, ? super V> action) {
+        for (Object slot : node.slots) {
+            if (slot instanceof Node child) {
+                forEach(child, action);
+                continue;
+            }
+            for (Leaf leaf = (Leaf) slot; leaf != null; leaf = leaf.next) {
+                action.accept(leaf.itemID, (V) leaf.entry);
+            }
+        }
+    }
+
+    private static Node put(Node node, int shift, int hash, String itemID, Object entry) {
+        int bit = bitFor(hash, shift);
+        int index = node.indexOf(bit);
+        if ((node.bitmap & bit) == 0) {
+            Object[] slots = new Object[node.slots.length + 1];
+            System.arraycopy(node.slots, 0, slots, 0, index);
+            slots[index] = new Leaf(hash, itemID, entry, null);
+            System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+            return new Node(node.bitmap | bit, slots);
+        }
+        Object slot = node.slots[index];
+        Object replacement;
+        if (slot instanceof Node child) {
+            replacement = put(child, shift + BITS_PER_LEVEL, hash, itemID, entry);
+        } else {
+            Leaf leaf = (Leaf) slot;
+            replacement = leaf.hash == hash ? leaf.with(itemID, entry)
+                    : split(leaf, new Leaf(hash, itemID, entry, null), shift + BITS_PER_LEVEL);
+        }
+        Object[] slots = node.slots.clone();
+        slots[index] = replacement;
+        return new Node(node.bitmap, slots);
+    }
+
+    /**
+     * Creates the nodes needed to hold two leaves with different hashes that are in the same slot
+     * of the level above. Two different hashes always differ within the levels of the trie.
+     */
+    private static Node split(Leaf first, Leaf second, int shift) {
+        int firstBit = bitFor(first.hash, shift);
+        int secondBit = bitFor(second.hash, shift);
+        if (firstBit == secondBit) {
+            return new Node(firstBit,
+                    new Object[] {split(first, second, shift + BITS_PER_LEVEL)});
+        }
+        boolean firstIsLower = Integer.compareUnsigned(firstBit, secondBit) < 0;
+        return new Node(firstBit | secondBit, firstIsLower ? new Object[] {first, second}
+                : new Object[] {second, first});
+    }
+
+    private static int bitFor(int hash, int shift) {
+        return 1 << ((hash >>> shift) & LEVEL_MASK);
+    }
+
+    private static int hash(String itemID) {
+        int hash = itemID.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * A level of the trie. The bitmap has one bit set for each child that exists, and the slots
+     * hold the children in bit order, each either a <code>Node</code> or a <code>Leaf</code>.
+     */
+    private static final class Node {
+        private final int bitmap;
+        private final Object[] slots;
+
+        private Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private int indexOf(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    /**
+     * An entry, followed by any other entries whose item IDs have the same hash.
+     */
+    private static final class Leaf {
+        private final int hash;
+        private final String itemID;
+        private final Object entry;
+        private final Leaf next;
+
+        private Leaf(int hash, String itemID, Object entry, Leaf next) {
+            this.hash = hash;
+            this.itemID = itemID;
+            this.entry = entry;
+            this.next = next;
+        }
+
+        private Leaf with(String newItemID, Object newEntry) {
+            if (itemID.equals(newItemID)) {
+                return new Leaf(hash, itemID, newEntry, next);
+            }
+            Leaf newNext = next == null ? new Leaf(hash, newItemID, newEntry, null)
+                    : next.with(newItemID, newEntry);
+            return new Leaf(hash, itemID, entry, newNext);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * A read-only index from item ID to value, built on a minimal perfect hash function. Every ID in
+ * the index maps to its own slot in flat arrays with exactly as many slots as there are IDs, so a
+ * lookup takes one hash calculation, one slot read and one key comparison.
+ * <p>
+ * The hash function is built with the hash-and-displace method. The IDs are split into buckets of
+ * about five IDs each, and for every bucket a seed is searched for that sends all IDs in the
+ * bucket to free slots. Buckets with a single ID store their slot directly instead of a seed. The
+ * only index overhead is one <code>int</code> per bucket, about six bits per ID.
+ *
+ * @param <V> The type of the values.
+ */
+final class PerfectHashIndex<V> {
+    private static final int KEYS_PER_BUCKET = 5;
+    private static final int MAX_SEED = 1 << 22;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long salt;
+    private final int[] displacements;
+    private final String[] keys;
+    private final Object[] values;
+
+    private PerfectHashIndex(long salt, int[] displacements, String[] keys, Object[] values) {
+        this.salt = salt;
+        this.displacements = displacements;
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Builds an index containing all entries of the specified map.
+     *
+     * @param entries The entries to index. The map is not kept.
+     * @return The new index.
+     */
+    static <V> PerfectHashIndex<V> build(Map<String, V> entries) {
+        String[] inputKeys = entries.keySet().toArray(new String[0]);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long salt = mix(GOLDEN_GAMMA * (attempt + 1));
+            PerfectHashIndex<V> index = tryBuild(inputKeys, entries, salt);
+            if (index != null) {
+                return index;
+            }
+        }
+        throw new IllegalStateException(
+                "Could not build a perfect hash index for " + inputKeys.length + " items.");
+    }
+
+    private static <V> PerfectHashIndex<V> tryBuild(String[] inputKeys, Map<String, V> entries,
+            long salt) {
+        int keyCount = inputKeys.length;
+        int bucketCount = Math.max(1, keyCount / KEYS_PER_BUCKET);
+        List<List<String>> buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ArrayList<>(KEYS_PER_BUCKET));
+        }
+        for (String key : inputKeys) {
+            buckets.get(bucketOf(hash(key, salt), bucketCount)).add(key);
+        }
+        Integer[] order = new Integer[bucketCount];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+
+        int[] displacements = new int[bucketCount];
+        String[] keys = new String[keyCount];
+        Object[] values = new Object[keyCount];
+        boolean[] used = new boolean[keyCount];
+        int[] slots = new int[KEYS_PER_BUCKET * 4];
+        int nextFree = 0;
+        for (int bucket : order) {
+            List<String> bucketKeys = buckets.get(bucket);
+            int size = bucketKeys.size();
+            if (size == 0) {
+                break;
+            }
+            if (size == 1) {
+                while (used[nextFree]) {
+                    nextFree++;
+                }
+                place(bucketKeys.get(0), nextFree, entries, keys, values, used);
+                displacements[bucket] = -nextFree - 1;
+                continue;
+            }
+            if (slots.length < size) {
+                slots = new int[size];
+            }
+            int seed = findSeed(bucketKeys, salt, keyCount, used, slots);
+            if (seed < 0) {
+                return null;
+            }
+            for (int i = 0; i < size; i++) {
+                place(bucketKeys.get(i), slots[i], entries, keys, values, used);
+            }
+            displacements[bucket] = seed;
+        }
+        return new PerfectHashIndex<>(salt, displacements, keys, values);
+    }
+
+    private static int findSeed(List<String> bucketKeys, long salt, int keyCount, boolean[] used,
+            int[] slots) {
+        int size = bucketKeys.size();
+        long[] hashes = new long[size];
+        for (int i = 0; i < size; i++) {
+            hashes[i] = hash(bucketKeys.get(i), salt);
+        }
+        search: for (int seed = 0; seed < MAX_SEED; seed++) {
+            for (int i = 0; i < size; i++) {
+                int slot = slotOf(hashes[i], seed, keyCount);
+                if (used[slot]) {
+                    continue search;
+                }
+                for (int j = 0; j < i; j++) {
+                    if (slots[j] == slot) {
+                        continue search;
+                    }
+                }
+                slots[i] = slot;
+            }
+            return seed;
+        }
+        return -1;
+    }
+
+    private static <V> void place(String key, int slot, Map<String, V> entries, String[] keys,
+            Object[] values, boolean[] used) {
+        keys[slot] = key;
+        values[slot] = entries.get(key);
+        used[slot] = true;
+    }
+
+    /**
+     * Finds the value of the specified ID.
+     *
+     * @param key The ID to find.
+     * @return The value, or <code>null</code> if the ID is not in the index.
+     */
+    @SuppressWarnings("unchecked")
+    V get(String key) {
+        int keyCount = keys.length;
+        if (keyCount == 0) {
+            return null;
+        }
+        long hash = hash(key, salt);
+        int displacement = displacements[bucketOf(hash, displacements.length)];
+        int slot = displacement < 0 ? -displacement - 1 : slotOf(hash, displacement, keyCount);
+        return key.equals(keys[slot]) ? (V) values[slot] : null;
+    }
+
+    /**
+     * Gets the number of IDs in the index.
+     *
+     * @return The number of IDs.
+     */
+    int size() {
+        return keys.length;
+    }
+
+    /**
+     * Calls the specified action once for every entry in the index.
+     *
+     * @param action The action to call with each ID and value.
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<String, V> action) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            action.accept(keys[slot], (V) values[slot]);
+        }
+    }
+
+    private static int bucketOf(long hash, int bucketCount) {
+        return (int) Long.remainderUnsigned(hash >>> 32, bucketCount);
+    }
+
+    private static int slotOf(long hash, int seed, int keyCount) {
+        return (int) Long.remainderUnsigned(mix(hash + seed * GOLDEN_GAMMA), keyCount);
+    }
+
+    private static long hash(String key, long salt) {
+        long hash = salt;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
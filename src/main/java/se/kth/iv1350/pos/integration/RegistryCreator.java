@@ -1,5 +1,7 @@
 package se.kth.iv1350.pos.integration;
 
+import java.nio.file.Path;
+
 /**
  * Creates and provides access to external system registries such as {@link InventoryRegistry} and
  * {@link AccountingRegistry}. Used by the {@link Controller} to access integration layer systems.
@@ -8,6 +10,10 @@ public class RegistryCreator {
     private static RegistryCreator instance;
     private final InventoryRegistry inventoryRegistry;
     private final AccountingRegistry accountingRegistry;
+    private final GuardedInventory guardedInventory;
+    private final CoalescingItemLookup itemLookup;
+    private final CardAuthorizer cardAuthorizer;
+    private final CachedDiscountRegistry discountRegistry;
 
     /**
      * Returns the singleton instance of <code>RegistryCreator</code>. If it does not exist, it is
@@ -17,19 +23,36 @@ public class RegistryCreator {
      */
     public static RegistryCreator getInstance() {
         if (instance == null) {
-            instance = new RegistryCreator();
+            instance = new RegistryCreator(AccountingRegistry.getInstance());
         }
         return instance;
     }
 
+    /**
+     * Creates a new <code>RegistryCreator</code> that books sales in a ledger in the specified
+     * directory instead of <code>./ledger</code>. The {@link InventoryRegistry} is shared with all
+     * other instances. Only one instance may use a ledger directory at a time.
+     *
+     * @param ledgerDirectory The directory of the ledger, created if it does not exist.
+     * @return The new <code>RegistryCreator</code>.
+     * @throws java.io.UncheckedIOException if the ledger could not be opened.
+     */
+    public static RegistryCreator withLedgerDirectory(Path ledgerDirectory) {
+        return new RegistryCreator(new AccountingRegistry(ledgerDirectory));
+    }
+
     /**
      * Creates a new instance of <code>RegistryCreator</code>. Initializes the
-     * {@link InventoryRegistry} and {@link AccountingRegistry}. Private to enforce singleton
-     * pattern.
+     * {@link InventoryRegistry} and the other registries. Private, instances are created by
+     * {@link #getInstance()} and {@link #withLedgerDirectory(Path)}.
      */
-    private RegistryCreator() {
+    private RegistryCreator(AccountingRegistry accountingRegistry) {
         inventoryRegistry = InventoryRegistry.getInstance();
-        accountingRegistry = AccountingRegistry.getInstance();
+        this.accountingRegistry = accountingRegistry;
+        guardedInventory = new GuardedInventory(inventoryRegistry);
+        itemLookup = new CoalescingItemLookup(guardedInventory);
+        cardAuthorizer = new LocalCardAuthorizer();
+        discountRegistry = new CachedDiscountRegistry(new LocalDiscountRegistry());
     }
 
     /**
@@ -41,6 +64,47 @@ public class RegistryCreator {
         return inventoryRegistry;
     }
 
+    /**
+     * Returns the {@link GuardedInventory} that guards access to the {@link InventoryRegistry}.
+     *
+     * @return The <code>GuardedInventory</code> instance.
+     */
+    public GuardedInventory getGuardedInventory() {
+        return guardedInventory;
+    }
+
+    /**
+     * Returns the {@link CoalescingItemLookup} in front of the {@link GuardedInventory}. It is
+     * shared by everyone using this <code>RegistryCreator</code>, so identical lookups from
+     * different registers are coalesced.
+     *
+     * @return The <code>CoalescingItemLookup</code> instance.
+     */
+    public CoalescingItemLookup getItemLookup() {
+        return itemLookup;
+    }
+
+    /**
+     * Returns the {@link CardAuthorizer} used for card payments, currently a
+     * {@link LocalCardAuthorizer}.
+     *
+     * @return The <code>CardAuthorizer</code> instance.
+     */
+    public CardAuthorizer getCardAuthorizer() {
+        return cardAuthorizer;
+    }
+
+    /**
+     * Returns the {@link CachedDiscountRegistry} in front of the discount database, currently a
+     * {@link LocalDiscountRegistry}. It is shared by everyone using this
+     * <code>RegistryCreator</code>, so a discount looked up by one register is cached for all.
+     *
+     * @return The <code>CachedDiscountRegistry</code> instance.
+     */
+    public CachedDiscountRegistry getDiscountRegistry() {
+        return discountRegistry;
+    }
+
     /**
      * Returns the {@link AccountingRegistry} instance.
      *
@@ -0,0 +1,98 @@
+package se.kth.iv1350.pos.integration;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import se.kth.iv1350.pos.util.DeduplicationWindow;
+
+/**
+ * Keeps track of the sales an external system has been updated with, so that a retried update of
+ * a sale is only applied once. A sale is remembered as updated only when its update has
+ * succeeded. While an update of a sale is running, a retried update of the same sale waits for it
+ * and fails if it fails, so a caller never takes a sale as updated while it is not.
+ */
+final class SaleUpdates {
+    private static final CompletableFuture<Void> ALREADY_UPDATED =
+            CompletableFuture.completedFuture(null);
+    private final DeduplicationWindow updatedSales;
+    private final ConcurrentMap<Long, CompletableFuture<Void>> running = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param window The shortest time an updated sale is remembered.
+     * @param capacity The number of sales remembered per window.
+     */
+    SaleUpdates(Duration window, int capacity) {
+        this.updatedSales = new DeduplicationWindow(window, capacity);
+    }
+
+    /**
+     * Remembers a sale as updated, for example when the updates made before a restart are read.
+     *
+     * @param saleId The ID of the sale. Must be positive.
+     */
+    void markUpdated(long saleId) {
+        updatedSales.markIfAbsent(saleId);
+    }
+
+    /**
+     * Claims the update of a sale. Unless the sale is updated, or another call is updating it,
+     * the caller now owns the update and must report its outcome with {@link #finish}.
+     *
+     * @param saleId The ID of the sale. Must be positive.
+     * @return <code>null</code> if the caller owns the update. Otherwise a future that is
+     *         completed when the sale is updated, or completed exceptionally if the update running
+     *         in another call failed.
+     */
+    CompletableFuture<Void> claim(long saleId) {
+        CompletableFuture<Void> update = new CompletableFuture<>();
+        CompletableFuture<Void> other = running.putIfAbsent(saleId, update);
+        if (other != null) {
+            return other;
+        }
+        if (updatedSales.contains(saleId)) {
+            running.remove(saleId, update);
+            update.complete(null);
+            return ALREADY_UPDATED;
+        }
+        return null;
+    }
+
+    /**
+     * Reports the outcome of an update claimed with {@link #claim(long)}, and wakes up the calls
+     * waiting for it.
+     *
+     * @param saleId The ID of the sale.
+     * @param failure Why the update failed, or <code>null</code> if it succeeded.
+     */
+    void finish(long saleId, Throwable failure) {
+        if (failure == null) {
+            updatedSales.markIfAbsent(saleId);
+        }
+        CompletableFuture<Void> update = running.remove(saleId);
+        if (failure == null) {
+            update.complete(null);
+        } else {
+            update.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Waits for an update of a sale made by another call.
+     *
+     * @param update The update, as returned by {@link #claim(long)}.
+     * @throws IllegalStateException if the update failed. The cause is the failure.
+     */
+    static void await(CompletableFuture<Void> update) {
+        try {
+            update.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("A concurrent update of the sale failed.",
+                    e.getCause());
+        }
+    }
+}
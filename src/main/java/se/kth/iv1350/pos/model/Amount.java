@@ -1,12 +1,14 @@
 package se.kth.iv1350.pos.model;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 
 /**
  * Represents a monetary <code>Amount</code> in SEK, supporting arithmetic operations.
  */
 public final class Amount {
     private static final String CURRENCY = "SEK";
+    private static final Amount ZERO = new Amount(BigDecimal.ZERO);
     private final BigDecimal value;
 
     private Amount(BigDecimal value) {
@@ -16,12 +18,13 @@ public final class Amount {
     // --- Factory methods ---
 
     /**
-     * Creates an <code>Amount</code> object with a value of zero.
+     * Gets an <code>Amount</code> object with a value of zero. Since amounts are immutable, the
+     * same instance is returned every time.
      *
      * @return An <code>Amount</code> object representing zero.
      */
     public static Amount zero() {
-        return new Amount(BigDecimal.ZERO);
+        return ZERO;
     }
 
     /**
@@ -39,6 +42,23 @@ public final class Amount {
         return new Amount(BigDecimal.valueOf(value));
     }
 
+    /**
+     * Creates an <code>Amount</code> object from a value in minor units (öre).
+     *
+     * @param minorUnits The value in öre, for example <code>1050</code> for 10.50 SEK.
+     * @return An <code>Amount</code> object representing the specified value.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public static Amount ofMinorUnits(long minorUnits) {
+        if (minorUnits < 0) {
+            throw new IllegalArgumentException("Amount cannot be negative: " + minorUnits);
+        }
+        if (minorUnits == 0) {
+            return ZERO;
+        }
+        return new Amount(BigDecimal.valueOf(minorUnits, 2));
+    }
+
     // --- Arithmetic operations ---
 
     /**
@@ -86,6 +106,15 @@ public final class Amount {
         return value;
     }
 
+    /**
+     * Gets the value in minor units (öre), rounded half up to a whole öre.
+     *
+     * @return The value in öre.
+     */
+    public long toMinorUnits() {
+        return value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
     /**
      * @return The value of the <code>Amount</code> object as a double.
      */
@@ -0,0 +1,99 @@
+package se.kth.iv1350.pos.model;
+
+import java.util.Arrays;
+
+/**
+ * The item rules of a {@link PromotionEngine} applied to one sale, with the discount every rule
+ * gives each line. When a rule is evaluated again, its previous discounts are taken back from the
+ * lines and the new ones are given, so other rules on the same lines are left untouched.
+ * <p>
+ * A sale only touches a handful of rules, so they are kept in small parallel arrays and searched
+ * linearly.
+ */
+final class AppliedPromotions {
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int[] NO_LINES = new int[0];
+    private static final long[] NO_DISCOUNTS = new long[0];
+
+    private int[] rules = new int[INITIAL_CAPACITY];
+    private int[][] discountedLines = new int[INITIAL_CAPACITY][];
+    private long[][] discounts = new long[INITIAL_CAPACITY][];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int size;
+    private int[] nextLines = NO_LINES;
+    private long[] nextDiscounts = NO_DISCOUNTS;
+
+    /**
+     * Receives the change of the discount of one line.
+     */
+    interface LineDiscountChange {
+        /**
+         * Called for every line whose discount changes.
+         *
+         * @param line The line number.
+         * @param delta The change of the discount, excluding VAT, in öre.
+         */
+        void change(int line, long delta);
+    }
+
+    /**
+     * Evaluates a rule again and reports how the discount of every line changes.
+     *
+     * @param engine The engine the rule belongs to.
+     * @param rule The index of the rule.
+     * @param lines The lines of the sale.
+     * @param listener Receives the changes, first taking back all previous discounts of the rule
+     *        and then giving the new ones.
+     */
+    void reevaluate(PromotionEngine engine, int rule, SaleLines lines,
+            LineDiscountChange listener) {
+        if (nextLines.length < lines.size()) {
+            nextLines = new int[lines.size() * 2];
+            nextDiscounts = new long[lines.size() * 2];
+        }
+        int count = engine.evaluate(rule, lines, nextLines, nextDiscounts);
+        int slot = slotOf(rule);
+        for (int i = 0; i < counts[slot]; i++) {
+            listener.change(discountedLines[slot][i], -discounts[slot][i]);
+        }
+        for (int i = 0; i < count; i++) {
+            listener.change(nextLines[i], nextDiscounts[i]);
+        }
+        if (discountedLines[slot].length < count) {
+            discountedLines[slot] = new int[count * 2];
+            discounts[slot] = new long[count * 2];
+        }
+        System.arraycopy(nextLines, 0, discountedLines[slot], 0, count);
+        System.arraycopy(nextDiscounts, 0, discounts[slot], 0, count);
+        counts[slot] = count;
+    }
+
+    /**
+     * Forgets all rules but keeps the allocated storage for reuse.
+     */
+    void clear() {
+        Arrays.fill(counts, 0, size, 0);
+        size = 0;
+    }
+
+    private int slotOf(int rule) {
+        for (int slot = 0; slot < size; slot++) {
+            if (rules[slot] == rule) {
+                return slot;
+            }
+        }
+        if (size == rules.length) {
+            rules = Arrays.copyOf(rules, size * 2);
+            discountedLines = Arrays.copyOf(discountedLines, size * 2);
+            discounts = Arrays.copyOf(discounts, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        rules[size] = rule;
+        if (discountedLines[size] == null) {
+            discountedLines[size] = NO_LINES;
+            discounts[size] = NO_DISCOUNTS;
+        }
+        counts[size] = 0;
+        return size++;
+    }
+}
@@ -0,0 +1,275 @@
+package se.kth.iv1350.pos.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The cash drawer of a {@link CashRegister}, holding a count of every Swedish banknote and coin.
+ * Counts are updated atomically without locks, so several threads may pay in and give change at
+ * the same time. The total is calculated from the counts, so counting the drawer at the end of a
+ * shift takes one step per denomination, however many sales were made.
+ * <p>
+ * Change is given with as few pieces as possible. The fewest pieces for every amount below 1000
+ * kronor are calculated once, when the class is loaded, and amounts of 1000 kronor and more use
+ * 1000 krona notes for the thousands. When the drawer does not hold the pieces of that
+ * combination, the fewest pieces among those actually held are calculated instead.
+ * <p>
+ * Amounts below one krona can not be paid in cash. Such parts of payments are not added to the
+ * drawer, and such parts of change are not given.
+ * <p>
+ * The register is told the amount paid, not the pieces handed over, so cash paid in is counted as
+ * the fewest pieces making up the amount. A customer paying 100 kronor with five 20 krona notes
+ * is counted as one 100 krona note. The counts per denomination are therefore an estimate between
+ * counts of the drawer, while the total is exact.
+ */
+public class CashDrawer {
+    /** The denominations in whole kronor, largest first. */
+    static final int[] DENOMINATIONS = {1000, 500, 200, 100, 50, 20, 10, 5, 2, 1};
+    private static final int[] DEFAULT_FLOAT = {0, 4, 10, 20, 20, 50, 100, 100, 100, 300};
+    private static final int[] DEFAULT_LOW_FLOAT_LEVELS = {0, 1, 2, 5, 5, 10, 10, 10, 10, 10};
+    private static final int TABLE_LIMIT = DENOMINATIONS[0];
+    private static final byte[] FEWEST_PIECES = fewestPiecesTable();
+
+    private final AtomicIntegerArray counts;
+    private final int[] lowFloatLevels;
+    private final List<LowFloatObserver> lowFloatObservers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a new drawer with the default float of 10000 kronor in notes of 500 kronor and less
+     * and in coins.
+     */
+    public CashDrawer() {
+        this(DEFAULT_FLOAT, DEFAULT_LOW_FLOAT_LEVELS);
+    }
+
+    /**
+     * Creates a new drawer.
+     *
+     * @param initialCounts The number of pieces of each denomination, in the order of
+     *        {@link #DENOMINATIONS}.
+     * @param lowFloatLevels The count of each denomination below which observers are notified.
+     */
+    CashDrawer(int[] initialCounts, int[] lowFloatLevels) {
+        this.counts = new AtomicIntegerArray(initialCounts);
+        this.lowFloatLevels = lowFloatLevels.clone();
+    }
+
+    /**
+     * Adds an observer that is notified when a denomination is running low.
+     *
+     * @param observer The observer to add.
+     */
+    public void addLowFloatObserver(LowFloatObserver observer) {
+        lowFloatObservers.add(observer);
+    }
+
+    /**
+     * Gets the total value of the cash in the drawer.
+     *
+     * @return The total.
+     */
+    public Amount getTotal() {
+        long kronor = 0;
+        for (int i = 0; i < DENOMINATIONS.length; i++) {
+            kronor += (long) DENOMINATIONS[i] * counts.get(i);
+        }
+        return Amount.ofMinorUnits(kronor * 100);
+    }
+
+    /**
+     * Counts the drawer.
+     *
+     * @return The number of pieces of every denomination in whole kronor, largest first.
+     */
+    public Map<Integer, Integer> count() {
+        Map<Integer, Integer> result = new LinkedHashMap<>();
+        for (int i = 0; i < DENOMINATIONS.length; i++) {
+            result.put(DENOMINATIONS[i], counts.get(i));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Adds cash to the drawer, as the fewest pieces making up the amount.
+     *
+     * @param amount The amount to add.
+     */
+    void deposit(Amount amount) {
+        add(fewestPieces(amount.toMinorUnits() / 100), 1);
+    }
+
+    /**
+     * Registers a cash payment. The change is taken from the drawer first, and the cash paid is
+     * added only once the change is taken, as the fewest pieces making up the amount. The change
+     * is thus never given from the pieces just paid in.
+     *
+     * @param amountPaid The cash handed over by the customer.
+     * @param change The change to give back.
+     * @return The number of pieces of every denomination given as change, in the order of
+     *         {@link #DENOMINATIONS}.
+     * @throws IllegalStateException if the drawer does not hold the pieces needed for the change.
+     *         Nothing is then added to or taken from the drawer.
+     */
+    int[] registerPayment(Amount amountPaid, Amount change) {
+        int[] given = take(change.toMinorUnits() / 100);
+        if (given == null) {
+            throw new IllegalStateException("The cash drawer can not give " + change
+                    + " in change.");
+        }
+        add(fewestPieces(amountPaid.toMinorUnits() / 100), 1);
+        return given;
+    }
+
+    /**
+     * Takes pieces making up an amount from the drawer. The fewest pieces are tried first. If the
+     * drawer does not hold them, or another thread takes them first, the fewest pieces among those
+     * held are calculated and tried.
+     *
+     * @return The pieces taken, or <code>null</code> if the drawer can not make the amount.
+     */
+    private int[] take(long kronor) {
+        int[] pieces = fewestPieces(kronor);
+        while (!tryTake(pieces)) {
+            int[] held = new int[DENOMINATIONS.length];
+            for (int i = 0; i < held.length; i++) {
+                held[i] = counts.get(i);
+            }
+            pieces = fewestPieces(kronor, held);
+            if (pieces == null) {
+                return null;
+            }
+        }
+        return pieces;
+    }
+
+    /**
+     * Takes the specified pieces, if all of them are in the drawer. Observers are notified of
+     * every denomination that drops below its low float level.
+     *
+     * @return <code>true</code> if the pieces were taken, <code>false</code> if nothing was taken.
+     */
+    private boolean tryTake(int[] pieces) {
+        int[] left = new int[pieces.length];
+        for (int i = 0; i < pieces.length; i++) {
+            if (pieces[i] == 0) {
+                continue;
+            }
+            int held;
+            do {
+                held = counts.get(i);
+                if (held < pieces[i]) {
+                    add(Arrays.copyOf(pieces, i), 1);
+                    return false;
+                }
+            } while (!counts.compareAndSet(i, held, held - pieces[i]));
+            left[i] = held - pieces[i];
+        }
+        for (int i = 0; i < pieces.length; i++) {
+            boolean wasAbove = left[i] + pieces[i] >= lowFloatLevels[i];
+            if (pieces[i] != 0 && wasAbove && left[i] < lowFloatLevels[i]) {
+                for (LowFloatObserver observer : lowFloatObservers) {
+                    observer.lowFloat(DENOMINATIONS[i], left[i]);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void add(int[] pieces, int sign) {
+        for (int i = 0; i < pieces.length; i++) {
+            if (pieces[i] != 0) {
+                counts.addAndGet(i, sign * pieces[i]);
+            }
+        }
+    }
+
+    /**
+     * Gets the fewest pieces making up an amount, with any number of every denomination.
+     */
+    static int[] fewestPieces(long kronor) {
+        int[] pieces = new int[DENOMINATIONS.length];
+        pieces[0] = Math.toIntExact(kronor / TABLE_LIMIT);
+        int rest = (int) (kronor % TABLE_LIMIT);
+        for (int i = 1; i < pieces.length; i++) {
+            pieces[i] = FEWEST_PIECES[rest * DENOMINATIONS.length + i];
+        }
+        return pieces;
+    }
+
+    /**
+     * Calculates the fewest pieces making up an amount, using no more pieces of a denomination
+     * than are held. Every denomination is added in turn, keeping the fewest pieces for every
+     * amount up to the target.
+     *
+     * @return The pieces, or <code>null</code> if the amount can not be made from the pieces held.
+     */
+    static int[] fewestPieces(long kronor, int[] held) {
+        long heldTotal = 0;
+        for (int i = 0; i < held.length; i++) {
+            heldTotal += (long) DENOMINATIONS[i] * held[i];
+        }
+        if (kronor > heldTotal) {
+            return null;
+        }
+        int target = (int) kronor;
+        int[] fewest = new int[target + 1];
+        Arrays.fill(fewest, Integer.MAX_VALUE);
+        fewest[0] = 0;
+        int[][] used = new int[DENOMINATIONS.length][target + 1];
+        for (int i = 0; i < DENOMINATIONS.length; i++) {
+            int value = DENOMINATIONS[i];
+            int[] previous = fewest.clone();
+            for (int amount = 1; amount <= target; amount++) {
+                int maxCount = Math.min(held[i], amount / value);
+                for (int count = 1; count <= maxCount; count++) {
+                    int before = previous[amount - count * value];
+                    if (before != Integer.MAX_VALUE && before + count < fewest[amount]) {
+                        fewest[amount] = before + count;
+                        used[i][amount] = count;
+                    }
+                }
+            }
+        }
+        if (fewest[target] == Integer.MAX_VALUE) {
+            return null;
+        }
+        int[] pieces = new int[DENOMINATIONS.length];
+        for (int i = DENOMINATIONS.length - 1, amount = target; i >= 0; i--) {
+            pieces[i] = used[i][amount];
+            amount -= pieces[i] * DENOMINATIONS[i];
+        }
+        return pieces;
+    }
+
+    /**
+     * Calculates the fewest pieces for every amount below 1000 kronor, stored as one row of counts
+     * per amount.
+     */
+    private static byte[] fewestPiecesTable() {
+        int[] fewest = new int[TABLE_LIMIT];
+        int[] lastPiece = new int[TABLE_LIMIT];
+        for (int amount = 1; amount < TABLE_LIMIT; amount++) {
+            fewest[amount] = Integer.MAX_VALUE;
+            for (int i = 1; i < DENOMINATIONS.length; i++) {
+                int value = DENOMINATIONS[i];
+                if (value <= amount && fewest[amount - value] + 1 < fewest[amount]) {
+                    fewest[amount] = fewest[amount - value] + 1;
+                    lastPiece[amount] = i;
+                }
+            }
+        }
+        byte[] table = new byte[TABLE_LIMIT * DENOMINATIONS.length];
+        for (int amount = 1; amount < TABLE_LIMIT; amount++) {
+            int row = amount * DENOMINATIONS.length;
+            for (int rest = amount; rest > 0; rest -= DENOMINATIONS[lastPiece[rest]]) {
+                table[row + lastPiece[rest]]++;
+            }
+        }
+        return table;
+    }
+}
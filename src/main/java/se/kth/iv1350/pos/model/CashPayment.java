@@ -2,9 +2,11 @@ package se.kth.iv1350.pos.model;
 
 /**
  * Represents a <code>CashPayment</code> made by a customer.
- * Used in the payment process of a <code>Sale</code>.
+ * Used in the payment process of a <code>Sale</code>. Cash is paid in whole kronor, so the cash
+ * due is rounded to the nearest krona, with 50 öre rounded up.
  */
 class CashPayment {
+    private static final long ORE_PER_KRONA = 100;
     private Amount amountPaid;
 
     /**
@@ -16,6 +18,18 @@ class CashPayment {
         this.amountPaid = amountPaid;
     }
 
+    /**
+     * Rounds an amount to be paid in cash to whole kronor.
+     *
+     * @param amount The amount due.
+     * @return The amount rounded to the nearest krona.
+     */
+    static Amount roundToKrona(Amount amount) {
+        long ore = amount.toMinorUnits();
+        return Amount.ofMinorUnits(Math.floorDiv(ore + ORE_PER_KRONA / 2, ORE_PER_KRONA)
+                * ORE_PER_KRONA);
+    }
+
     /**
      * Gets the <code>Amount</code> paid.
      *
@@ -27,16 +41,25 @@ class CashPayment {
 
     /**
      * Calculates and updates the internal state with the difference between
-     * the amount paid and the total cost of the sale.
+     * the amount paid and the total cost of the sale, rounded to whole kronor.
      * If amountPaid is null, does nothing.
      *
      * @param sale The sale for which payment is being made.
      */
     void calculateTotalCost(Sale sale) {
+        calculateChange(roundToKrona(sale.getTotalCost()));
+    }
+
+    /**
+     * Calculates and updates the internal state with the difference between the amount paid and
+     * the cash due. If amountPaid is null, does nothing.
+     *
+     * @param cashDue The cash due, in whole kronor.
+     */
+    void calculateChange(Amount cashDue) {
         if (amountPaid == null) {
             return;
         }
-        Amount totalCost = sale.getTotalCost();
-        amountPaid = amountPaid.subtract(totalCost);
+        amountPaid = amountPaid.subtract(cashDue);
     }
-} 
\ No newline at end of file
+}
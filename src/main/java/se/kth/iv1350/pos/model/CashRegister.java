@@ -3,18 +3,26 @@ package se.kth.iv1350.pos.model;
 import se.kth.iv1350.pos.controller.Controller;
 
 /**
- * Represents a <code>CashRegister</code> that handles the store's cash. Updated by
- * {@link Controller} during payment.
+ * Represents a <code>CashRegister</code> that handles the store's cash, kept in a
+ * {@link CashDrawer}. Updated by {@link Controller} during payment.
  */
 public class CashRegister {
-    private static final double INITIAL_BALANCE = 10000;
-    private Amount balance;
+    private final CashDrawer drawer;
 
     /**
-     * Creates a new instance with the initial balance.s
+     * Creates a new instance with a drawer holding the default float.
      */
     public CashRegister() {
-        this.balance = Amount.of(INITIAL_BALANCE);
+        this(new CashDrawer());
+    }
+
+    /**
+     * Creates a new instance with the specified drawer.
+     *
+     * @param drawer The cash drawer of this register.
+     */
+    public CashRegister(CashDrawer drawer) {
+        this.drawer = drawer;
     }
 
     /**
@@ -23,7 +31,16 @@ public class CashRegister {
      * @return The current balance.
      */
     public Amount getBalance() {
-        return balance;
+        return drawer.getTotal();
+    }
+
+    /**
+     * Gets the cash drawer of this register.
+     *
+     * @return The cash drawer.
+     */
+    public CashDrawer getDrawer() {
+        return drawer;
     }
 
     /**
@@ -32,6 +49,17 @@ public class CashRegister {
      * @param amount The amount to add to the balance.
      */
     void updateBalance(Amount amount) {
-        balance = balance.add(amount);
+        drawer.deposit(amount);
+    }
+
+    /**
+     * Registers a cash payment, adding the cash paid to the drawer and taking the change from it.
+     *
+     * @param amountPaid The cash handed over by the customer.
+     * @param change The change to give back.
+     * @throws IllegalStateException if the drawer can not give the change.
+     */
+    void registerPayment(Amount amountPaid, Amount change) {
+        drawer.registerPayment(amountPaid, change);
     }
 }
@@ -0,0 +1,15 @@
+package se.kth.iv1350.pos.model;
+
+/**
+ * Observer interface for receiving notifications when a {@link CashDrawer} is running low on a
+ * denomination, so that more change can be brought to the register before it runs out.
+ */
+public interface LowFloatObserver {
+    /**
+     * Called when the count of a denomination drops below its low float level.
+     *
+     * @param denomination The denomination in whole kronor, for example 20 for the 20 krona note.
+     * @param count The number of pieces of the denomination left in the drawer.
+     */
+    void lowFloat(int denomination, int count);
+}
@@ -0,0 +1,15 @@
+package se.kth.iv1350.pos.model;
+
+/**
+ * Data Transfer Object for one part of the payment of a sale, made with one tender.
+ *
+ * @param method The payment method, for example <code>Card</code> or {@link #CASH}.
+ * @param amount The amount of the sale paid with this tender. For cash, this is the cash due
+ *        rounded to whole kronor, not the cash handed over.
+ * @param reference A reference from the payment provider, such as the authorization code of a
+ *        card payment. <code>null</code> if there is none.
+ */
+public record PaymentDTO(String method, Amount amount, String reference) {
+    /** The payment method of cash payments. */
+    public static final String CASH = "Cash";
+}
@@ -0,0 +1,121 @@
+package se.kth.iv1350.pos.model;
+
+import java.util.Set;
+
+/**
+ * A promotion rule that lowers the price of a sale. Rules are compiled by a
+ * {@link PromotionEngine}, which applies them to sales while items are scanned.
+ * <p>
+ * Multi-buy and percent off rules lower the price of the items they name, and are applied to
+ * the lines of those items. Basket threshold and customer discounts lower the price of the whole
+ * sale, after the item rules, and only the largest of each kind is applied.
+ */
+public sealed interface Promotion {
+    /**
+     * Gets the ID of the promotion.
+     *
+     * @return The ID.
+     */
+    String id();
+
+    /**
+     * Gets the description of the promotion, as shown to the customer.
+     *
+     * @return The description.
+     */
+    String description();
+
+    /**
+     * Buy a number of items and pay for fewer, for example 3 for 2. The items may be mixed from
+     * all the item IDs of the rule, and the cheapest items are the free ones.
+     *
+     * @param id The ID of the promotion.
+     * @param description The description of the promotion.
+     * @param itemIds The items included in the promotion.
+     * @param buy The number of items to buy.
+     * @param pay The number of items to pay for, less than <code>buy</code>.
+     */
+    record MultiBuy(String id, String description, Set<String> itemIds, int buy, int pay)
+            implements Promotion {
+        /**
+         * Creates a new instance.
+         *
+         * @throws IllegalArgumentException if <code>pay</code> is not between zero and
+         *         <code>buy</code>.
+         */
+        public MultiBuy {
+            itemIds = Set.copyOf(itemIds);
+            if (pay < 0 || pay >= buy) {
+                throw new IllegalArgumentException("Pay must be at least zero and less than buy.");
+            }
+        }
+    }
+
+    /**
+     * A percentage off the price of a category of items.
+     *
+     * @param id The ID of the promotion.
+     * @param description The description of the promotion.
+     * @param itemIds The items in the category.
+     * @param percent The percentage off, between 1 and 100.
+     */
+    record PercentOff(String id, String description, Set<String> itemIds, int percent)
+            implements Promotion {
+        /**
+         * Creates a new instance.
+         *
+         * @throws IllegalArgumentException if the percentage is out of range.
+         */
+        public PercentOff {
+            itemIds = Set.copyOf(itemIds);
+            requirePercent(percent);
+        }
+    }
+
+    /**
+     * A percentage off the whole sale, when its total after item discounts reaches a threshold.
+     *
+     * @param id The ID of the promotion.
+     * @param description The description of the promotion.
+     * @param threshold The smallest total the discount is given for.
+     * @param percent The percentage off, between 1 and 100.
+     */
+    record BasketThreshold(String id, String description, Amount threshold, int percent)
+            implements Promotion {
+        /**
+         * Creates a new instance.
+         *
+         * @throws IllegalArgumentException if the percentage is out of range.
+         */
+        public BasketThreshold {
+            requirePercent(percent);
+        }
+    }
+
+    /**
+     * A percentage off the whole sale for the specified customers.
+     *
+     * @param id The ID of the promotion.
+     * @param description The description of the promotion.
+     * @param customerIds The customers eligible for the discount.
+     * @param percent The percentage off, between 1 and 100.
+     */
+    record CustomerDiscount(String id, String description, Set<String> customerIds, int percent)
+            implements Promotion {
+        /**
+         * Creates a new instance.
+         *
+         * @throws IllegalArgumentException if the percentage is out of range.
+         */
+        public CustomerDiscount {
+            customerIds = Set.copyOf(customerIds);
+            requirePercent(percent);
+        }
+    }
+
+    private static void requirePercent(int percent) {
+        if (percent < 1 || percent > 100) {
+            throw new IllegalArgumentException("Percent must be between 1 and 100.");
+        }
+    }
+}
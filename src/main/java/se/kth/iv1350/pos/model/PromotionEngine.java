@@ -0,0 +1,201 @@
+package se.kth.iv1350.pos.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled set of {@link Promotion} rules, shared by all sales. The item rules are indexed by
+ * item ID, so a scanned item only re-evaluates the rules naming that item, however many
+ * promotions are active. The basket thresholds are sorted, with the largest percentage up to
+ * every threshold precomputed, and the largest customer discount of every customer is
+ * precomputed, so the discounts of the whole sale are found without looking at every rule.
+ * <p>
+ * An engine is immutable and can be shared between threads. To change the active promotions, a
+ * new engine is compiled.
+ */
+public final class PromotionEngine {
+    /** An engine without promotions. */
+    public static final PromotionEngine NONE = new PromotionEngine(List.of());
+    private static final int[] NO_RULES = new int[0];
+    private static final int BASIS_POINTS_PER_PERCENT = 100;
+
+    private final Promotion[] itemRules;
+    private final Map<String, int[]> itemRulesById;
+    private final long[] basketThresholds;
+    private final int[] basketDiscounts;
+    private final Map<String, Integer> customerDiscounts;
+
+    /**
+     * Compiles the specified promotions.
+     *
+     * @param promotions The active promotions.
+     */
+    public PromotionEngine(Collection<? extends Promotion> promotions) {
+        List<Promotion> items = new ArrayList<>();
+        Map<String, List<Integer>> rulesById = new HashMap<>();
+        List<Promotion.BasketThreshold> baskets = new ArrayList<>();
+        Map<String, Integer> customers = new HashMap<>();
+        for (Promotion promotion : promotions) {
+            switch (promotion) {
+                case Promotion.MultiBuy multiBuy ->
+                    index(multiBuy, multiBuy.itemIds(), items, rulesById);
+                case Promotion.PercentOff percentOff ->
+                    index(percentOff, percentOff.itemIds(), items, rulesById);
+                case Promotion.BasketThreshold basket -> baskets.add(basket);
+                case Promotion.CustomerDiscount customer -> {
+                    int discount = customer.percent() * BASIS_POINTS_PER_PERCENT;
+                    for (String customerId : customer.customerIds()) {
+                        customers.merge(customerId, discount, Math::max);
+                    }
+                }
+            }
+        }
+        this.itemRules = items.toArray(new Promotion[0]);
+        this.itemRulesById = new HashMap<>();
+        rulesById.forEach((id, rules) -> itemRulesById.put(id,
+                rules.stream().mapToInt(Integer::intValue).toArray()));
+        baskets.sort((a, b) -> Long.compare(a.threshold().toMinorUnits(),
+                b.threshold().toMinorUnits()));
+        this.basketThresholds = new long[baskets.size()];
+        this.basketDiscounts = new int[baskets.size()];
+        int best = 0;
+        for (int i = 0; i < baskets.size(); i++) {
+            best = Math.max(best, baskets.get(i).percent() * BASIS_POINTS_PER_PERCENT);
+            basketThresholds[i] = baskets.get(i).threshold().toMinorUnits();
+            basketDiscounts[i] = best;
+        }
+        this.customerDiscounts = Map.copyOf(customers);
+    }
+
+    private static void index(Promotion rule, Iterable<String> itemIds, List<Promotion> items,
+            Map<String, List<Integer>> rulesById) {
+        int ruleIndex = items.size();
+        items.add(rule);
+        for (String itemId : itemIds) {
+            rulesById.computeIfAbsent(itemId, id -> new ArrayList<>(1)).add(ruleIndex);
+        }
+    }
+
+    /**
+     * Gets the item rules naming an item.
+     *
+     * @param itemId The ID of the item.
+     * @return The indexes of the rules, see {@link #evaluate(int, SaleLines, int[], long[])}.
+     *         Must not be modified.
+     */
+    int[] rulesFor(String itemId) {
+        return itemRulesById.getOrDefault(itemId, NO_RULES);
+    }
+
+    /**
+     * Gets the discount of the whole sale for its total, the largest of the basket thresholds
+     * reached.
+     *
+     * @param subtotal The total of the sale after item discounts, in öre.
+     * @return The discount in basis points, zero if no threshold is reached.
+     */
+    int basketDiscount(long subtotal) {
+        int reached = Arrays.binarySearch(basketThresholds, subtotal);
+        if (reached < 0) {
+            reached = -reached - 2;
+        } else {
+            while (reached + 1 < basketThresholds.length
+                    && basketThresholds[reached + 1] == subtotal) {
+                reached++;
+            }
+        }
+        return reached < 0 ? 0 : basketDiscounts[reached];
+    }
+
+    /**
+     * Gets the discount of the whole sale for a customer, the largest of the customer discounts
+     * the customer is eligible for.
+     *
+     * @param customerId The ID of the customer.
+     * @return The discount in basis points, zero if the customer has no discount.
+     */
+    int customerDiscount(String customerId) {
+        return customerDiscounts.getOrDefault(customerId, 0);
+    }
+
+    /**
+     * Evaluates an item rule against the lines of a sale.
+     *
+     * @param rule The index of the rule, from {@link #rulesFor(String)}.
+     * @param lines The lines of the sale.
+     * @param discountedLines Filled with the lines the rule discounts. Must have room for all
+     *        lines.
+     * @param discounts Filled with the discount of each of those lines, excluding VAT, in öre.
+     *        Must have room for all lines.
+     * @return The number of lines discounted.
+     */
+    int evaluate(int rule, SaleLines lines, int[] discountedLines, long[] discounts) {
+        return switch (itemRules[rule]) {
+            case Promotion.MultiBuy multiBuy ->
+                evaluateMultiBuy(multiBuy, lines, discountedLines, discounts);
+            case Promotion.PercentOff percentOff ->
+                evaluatePercentOff(percentOff, lines, discountedLines, discounts);
+            default -> 0;
+        };
+    }
+
+    /**
+     * Makes every complete group of items pay for fewer items, giving away the cheapest.
+     */
+    private static int evaluateMultiBuy(Promotion.MultiBuy rule, SaleLines lines,
+            int[] discountedLines, long[] discounts) {
+        int count = 0;
+        int quantity = 0;
+        for (int line = 0; line < lines.size(); line++) {
+            if (rule.itemIds().contains(lines.item(line).id())) {
+                int position = count++;
+                while (position > 0
+                        && lines.unitPrice(discountedLines[position - 1]) > lines.unitPrice(line)) {
+                    discountedLines[position] = discountedLines[position - 1];
+                    position--;
+                }
+                discountedLines[position] = line;
+                quantity += lines.quantity(line);
+            }
+        }
+        int free = quantity / rule.buy() * (rule.buy() - rule.pay());
+        int discounted = 0;
+        for (int i = 0; i < count && free > 0; i++) {
+            int line = discountedLines[i];
+            int units = Math.min(free, lines.quantity(line));
+            discountedLines[discounted] = line;
+            discounts[discounted++] = lines.unitPrice(line) * units;
+            free -= units;
+        }
+        return discounted;
+    }
+
+    /**
+     * Takes the percentage off every line of the category, rounded half up to whole öre.
+     */
+    private static int evaluatePercentOff(Promotion.PercentOff rule, SaleLines lines,
+            int[] discountedLines, long[] discounts) {
+        int discounted = 0;
+        for (int line = 0; line < lines.size(); line++) {
+            if (rule.itemIds().contains(lines.item(line).id())) {
+                discountedLines[discounted] = line;
+                discounts[discounted++] = VatBuckets.discountOf(lines.grossNet(line),
+                        rule.percent() * BASIS_POINTS_PER_PERCENT);
+            }
+        }
+        return discounted;
+    }
+
+    /**
+     * Gets the number of item rules, which are the rules evaluated per line.
+     *
+     * @return The number of multi-buy and percent off rules.
+     */
+    public int itemRuleCount() {
+        return itemRules.length;
+    }
+}
@@ -6,35 +6,29 @@ package se.kth.iv1350.pos.model;
  * receipt.
  */
 public class Receipt {
-    private final Sale sale;
-    private final Amount amountPaid;
-    private final Amount change;
+    private final ReceiptDTO receiptDTO;
 
     /**
      * Creates a new instance representing the receipt of the specified sale.
      *
-     * @param sale The sale proved by this receipt.
-     */
-    /**
-     * Creates a new instance representing the receipt of the specified sale.
-     *
-     * @param sale The sale proved by this receipt.
-     * @param amountPaid How much was paid for the sale.
+     * @param sale The completed sale proved by this receipt. Its item list is shared with the
+     *        receipt, not copied.
+     * @param amountPaid How much cash was handed over for the sale.
      * @param change The amount of change returned to the customer.
      */
-    public Receipt(Sale sale, Amount amountPaid, Amount change) {
-        this.sale = sale;
-        this.amountPaid = amountPaid;
-        this.change = change;
+    public Receipt(SaleDTO sale, Amount amountPaid, Amount change) {
+        this.receiptDTO = new ReceiptDTO(sale.saleId(), sale.items(), sale.total(),
+                sale.totalVat(), sale.vatBreakdown(), sale.payments(), amountPaid, change,
+                sale.discount());
     }
 
     /**
-     * Gets a DTO representation of this receipt for printing.
+     * Gets a DTO representation of this receipt for printing. The same immutable DTO is returned
+     * on every call.
      *
-     * @return a new ReceiptDTO with all receipt data.
+     * @return a ReceiptDTO with all receipt data.
      */
     public ReceiptDTO toDTO() {
-        return new ReceiptDTO(sale.getItems().values().stream().map(SaleItem::toDTO).toList(),
-                sale.getTotalCost(), sale.getTotalVat(), amountPaid, change);
+        return receiptDTO;
     }
 }
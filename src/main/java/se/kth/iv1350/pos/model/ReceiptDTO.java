@@ -6,13 +6,64 @@ import java.util.List;
  * Data Transfer Object (DTO) for a receipt. This class encapsulates the details of a sale, the
  * amount paid, and any change given.
  * 
+ * @param saleId The ID of the sale, see {@link SaleIdGenerator#receiptNumber(long)}.
  * @param items The list of items in the sale.
  * @param total The total amount for the sale.
  * @param totalVat The total VAT applied to the sale.
- * @param discount The discount applied to the sale.
- * @param amountPaid The total amount paid by the customer.
+ * @param vatBreakdown The totals per VAT rate, ordered by rate.
+ * @param payments The parts of the payment, one per tender, see {@link SaleDTO#payments()}.
+ * @param amountPaid The cash handed over by the customer.
  * @param change The change returned to the customer after payment.
+ * @param discount The discount given by promotions, see {@link SaleDTO#discount()}.
  */
-public record ReceiptDTO(List<SaleItemDTO> items, Amount total, Amount totalVat,
-                Amount amountPaid, Amount change) {
-}
\ No newline at end of file
+public record ReceiptDTO(long saleId, List<SaleItemDTO> items, Amount total, Amount totalVat,
+                List<VatRateTotal> vatBreakdown, List<PaymentDTO> payments, Amount amountPaid,
+                Amount change, Amount discount) {
+    /**
+     * Creates a new instance without a discount.
+     *
+     * @param saleId The ID of the sale.
+     * @param items The list of items in the sale.
+     * @param total The total amount for the sale.
+     * @param totalVat The total VAT applied to the sale.
+     * @param vatBreakdown The totals per VAT rate, ordered by rate.
+     * @param payments The parts of the payment, one per tender.
+     * @param amountPaid The cash handed over by the customer.
+     * @param change The change returned to the customer after payment.
+     */
+    public ReceiptDTO(long saleId, List<SaleItemDTO> items, Amount total, Amount totalVat,
+                    List<VatRateTotal> vatBreakdown, List<PaymentDTO> payments,
+                    Amount amountPaid, Amount change) {
+        this(saleId, items, total, totalVat, vatBreakdown, payments, amountPaid, change,
+                        Amount.zero());
+    }
+
+    /**
+     * Creates a new instance without a sale ID, which is then zero, and without payments.
+     *
+     * @param items The list of items in the sale.
+     * @param total The total amount for the sale.
+     * @param totalVat The total VAT applied to the sale.
+     * @param vatBreakdown The totals per VAT rate, ordered by rate.
+     * @param amountPaid The total amount paid by the customer.
+     * @param change The change returned to the customer after payment.
+     */
+    public ReceiptDTO(List<SaleItemDTO> items, Amount total, Amount totalVat,
+                    List<VatRateTotal> vatBreakdown, Amount amountPaid, Amount change) {
+        this(0, items, total, totalVat, vatBreakdown, List.of(), amountPaid, change);
+    }
+
+    /**
+     * Creates a new instance without a sale ID, VAT breakdown or payments.
+     *
+     * @param items The list of items in the sale.
+     * @param total The total amount for the sale.
+     * @param totalVat The total VAT applied to the sale.
+     * @param amountPaid The total amount paid by the customer.
+     * @param change The change returned to the customer after payment.
+     */
+    public ReceiptDTO(List<SaleItemDTO> items, Amount total, Amount totalVat, Amount amountPaid,
+                    Amount change) {
+        this(items, total, totalVat, List.of(), amountPaid, change);
+    }
+}
@@ -3,7 +3,8 @@ package se.kth.iv1350.pos.model;
 /**
  * Observer interface for receiving notifications when a sale has been completed. Implementations
  * can use the provided {@link SaleDTO} to update total revenue, log sales, or display revenue
- * information.
+ * information. Observers are notified after the payment is registered, and an observer that
+ * throws does not undo or fail the payment.
  */
 public interface RevenueObserver {
     /**
@@ -6,20 +6,37 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import se.kth.iv1350.pos.integration.BarcodeDecoder;
 import se.kth.iv1350.pos.integration.ItemDTO;
+import se.kth.iv1350.pos.util.FileLogger;
 
 /**
  * Represents a <code>Sale</code> transaction, containing items, totals, and receipt generation. The
  * <code>Sale</code> is managed by the {@link Controller Controller} and provides data via
  * {@link SaleDTO}.
+ * <p>
+ * Promotions from a {@link PromotionEngine} are applied while items are scanned, so the total is
+ * always the discounted total. A changed line only re-evaluates the rules naming its item.
  */
 public class Sale {
-    private final LinkedHashMap<String, SaleItem> items;
+    private final SaleLines lines;
+    private final VatBuckets vatBuckets = new VatBuckets();
     private final CashRegister cashRegister;
     private final List<RevenueObserver> revenueObservers = new ArrayList<>();
+    private final AppliedPromotions appliedPromotions = new AppliedPromotions();
+    private final AppliedPromotions.LineDiscountChange lineDiscountChange =
+            this::changeLineDiscount;
+    private PromotionEngine promotions = PromotionEngine.NONE;
+    private String customerId;
+    private int customerDiscount;
+    private int saleDiscount;
+    private long id;
+    private long subtotalMinorUnits;
+    private long subtotalVatMinorUnits;
     private Amount total;
     private Amount totalVat;
     private Receipt receipt;
+    private SaleDTO completedSale;
     private SaleState state;
 
     /**
@@ -27,11 +44,11 @@ public class Sale {
      * totals.
      */
     public Sale(CashRegister cashRegister) {
-        this.items = new LinkedHashMap<>();
+        this.lines = new SaleLines();
         this.cashRegister = cashRegister;
         this.total = Amount.zero();
         this.totalVat = Amount.zero();
-        this.state = new SaleInProgressState(this);
+        this.state = IN_PROGRESS;
     }
 
     /**
@@ -41,7 +58,33 @@ public class Sale {
      * @return A {@link SaleItemDTO} with updated sale information, or null if item is null.
      */
     public SaleItemDTO addItem(ItemDTO item) {
-        return state.addItem(item);
+        return state.addItem(this, item, item == null ? null : item.id());
+    }
+
+    /**
+     * Adds a package of a variable-measure item, whose weight or price is embedded in its barcode.
+     * The package is priced from the base item, without looking up every weight, and gets a line
+     * of its own identified by the barcode. Packages with the same barcode share a line. The item
+     * of the line keeps the ID of the base SKU, so promotions and the inventory see the catalog
+     * item.
+     *
+     * @param baseItem The item of the base SKU of the barcode. For an embedded weight its price
+     *        is the price per kilogram. Must not be null.
+     * @param barcode A variable-measure barcode, see {@link BarcodeDecoder#isVariableMeasure(long)}.
+     * @return A {@link SaleItemDTO} with updated sale information.
+     * @throws IllegalArgumentException if the barcode has no embedded weight or price.
+     */
+    public SaleItemDTO addMeasuredItem(ItemDTO baseItem, long barcode) {
+        if (!BarcodeDecoder.isVariableMeasure(barcode)) {
+            throw new IllegalArgumentException("Not a variable-measure barcode: " + barcode);
+        }
+        int value = BarcodeDecoder.embeddedValue(barcode);
+        long net = BarcodeDecoder.isEmbeddedWeight(barcode)
+                ? SaleLines.netOfWeight(SaleLines.toMinorUnits(baseItem.price()), value)
+                : SaleLines.netOfGross(value, SaleLines.toBasisPoints(baseItem.vatRate()));
+        ItemDTO measured = new ItemDTO(baseItem.id(), baseItem.name(), baseItem.description(),
+                net / 100.0, baseItem.vatRate());
+        return state.addItem(this, measured, BarcodeDecoder.toItemId(barcode));
     }
 
     /**
@@ -52,7 +95,35 @@ public class Sale {
      *         are no items in the sale, the quantity is invalid, or no last item exists.
      */
     public SaleItemDTO setLastItemQuantity(int quantity) {
-        return state.setLastItemQuantity(quantity);
+        return state.setLastItemQuantity(this, quantity);
+    }
+
+    /**
+     * Identifies the customer of the <code>Sale</code>, so that the customer discounts of the
+     * customer are given.
+     *
+     * @param customerId The ID of the customer.
+     * @return The total cost after the discounts, as an {@link Amount}.
+     */
+    public Amount setCustomer(String customerId) {
+        return setCustomer(customerId, 0);
+    }
+
+    /**
+     * Identifies the customer of the <code>Sale</code>, with a discount for the customer from the
+     * discount database. The largest of that discount and the customer discounts of the
+     * promotions is given.
+     *
+     * @param customerId The ID of the customer.
+     * @param discountPercent The percentage off the total cost the customer is eligible for.
+     * @return The total cost after the discounts, as an {@link Amount}.
+     * @throws IllegalArgumentException if the percentage is not between 0 and 100.
+     */
+    public Amount setCustomer(String customerId, int discountPercent) {
+        if (discountPercent < 0 || discountPercent > 100) {
+            throw new IllegalArgumentException("Discount must be between 0 and 100 percent.");
+        }
+        return state.setCustomer(this, customerId, discountPercent);
     }
 
     /**
@@ -61,18 +132,100 @@ public class Sale {
      * @return The total cost as an {@link Amount}.
      */
     public Amount completeSale() {
-        return state.completeSale();
+        return state.completeSale(this);
     }
 
     /**
-     * Registers a payment and returns the change.
+     * Registers a payment in cash only and returns the change.
      *
-     * @param amountPaid The amount paid as an {@link Amount}. Must not be null or negative.
+     * @param amountPaid The amount paid as an {@link Amount}. Must not be null and must cover the
+     *        total cost, rounded to whole kronor.
      * @return The change as an {@link Amount}.
-     * @throws IllegalArgumentException if the payment amount is null or negative.
+     * @throws IllegalArgumentException if the payment amount is null, negative or less than the
+     *         total cost.
+     * @throws IllegalStateException if the cash drawer can not give the change.
      */
     public Amount processPayment(Amount amountPaid) {
-        return state.processPayment(amountPaid);
+        return processPayment(amountPaid, List.of());
+    }
+
+    /**
+     * Registers a payment made with several tenders and returns the change. The other tenders are
+     * applied first, and the rest is paid in cash, rounded to whole kronor.
+     *
+     * @param cashPaid The cash handed over. Must not be null and must cover the cash due, see
+     *        {@link #getCashDue(Amount)}.
+     * @param otherPayments The authorized payments made with other tenders than cash.
+     * @return The change as an {@link Amount}.
+     * @throws IllegalArgumentException if the cash is null, negative or less than the cash due, or
+     *         if the other payments are more than the total cost.
+     * @throws IllegalStateException if the cash drawer can not give the change.
+     */
+    public Amount processPayment(Amount cashPaid, List<PaymentDTO> otherPayments) {
+        return state.processPayment(this, cashPaid, otherPayments);
+    }
+
+    /**
+     * Gets the amount to pay in cash, after the specified amount has been paid with other tenders.
+     * The cash due is rounded to whole kronor, with 50 öre rounded up.
+     *
+     * @param otherTenders The amount paid with other tenders than cash.
+     * @return The cash due.
+     */
+    public Amount getCashDue(Amount otherTenders) {
+        return CashPayment.roundToKrona(total.subtract(otherTenders));
+    }
+
+    /**
+     * Resets this <code>Sale</code> to an empty sale in progress, so that the instance and its
+     * line storage can be reused for the next customer. Removes the ID, all items, totals, the
+     * receipt and all revenue observers.
+     */
+    void reset() {
+        id = 0;
+        lines.clear();
+        vatBuckets.clear();
+        revenueObservers.clear();
+        appliedPromotions.clear();
+        promotions = PromotionEngine.NONE;
+        customerId = null;
+        customerDiscount = 0;
+        saleDiscount = 0;
+        subtotalMinorUnits = 0;
+        subtotalVatMinorUnits = 0;
+        total = Amount.zero();
+        totalVat = Amount.zero();
+        receipt = null;
+        completedSale = null;
+        state = IN_PROGRESS;
+    }
+
+    /**
+     * Gives this <code>Sale</code> its ID. Called when the sale is started.
+     *
+     * @param id The sale ID, see {@link SaleIdGenerator}.
+     */
+    void assignId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Sets the promotions given in this <code>Sale</code>. Called when the sale is started,
+     * before any items are added.
+     *
+     * @param promotions The active promotions.
+     */
+    void usePromotions(PromotionEngine promotions) {
+        this.promotions = promotions;
+    }
+
+    /**
+     * Gets the ID of this <code>Sale</code>.
+     *
+     * @return The sale ID, or zero if the sale was not started by a {@link SalePool}.
+     */
+    public long getId() {
+        return id;
     }
 
     /**
@@ -93,6 +246,15 @@ public class Sale {
         return receipt;
     }
 
+    /**
+     * Checks if the payment of this <code>Sale</code> has been registered.
+     *
+     * @return <code>true</code> if the sale is paid.
+     */
+    public boolean isPaid() {
+        return state == COMPLETED;
+    }
+
     /**
      * Gets the total cost for this sale.
      *
@@ -102,6 +264,21 @@ public class Sale {
         return total;
     }
 
+    /**
+     * Gets the total discount of this sale, the total cost of all items at their full price minus
+     * the total cost.
+     *
+     * @return The discount, including VAT, as an {@link Amount}.
+     */
+    public Amount getDiscount() {
+        long fullPrice = 0;
+        for (int line = 0; line < lines.size(); line++) {
+            long net = lines.grossNet(line);
+            fullPrice += net + SaleLines.vatOf(net, lines.vatRate(line));
+        }
+        return Amount.ofMinorUnits(Math.max(0, fullPrice - total.toMinorUnits()));
+    }
+
     /**
      * Gets the total VAT for this sale.
      *
@@ -112,21 +289,32 @@ public class Sale {
     }
 
     /**
-     * Creates a {@link SaleDTO} representing this sale's data for transfer between layers.
+     * Creates a {@link SaleDTO} representing this sale's data for transfer between layers. Once
+     * the sale is paid, the same immutable <code>SaleDTO</code> is returned on every call, so all
+     * receivers of the completed sale share one copy. Its item list is created lazily, see
+     * {@link SaleItemList}.
      *
-     * @return a new <code>SaleDTO</code> with all items, total, and VAT.
+     * @return a <code>SaleDTO</code> with the sale ID, all items, total, and VAT.
      */
     public SaleDTO toDTO() {
-        List<SaleItemDTO> itemDTOs = items.values().stream().map(SaleItem::toDTO).toList();
-        return new SaleDTO(itemDTOs, total, totalVat);
+        if (completedSale != null) {
+            return completedSale;
+        }
+        return new SaleDTO(id, lines.snapshot(), total, totalVat,
+                vatBuckets.snapshot(saleDiscount), List.of(), getDiscount());
     }
 
     /**
-     * Gets all items in this sale as an unmodifiable map.
+     * Gets all items in this sale as an unmodifiable map, in the order they were entered. The map
+     * is a copy created on every call.
      *
      * @return An unmodifiable map of item IDs to {@link SaleItem}.
      */
     Map<String, SaleItem> getItems() {
+        Map<String, SaleItem> items = new LinkedHashMap<>();
+        for (int line = 0; line < lines.size(); line++) {
+            items.put(lines.item(line).id(), new SaleItem(lines.item(line), lines.quantity(line)));
+        }
         return Collections.unmodifiableMap(items);
     }
 
@@ -151,102 +339,178 @@ public class Sale {
     }
 
     /**
-     * Notifies all registered revenue observers with the completed sale data.
+     * Notifies all registered revenue observers with the completed sale data. The sale is paid
+     * when they are notified, so an observer that fails is logged and does not stop the others or
+     * fail the payment.
      *
      * @param saleDTO The completed sale's data.
      */
     private void notifyRevenueObservers(SaleDTO saleDTO) {
         for (RevenueObserver observer : revenueObservers) {
-            observer.saleCompleted(saleDTO);
+            try {
+                observer.saleCompleted(saleDTO);
+            } catch (RuntimeException e) {
+                FileLogger.log("Revenue observer failed for sale " + saleDTO.saleId(), e);
+            }
         }
     }
 
     /**
-     * Updates the running total and VAT for the sale, including any discount.
+     * Updates the running subtotal and VAT for the sale, and the totals of the line's VAT rate,
+     * after one line has changed, by removing the line's old amounts and adding its new ones.
+     *
+     * @param vatRate The VAT rate of the line in basis points.
+     * @param oldTotal The line total before the change, in öre.
+     * @param oldVat The line VAT before the change, in öre.
+     * @param newTotal The line total after the change, in öre.
+     * @param newVat The line VAT after the change, in öre.
+     */
+    private void updateRunningTotal(int vatRate, long oldTotal, long oldVat, long newTotal,
+            long newVat) {
+        subtotalMinorUnits += newTotal - oldTotal;
+        subtotalVatMinorUnits += newVat - oldVat;
+        vatBuckets.add(vatRate, (newTotal - newVat) - (oldTotal - oldVat), newVat - oldVat);
+    }
+
+    /**
+     * Evaluates the item rules naming an item again, after the line of the item has changed, and
+     * then updates the total. Rules not naming the item keep their discounts.
+     *
+     * @param itemId The ID of the item whose line changed.
      */
-    void updateRunningTotal() {
-        total = Amount.zero();
-        totalVat = Amount.zero();
-        for (SaleItem item : items.values()) {
-            total = total.add(item.getLineTotal());
-            totalVat = totalVat.add(item.getLineTotalVat());
+    private void applyPromotions(String itemId) {
+        for (int rule : promotions.rulesFor(itemId)) {
+            appliedPromotions.reevaluate(promotions, rule, lines, lineDiscountChange);
         }
+        updateTotal();
+    }
+
+    /**
+     * Changes the discount of a line and updates the running subtotal. Lines that were removed
+     * are ignored.
+     */
+    private void changeLineDiscount(int line, long delta) {
+        if (line >= lines.size() || delta == 0) {
+            return;
+        }
+        long oldTotal = lines.lineTotal(line);
+        long oldVat = lines.lineVat(line);
+        lines.setDiscount(line, lines.discount(line) + delta);
+        updateRunningTotal(lines.vatRate(line), oldTotal, oldVat, lines.lineTotal(line),
+                lines.lineVat(line));
+    }
+
+    /**
+     * Updates the discount of the whole sale, the basket threshold reached combined with the
+     * customer discount, and the total and VAT after that discount.
+     */
+    private void updateTotal() {
+        int basket = promotions.basketDiscount(subtotalMinorUnits);
+        int customer = customerId == null ? 0
+                : Math.max(customerDiscount, promotions.customerDiscount(customerId));
+        saleDiscount = combine(basket, customer);
+        if (saleDiscount == 0) {
+            total = Amount.ofMinorUnits(subtotalMinorUnits);
+            totalVat = Amount.ofMinorUnits(subtotalVatMinorUnits);
+        } else {
+            total = Amount.ofMinorUnits(vatBuckets.discountedTotal(saleDiscount));
+            totalVat = Amount.ofMinorUnits(vatBuckets.discountedVat(saleDiscount));
+        }
+    }
+
+    /**
+     * Combines two discounts in basis points, the second taken off the price after the first.
+     */
+    private static int combine(int first, int second) {
+        return 10_000 - (10_000 - first) * (10_000 - second) / 10_000;
     }
 
     // --- State Pattern ---
+    private static final SaleState IN_PROGRESS = new SaleInProgressState();
+    private static final SaleState COMPLETED = new SaleCompletedState();
+
     /**
-     * State pattern for Sale: controls allowed operations based on sale lifecycle.
+     * State pattern for Sale: controls allowed operations based on sale lifecycle. States are
+     * stateless and shared, the sale they act on is passed to every call.
      */
     private interface SaleState {
-        /** Add an item to the sale (only allowed in-progress). */
-        SaleItemDTO addItem(ItemDTO item);
+        /** Add an item to the line with the specified key (only allowed in-progress). */
+        SaleItemDTO addItem(Sale sale, ItemDTO item, String lineKey);
 
         /** Update quantity of last item (only allowed in-progress). */
-        SaleItemDTO setLastItemQuantity(int quantity);
+        SaleItemDTO setLastItemQuantity(Sale sale, int quantity);
+
+        /** Identify the customer (only allowed in-progress). */
+        Amount setCustomer(Sale sale, String customerId, int discountPercent);
 
         /** Complete the sale (allowed in-progress and completed). */
-        Amount completeSale();
+        Amount completeSale(Sale sale);
 
         /** Process payment (only allowed in-progress, once). */
-        Amount processPayment(Amount amountPaid);
+        Amount processPayment(Sale sale, Amount cashPaid, List<PaymentDTO> otherPayments);
     }
 
-    /** State for when a sale is in progress and items can be added/modified. */
-    private final class SaleInProgressState implements SaleState {
-        private final Sale sale;
-
-        SaleInProgressState(Sale sale) {
-            this.sale = sale;
+    /**
+     * State for when a sale is in progress and items can be added/modified. Holds no data of its
+     * own, so a single instance is shared by all sales.
+     */
+    private static final class SaleInProgressState implements SaleState {
+        @Override
+        public SaleItemDTO addItem(Sale sale, ItemDTO item, String lineKey) {
+            return sale.doAddItem(item, lineKey);
         }
 
         @Override
-        public SaleItemDTO addItem(ItemDTO item) {
-            return sale.doAddItem(item);
+        public SaleItemDTO setLastItemQuantity(Sale sale, int quantity) {
+            return sale.doSetLastItemQuantity(quantity);
         }
 
         @Override
-        public SaleItemDTO setLastItemQuantity(int quantity) {
-            return sale.doSetLastItemQuantity(quantity);
+        public Amount setCustomer(Sale sale, String customerId, int discountPercent) {
+            return sale.doSetCustomer(customerId, discountPercent);
         }
 
         @Override
-        public Amount completeSale() {
+        public Amount completeSale(Sale sale) {
             return sale.total;
         }
 
         @Override
-        public Amount processPayment(Amount amountPaid) {
-            Amount change = sale.doProcessPayment(amountPaid);
-            sale.setState(new SaleCompletedState(sale));
+        public Amount processPayment(Sale sale, Amount cashPaid, List<PaymentDTO> otherPayments) {
+            Amount change = sale.doProcessPayment(cashPaid, otherPayments);
+            sale.setState(COMPLETED);
+            sale.saleCompleted(sale.completedSale);
             return change;
         }
     }
 
-    /** State for when a sale is completed and no further changes are allowed. */
-    private final class SaleCompletedState implements SaleState {
-        private final Sale sale;
-
-        SaleCompletedState(Sale sale) {
-            this.sale = sale;
-        }
-
+    /**
+     * State for when a sale is completed and no further changes are allowed. Holds no data of its
+     * own, so a single instance is shared by all sales.
+     */
+    private static final class SaleCompletedState implements SaleState {
         @Override
-        public SaleItemDTO addItem(ItemDTO item) {
+        public SaleItemDTO addItem(Sale sale, ItemDTO item, String lineKey) {
             throw new IllegalStateException("Cannot add items after sale is completed.");
         }
 
         @Override
-        public SaleItemDTO setLastItemQuantity(int quantity) {
+        public SaleItemDTO setLastItemQuantity(Sale sale, int quantity) {
             throw new IllegalStateException("Cannot update items after sale is completed.");
         }
 
         @Override
-        public Amount completeSale() {
+        public Amount setCustomer(Sale sale, String customerId, int discountPercent) {
+            throw new IllegalStateException("Cannot add a customer after sale is completed.");
+        }
+
+        @Override
+        public Amount completeSale(Sale sale) {
             return sale.total;
         }
 
         @Override
-        public Amount processPayment(Amount amountPaid) {
+        public Amount processPayment(Sale sale, Amount cashPaid, List<PaymentDTO> otherPayments) {
             throw new IllegalStateException("Payment already processed for this sale.");
         }
     }
@@ -255,57 +519,90 @@ public class Sale {
     /**
      * Actually adds an item to the sale. Only called by state classes.
      */
-    private SaleItemDTO doAddItem(ItemDTO item) {
+    private SaleItemDTO doAddItem(ItemDTO item, String lineKey) {
         if (item == null) {
             throw new IllegalArgumentException("Item cannot be null");
         }
-        if (items.containsKey(item.id())) {
-            items.get(item.id()).incrementQuantity();
-        } else {
-            items.put(item.id(), new SaleItem(item, 1));
-        }
-        updateRunningTotal();
-        return new SaleItemDTO(item, items.get(item.id()).getQuantity(), total, totalVat);
+        int line = lines.find(lineKey);
+        long oldTotal = line < 0 ? 0 : lines.lineTotal(line);
+        long oldVat = line < 0 ? 0 : lines.lineVat(line);
+        line = lines.add(item, lineKey);
+        updateRunningTotal(lines.vatRate(line), oldTotal, oldVat, lines.lineTotal(line),
+                lines.lineVat(line));
+        applyPromotions(item.id());
+        return new SaleItemDTO(item, lines.quantity(line), total, totalVat);
     }
 
     /**
      * Actually updates the quantity of the last item. Only called by state classes.
      */
     private SaleItemDTO doSetLastItemQuantity(int quantity) {
-        if (items.isEmpty() || items.lastEntry() == null) {
+        if (lines.isEmpty()) {
             throw new IllegalStateException("No items in sale to update quantity");
         }
         if (quantity < 0) {
             throw new IllegalArgumentException("Quantity must be non-negative");
         }
-        var lastEntry = items.lastEntry();
+        int lastLine = lines.size() - 1;
+        long oldTotal = lines.lineTotal(lastLine);
+        long oldVat = lines.lineVat(lastLine);
+        int vatRate = lines.vatRate(lastLine);
+        String itemId = lines.item(lastLine).id();
         if (quantity == 0) {
-            items.remove(lastEntry.getKey());
-            updateRunningTotal();
+            lines.removeLast();
+            updateRunningTotal(vatRate, oldTotal, oldVat, 0, 0);
+            applyPromotions(itemId);
             return null;
         }
-        lastEntry.getValue().updateQuantity(quantity);
-        updateRunningTotal();
-        return new SaleItemDTO(lastEntry.getValue().getItem(), lastEntry.getValue().getQuantity(),
-                total, totalVat);
+        lines.setQuantity(lastLine, quantity);
+        updateRunningTotal(vatRate, oldTotal, oldVat, lines.lineTotal(lastLine),
+                lines.lineVat(lastLine));
+        applyPromotions(itemId);
+        return new SaleItemDTO(lines.item(lastLine), lines.quantity(lastLine), total, totalVat);
+    }
+
+    /**
+     * Actually identifies the customer. Only called by state classes.
+     */
+    private Amount doSetCustomer(String customerId, int discountPercent) {
+        this.customerId = customerId;
+        this.customerDiscount = discountPercent * 100;
+        updateTotal();
+        return total;
     }
 
     /**
      * Actually processes payment for the sale. Only called by state classes.
      */
-    private Amount doProcessPayment(Amount amountPaid) {
-        if (amountPaid == null) {
+    private Amount doProcessPayment(Amount cashPaid, List<PaymentDTO> otherPayments) {
+        if (cashPaid == null) {
             throw new IllegalArgumentException("Amount paid cannot be null");
         }
-        if (amountPaid.isNegative()) {
+        if (cashPaid.isNegative()) {
             throw new IllegalArgumentException("Payment amount must be non-negative");
         }
-        CashPayment cashPayment = new CashPayment(amountPaid);
-        cashPayment.calculateTotalCost(this);
-        cashRegister.updateBalance(cashPayment.getAmountPaid());
-        Amount change = amountPaid.subtract(total);
-        receipt = new Receipt(this, amountPaid, change);
-        saleCompleted(this.toDTO());
+        long otherTenders = 0;
+        for (PaymentDTO payment : otherPayments) {
+            otherTenders += payment.amount().toMinorUnits();
+        }
+        if (otherTenders > total.toMinorUnits()) {
+            throw new IllegalArgumentException("Payments with other tenders exceed the total cost");
+        }
+        Amount cashDue = getCashDue(Amount.ofMinorUnits(otherTenders));
+        if (cashPaid.toMinorUnits() < cashDue.toMinorUnits()) {
+            throw new IllegalArgumentException("Payment amount must cover the total cost");
+        }
+        CashPayment cashPayment = new CashPayment(cashPaid);
+        cashPayment.calculateChange(cashDue);
+        Amount change = cashPayment.getAmountPaid();
+        cashRegister.registerPayment(cashPaid, change);
+        List<PaymentDTO> payments = new ArrayList<>(otherPayments);
+        if (!cashDue.isZero()) {
+            payments.add(new PaymentDTO(PaymentDTO.CASH, cashDue, null));
+        }
+        completedSale = new SaleDTO(id, lines.snapshot(), total, totalVat,
+                vatBuckets.snapshot(saleDiscount), List.copyOf(payments), getDiscount());
+        receipt = new Receipt(completedSale, cashPaid, change);
         return change;
     }
 }
@@ -4,7 +4,81 @@ import java.util.List;
 
 /**
  * Data Transfer Object for a completed <code>Sale</code>, used to transfer sale data between layers.
- * Contains a list of {@link SaleItemDTO}, the total {@link Amount}, and total VAT as {@link Amount}.
+ * Contains the sale ID, a list of {@link SaleItemDTO}, the total {@link Amount}, total VAT as
+ * {@link Amount}, the totals per VAT rate as {@link VatRateTotal}, ordered by rate, the payments
+ * as {@link PaymentDTO} and the discount given by promotions. The payments add up to the total
+ * plus the cash rounding, and are empty until the sale is paid. The total, VAT and item totals
+ * are after the discount.
  */
-public record SaleDTO(List<SaleItemDTO> items, Amount total, Amount totalVat) {
-} 
\ No newline at end of file
+public record SaleDTO(long saleId, List<SaleItemDTO> items, Amount total, Amount totalVat,
+        List<VatRateTotal> vatBreakdown, List<PaymentDTO> payments, Amount discount) {
+    /**
+     * Creates a new instance without a discount.
+     *
+     * @param saleId The ID of the sale.
+     * @param items The items in the sale.
+     * @param total The total of the sale, including VAT.
+     * @param totalVat The total VAT of the sale.
+     * @param vatBreakdown The totals per VAT rate, ordered by rate.
+     * @param payments The payments of the sale.
+     */
+    public SaleDTO(long saleId, List<SaleItemDTO> items, Amount total, Amount totalVat,
+            List<VatRateTotal> vatBreakdown, List<PaymentDTO> payments) {
+        this(saleId, items, total, totalVat, vatBreakdown, payments, Amount.zero());
+    }
+
+    /**
+     * Creates a new instance without payments.
+     *
+     * @param saleId The ID of the sale.
+     * @param items The items in the sale.
+     * @param total The total of the sale, including VAT.
+     * @param totalVat The total VAT of the sale.
+     * @param vatBreakdown The totals per VAT rate, ordered by rate.
+     */
+    public SaleDTO(long saleId, List<SaleItemDTO> items, Amount total, Amount totalVat,
+            List<VatRateTotal> vatBreakdown) {
+        this(saleId, items, total, totalVat, vatBreakdown, List.of());
+    }
+
+    /**
+     * Creates a new instance without a sale ID, which is then zero.
+     *
+     * @param items The items in the sale.
+     * @param total The total of the sale, including VAT.
+     * @param totalVat The total VAT of the sale.
+     * @param vatBreakdown The totals per VAT rate, ordered by rate.
+     */
+    public SaleDTO(List<SaleItemDTO> items, Amount total, Amount totalVat,
+            List<VatRateTotal> vatBreakdown) {
+        this(0, items, total, totalVat, vatBreakdown);
+    }
+
+    /**
+     * Creates a new instance without a sale ID, with the VAT breakdown calculated from the items.
+     *
+     * @param items The items in the sale.
+     * @param total The total of the sale, including VAT.
+     * @param totalVat The total VAT of the sale.
+     */
+    public SaleDTO(List<SaleItemDTO> items, Amount total, Amount totalVat) {
+        this(items, total, totalVat, VatBuckets.breakdownOf(items));
+    }
+
+    /**
+     * Gets the cash rounding of the sale, the difference between the payments and the total.
+     *
+     * @return The rounding in öre, negative if the total was rounded down, and zero if the sale
+     *         has no payments.
+     */
+    public long rounding() {
+        if (payments.isEmpty()) {
+            return 0;
+        }
+        long paid = 0;
+        for (PaymentDTO payment : payments) {
+            paid += payment.amount().toMinorUnits();
+        }
+        return paid - total.toMinorUnits();
+    }
+}
@@ -0,0 +1,26 @@
+package se.kth.iv1350.pos.model;
+
+/**
+ * An event in the life of a sale, published by the {@link SaleEventPublisher}.
+ *
+ * @param sequence The sequence number of the event. Every event has a number one higher than the
+ *        event before it.
+ * @param type What happened.
+ * @param saleId The ID of the sale the event belongs to.
+ * @param item The added or updated item, for item events. <code>null</code> otherwise.
+ * @param sale The completed sale, for {@link Type#SALE_COMPLETED} events. <code>null</code>
+ *        otherwise.
+ */
+public record SaleEvent(long sequence, Type type, long saleId, SaleItemDTO item, SaleDTO sale) {
+    /**
+     * The kinds of sale events.
+     */
+    public enum Type {
+        /** An item was scanned into a sale. */
+        ITEM_ADDED,
+        /** The quantity of an item in a sale was changed. */
+        ITEM_UPDATED,
+        /** A sale was paid. */
+        SALE_COMPLETED
+    }
+}
@@ -0,0 +1,272 @@
+package se.kth.iv1350.pos.model;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Publishes item and sale events to any number of {@link Flow.Subscriber}s, each receiving events
+ * only as fast as it requests them. Publishing an event never waits for a subscriber, so slow
+ * subscribers do not affect the register.
+ * <p>
+ * Published events are kept in a fixed-size log shared by all subscribers. Each subscriber has a
+ * position in the log and a buffer size, which is how far it may fall behind the newest event.
+ * What happens to a subscriber that falls further behind is set by its {@link BufferPolicy}. A new
+ * subscriber may start at an earlier sequence number, to replay events still kept in the log.
+ * <p>
+ * Events are delivered on the publisher's executor, by default one virtual thread per delivery
+ * round. Each subscriber receives its signals one at a time and in order. Once the publisher is
+ * closed, new events are ignored.
+ */
+public class SaleEventPublisher implements Flow.Publisher<SaleEvent>, RevenueObserver,
+        AutoCloseable {
+    private static final int DEFAULT_LOG_SIZE = 4096;
+
+    /**
+     * What to do with a subscriber that falls further behind than its buffer size.
+     */
+    public enum BufferPolicy {
+        /** Skip the oldest events the subscriber has not received, so it keeps up. */
+        DROP_OLDEST,
+        /** Cancel the subscription and signal an error to the subscriber. */
+        FAIL
+    }
+
+    private final AtomicReferenceArray<SaleEvent> log;
+    private final Executor executor;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private volatile long lastSequence;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new publisher with the default log size, delivering on virtual threads.
+     */
+    public SaleEventPublisher() {
+        this(DEFAULT_LOG_SIZE, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Creates a new publisher.
+     *
+     * @param logSize The number of most recent events kept for replay and slow subscribers.
+     * @param executor Runs the deliveries to subscribers.
+     */
+    public SaleEventPublisher(int logSize, Executor executor) {
+        this.log = new AtomicReferenceArray<>(logSize);
+        this.executor = executor;
+    }
+
+    /**
+     * Subscribes to new events, with a buffer as large as the log and the
+     * {@link BufferPolicy#DROP_OLDEST} policy.
+     *
+     * @param subscriber The subscriber.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super SaleEvent> subscriber) {
+        subscribe(subscriber, BufferPolicy.DROP_OLDEST, log.length(), lastSequence + 1);
+    }
+
+    /**
+     * Subscribes to events starting at a specified sequence number.
+     *
+     * @param subscriber The subscriber.
+     * @param policy What to do if the subscriber falls behind by more than its buffer size.
+     * @param bufferSize How many events the subscriber may fall behind. At most the log size.
+     * @param fromSequence The sequence number of the first event to receive. Events still in the
+     *        log are replayed. If older events are asked for, they are treated as if the
+     *        subscriber had fallen behind.
+     */
+    public void subscribe(Flow.Subscriber<? super SaleEvent> subscriber, BufferPolicy policy,
+            int bufferSize, long fromSequence) {
+        if (bufferSize <= 0 || bufferSize > log.length()) {
+            throw new IllegalArgumentException("Buffer size must be between 1 and " + log.length());
+        }
+        Subscription subscription = new Subscription(subscriber, policy, bufferSize,
+                Math.max(1, fromSequence));
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+        subscription.signal();
+    }
+
+    /**
+     * Publishes that an item was scanned into a sale.
+     *
+     * @param saleId The ID of the sale.
+     * @param item The added item.
+     */
+    public void publishItemAdded(long saleId, SaleItemDTO item) {
+        publish(SaleEvent.Type.ITEM_ADDED, saleId, item, null);
+    }
+
+    /**
+     * Publishes that the quantity of an item in a sale was changed.
+     *
+     * @param saleId The ID of the sale.
+     * @param item The updated item.
+     */
+    public void publishItemUpdated(long saleId, SaleItemDTO item) {
+        publish(SaleEvent.Type.ITEM_UPDATED, saleId, item, null);
+    }
+
+    /**
+     * Publishes that a sale was completed.
+     *
+     * @param sale The completed sale.
+     */
+    @Override
+    public void saleCompleted(SaleDTO sale) {
+        publish(SaleEvent.Type.SALE_COMPLETED, sale.saleId(), null, sale);
+    }
+
+    /**
+     * Gets the sequence number of the latest published event.
+     *
+     * @return The latest sequence number, or zero if nothing has been published.
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Stops publishing. Subscribers receive the events already published and are then completed.
+     * Events published after this are ignored, so a sale that is still in progress when the
+     * register shuts down is not affected.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    private void publish(SaleEvent.Type type, long saleId, SaleItemDTO item, SaleDTO sale) {
+        synchronized (log) {
+            if (closed) {
+                return;
+            }
+            long sequence = lastSequence + 1;
+            log.set((int) (sequence % log.length()),
+                    new SaleEvent(sequence, type, saleId, item, sale));
+            lastSequence = sequence;
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    /**
+     * Gets an event from the log.
+     *
+     * @return The event, or <code>null</code> if it has been overwritten.
+     */
+    private SaleEvent eventAt(long sequence) {
+        SaleEvent event = log.get((int) (sequence % log.length()));
+        return event != null && event.sequence() == sequence ? event : null;
+    }
+
+    /**
+     * The position and demand of one subscriber. Deliveries are made by a drain loop, which at
+     * most one thread runs at a time for each subscription.
+     */
+    private final class Subscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super SaleEvent> subscriber;
+        private final BufferPolicy policy;
+        private final int bufferSize;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pendingSignals = new AtomicInteger();
+        private long nextSequence;
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+
+        private Subscription(Flow.Subscriber<? super SaleEvent> subscriber, BufferPolicy policy,
+                int bufferSize, long nextSequence) {
+            this.subscriber = subscriber;
+            this.policy = policy;
+            this.bufferSize = bufferSize;
+            this.nextSequence = nextSequence;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested " + n + " events.");
+            } else {
+                demand.getAndAccumulate(n, (current, added) -> {
+                    long sum = current + added;
+                    return sum < 0 ? Long.MAX_VALUE : sum;
+                });
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        private void signal() {
+            if (!cancelled && pendingSignals.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int signals = pendingSignals.get();
+            do {
+                deliver();
+                signals = pendingSignals.addAndGet(-signals);
+            } while (signals != 0);
+        }
+
+        private void deliver() {
+            if (cancelled) {
+                return;
+            }
+            if (invalidRequest != null) {
+                cancel();
+                subscriber.onError(invalidRequest);
+                return;
+            }
+            long delivered = 0;
+            long requested = demand.get();
+            while (delivered < requested && !cancelled) {
+                long latest = lastSequence;
+                if (nextSequence > latest) {
+                    break;
+                }
+                if (latest - nextSequence >= bufferSize) {
+                    if (policy == BufferPolicy.FAIL) {
+                        cancel();
+                        subscriber.onError(new IllegalStateException("Subscriber fell behind at "
+                                + "event " + nextSequence + " of " + latest + "."));
+                        return;
+                    }
+                    nextSequence = latest - bufferSize + 1;
+                    continue;
+                }
+                SaleEvent event = eventAt(nextSequence);
+                if (event == null) {
+                    continue;
+                }
+                nextSequence++;
+                delivered++;
+                subscriber.onNext(event);
+            }
+            if (requested != Long.MAX_VALUE) {
+                demand.addAndGet(-delivered);
+            }
+            if (closed && !cancelled && nextSequence > lastSequence) {
+                cancel();
+                subscriber.onComplete();
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package se.kth.iv1350.pos.model;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Creates unique, time-ordered 64-bit sale IDs for one register, without locks and without asking
+ * any other register or node. An ID is made up of, from the most significant bit:
+ * <ul>
+ * <li>41 bits with the milliseconds since 2024-01-01 UTC, which lasts for 69 years,</li>
+ * <li>8 bits with the node ID, the store server or till computer running the register,</li>
+ * <li>8 bits with the register ID, unique within the node,</li>
+ * <li>6 bits with a sequence number within the millisecond.</li>
+ * </ul>
+ * The sign bit is always zero. As long as no two registers share both node ID and register ID,
+ * all IDs are unique. IDs from one generator always increase: if more than 64 IDs are asked for
+ * in one millisecond, or the clock is turned back, the generator continues from its last
+ * timestamp instead of waiting for the clock.
+ */
+public class SaleIdGenerator {
+    private static final long EPOCH = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int SEQUENCE_BITS = 6;
+    private static final int REGISTER_BITS = 8;
+    private static final int NODE_BITS = 8;
+    private static final int TIMESTAMP_BITS = 41;
+    private static final int REGISTER_SHIFT = SEQUENCE_BITS;
+    private static final int NODE_SHIFT = REGISTER_SHIFT + REGISTER_BITS;
+    private static final int TIMESTAMP_SHIFT = NODE_SHIFT + NODE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    /** The largest node ID. */
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    /** The largest register ID. */
+    public static final int MAX_REGISTER_ID = (1 << REGISTER_BITS) - 1;
+    private static final AtomicInteger nextRegisterId = new AtomicInteger();
+
+    private final long nodeAndRegister;
+    private final LongSupplier clock;
+    private final AtomicLong lastTimeAndSequence = new AtomicLong();
+
+    /**
+     * Creates a generator for the next register of this process. Registers are numbered in the
+     * order their generators are created, so at most {@link #MAX_REGISTER_ID} + 1 registers can
+     * be created per process.
+     *
+     * @param nodeId The ID of this node, between 0 and {@link #MAX_NODE_ID}.
+     * @return A generator with a register ID not used by earlier calls.
+     * @throws IllegalStateException if all register IDs have been used.
+     */
+    public static SaleIdGenerator forNextRegister(int nodeId) {
+        return forNextRegister(nodeId, nextRegisterId);
+    }
+
+    /**
+     * Creates a generator for the next register ID from the specified counter.
+     *
+     * @param nodeId The ID of this node.
+     * @param registerIds The next register ID to use. Never increased past
+     *        {@link #MAX_REGISTER_ID} + 1.
+     * @return A generator with the next register ID.
+     * @throws IllegalStateException if all register IDs have been used.
+     */
+    static SaleIdGenerator forNextRegister(int nodeId, AtomicInteger registerIds) {
+        int registerId = registerIds.getAndUpdate(id -> Math.min(id + 1, MAX_REGISTER_ID + 1));
+        if (registerId > MAX_REGISTER_ID) {
+            throw new IllegalStateException("All " + (MAX_REGISTER_ID + 1)
+                    + " register IDs of this node are in use, sale IDs would not be unique.");
+        }
+        return new SaleIdGenerator(nodeId, registerId);
+    }
+
+    /**
+     * Creates a new generator that uses the system clock.
+     *
+     * @param nodeId The ID of the node, between 0 and {@link #MAX_NODE_ID}.
+     * @param registerId The ID of the register on the node, between 0 and
+     *        {@link #MAX_REGISTER_ID}.
+     * @throws IllegalArgumentException if an ID is out of range.
+     */
+    public SaleIdGenerator(int nodeId, int registerId) {
+        this(nodeId, registerId, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a new generator.
+     *
+     * @param nodeId The ID of the node.
+     * @param registerId The ID of the register on the node.
+     * @param clock Gives the current time in milliseconds since the Unix epoch.
+     */
+    SaleIdGenerator(int nodeId, int registerId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID);
+        }
+        if (registerId < 0 || registerId > MAX_REGISTER_ID) {
+            throw new IllegalArgumentException(
+                    "Register ID must be between 0 and " + MAX_REGISTER_ID);
+        }
+        this.nodeAndRegister = ((long) nodeId << NODE_SHIFT) | ((long) registerId << REGISTER_SHIFT);
+        this.clock = clock;
+    }
+
+    /**
+     * Creates the next sale ID. Safe to call from any number of threads.
+     *
+     * @return A positive ID, larger than all IDs created before by this generator.
+     * @throws IllegalStateException if the clock is before 2024 or the timestamp bits are used up.
+     */
+    public long nextId() {
+        long now = clock.getAsLong() - EPOCH;
+        if (now < 0 || now >= 1L << TIMESTAMP_BITS) {
+            throw new IllegalStateException("The clock is outside the range of sale IDs.");
+        }
+        long first = now << SEQUENCE_BITS;
+        long timeAndSequence = lastTimeAndSequence.updateAndGet(
+                last -> first > last ? first : last + 1);
+        return ((timeAndSequence >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT) | nodeAndRegister
+                | (timeAndSequence & SEQUENCE_MASK);
+    }
+
+    /**
+     * Gets the time a sale ID was created.
+     *
+     * @param saleId The sale ID.
+     * @return The time, to the millisecond.
+     */
+    public static Instant timestampOf(long saleId) {
+        return Instant.ofEpochMilli((saleId >>> TIMESTAMP_SHIFT) + EPOCH);
+    }
+
+    /**
+     * Gets the ID of the node that created a sale ID.
+     *
+     * @param saleId The sale ID.
+     * @return The node ID.
+     */
+    public static int nodeOf(long saleId) {
+        return (int) (saleId >>> NODE_SHIFT) & MAX_NODE_ID;
+    }
+
+    /**
+     * Gets the ID of the register that created a sale ID.
+     *
+     * @param saleId The sale ID.
+     * @return The register ID.
+     */
+    public static int registerOf(long saleId) {
+        return (int) (saleId >>> REGISTER_SHIFT) & MAX_REGISTER_ID;
+    }
+
+    /**
+     * Formats a sale ID as the receipt number printed on the receipt, a short base 36 string.
+     *
+     * @param saleId The sale ID.
+     * @return The receipt number.
+     */
+    public static String receiptNumber(long saleId) {
+        return Long.toString(saleId, Character.MAX_RADIX).toUpperCase();
+    }
+}
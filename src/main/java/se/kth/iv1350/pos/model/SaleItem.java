@@ -5,6 +5,7 @@ import se.kth.iv1350.pos.integration.ItemDTO;
 /**
  * Represents an item in a <code>Sale</code>, including its quantity and price calculations. Used
  * internally by {@link Sale} and converted to {@link SaleItemDTO} for transfer between layers.
+ * Prices are calculated in öre the same way as in {@link SaleLines}.
  */
 class SaleItem {
     private final ItemDTO item;
@@ -39,10 +40,10 @@ class SaleItem {
      * @return The total amount for this item line.
      */
     Amount getLineTotal() {
-        double itemPrice = item.price();
-        double vatRate = item.vatRate();
+        long net = getLineNet();
         // Add VAT to price
-        return Amount.of(itemPrice * (1 + vatRate) * quantity);
+        long vat = SaleLines.vatOf(net, SaleLines.toBasisPoints(item.vatRate()));
+        return Amount.ofMinorUnits(net + vat);
     }
 
     /**
@@ -51,9 +52,12 @@ class SaleItem {
      * @return The VAT amount for this item line.
      */
     Amount getLineTotalVat() {
-        double itemPrice = item.price();
-        double vatRate = item.vatRate();
-        return Amount.of(itemPrice * vatRate * quantity);
+        return Amount.ofMinorUnits(
+                SaleLines.vatOf(getLineNet(), SaleLines.toBasisPoints(item.vatRate())));
+    }
+
+    private long getLineNet() {
+        return SaleLines.toMinorUnits(item.price()) * quantity;
     }
 
     /**
@@ -0,0 +1,51 @@
+package se.kth.iv1350.pos.model;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import se.kth.iv1350.pos.integration.ItemDTO;
+
+/**
+ * An immutable list of the lines of a sale, taken from {@link SaleLines} at one point in time. The
+ * raw line data is copied when the list is created, but each {@link SaleItemDTO}, including its
+ * line total and VAT, is only created the first time it is read and then reused.
+ * <p>
+ * The list can be shared between threads. Two threads reading the same line for the first time at
+ * once may both create its DTO, but they create equal DTOs and either one is kept.
+ */
+final class SaleItemList extends AbstractList<SaleItemDTO> implements RandomAccess {
+    private final ItemDTO[] items;
+    private final int[] quantities;
+    private final long[] unitPrices;
+    private final int[] vatRates;
+    private final long[] discounts;
+    private final SaleItemDTO[] materialized;
+
+    SaleItemList(ItemDTO[] items, int[] quantities, long[] unitPrices, int[] vatRates,
+            long[] discounts) {
+        this.items = items;
+        this.quantities = quantities;
+        this.unitPrices = unitPrices;
+        this.vatRates = vatRates;
+        this.discounts = discounts;
+        this.materialized = new SaleItemDTO[items.length];
+    }
+
+    @Override
+    public SaleItemDTO get(int index) {
+        SaleItemDTO line = materialized[index];
+        if (line == null) {
+            long net = SaleLines.netOf(unitPrices[index], quantities[index], discounts[index]);
+            long vat = SaleLines.vatOf(net, vatRates[index]);
+            line = new SaleItemDTO(items[index], quantities[index],
+                    Amount.ofMinorUnits(net + vat), Amount.ofMinorUnits(vat));
+            materialized[index] = line;
+        }
+        return line;
+    }
+
+    @Override
+    public int size() {
+        return items.length;
+    }
+}
@@ -0,0 +1,342 @@
+package se.kth.iv1350.pos.model;
+
+import java.util.Arrays;
+
+import se.kth.iv1350.pos.integration.ItemDTO;
+
+/**
+ * Compact line storage for a {@link Sale}. Lines are kept in insertion order in parallel arrays
+ * holding the item, quantity, unit price in öre (excluding VAT), VAT rate in basis points and
+ * the discount of the line in öre (excluding VAT), given by a {@link PromotionEngine}. Every
+ * line has a key, which is the item ID, or the barcode of a package of a variable-measure item so
+ * that packages of one item get lines of their own. A small open-addressing index maps keys to
+ * lines, so a repeated scan of the same item finds its line without a map entry per line.
+ * <p>
+ * All money is handled in minor units (öre). The VAT of a line is calculated on the line price
+ * after the discount and rounded to whole öre, and the line total is the discounted line price
+ * plus the line VAT.
+ */
+final class SaleLines {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int BASIS_POINTS = 10_000;
+
+    private ItemDTO[] items = new ItemDTO[INITIAL_CAPACITY];
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private long[] unitPrices = new long[INITIAL_CAPACITY];
+    private int[] vatRates = new int[INITIAL_CAPACITY];
+    private long[] discounts = new long[INITIAL_CAPACITY];
+    private int size;
+    /** Line number plus one for every used slot, zero for free slots. */
+    private int[] index = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Converts a price to öre, rounded to the nearest öre.
+     *
+     * @param price The price in SEK.
+     * @return The price in öre.
+     */
+    static long toMinorUnits(double price) {
+        return Math.round(price * 100);
+    }
+
+    /**
+     * Converts a VAT rate to basis points, for example <code>0.25</code> to <code>2500</code>.
+     *
+     * @param vatRate The VAT rate as a fraction.
+     * @return The VAT rate in basis points.
+     */
+    static int toBasisPoints(double vatRate) {
+        return (int) Math.round(vatRate * BASIS_POINTS);
+    }
+
+    /**
+     * Calculates the VAT for a price, rounded half up to whole öre.
+     *
+     * @param net The price excluding VAT in öre. Must not be negative.
+     * @param vatRate The VAT rate in basis points.
+     * @return The VAT in öre.
+     */
+    static long vatOf(long net, int vatRate) {
+        return (net * vatRate + BASIS_POINTS / 2) / BASIS_POINTS;
+    }
+
+    /**
+     * Calculates the price of a weighed package, rounded half up to whole öre.
+     *
+     * @param pricePerKilogram The price per kilogram excluding VAT in öre.
+     * @param grams The weight in grams.
+     * @return The price excluding VAT in öre.
+     */
+    static long netOfWeight(long pricePerKilogram, int grams) {
+        return (pricePerKilogram * grams + 500) / 1000;
+    }
+
+    /**
+     * Calculates the price excluding VAT of a price including VAT, rounded half up to whole öre.
+     * Since the VAT is rounded too, the price plus its VAT can differ from the price including
+     * VAT by an öre.
+     *
+     * @param gross The price including VAT in öre. Must not be negative.
+     * @param vatRate The VAT rate in basis points.
+     * @return The price excluding VAT in öre.
+     */
+    static long netOfGross(long gross, int vatRate) {
+        long divisor = BASIS_POINTS + vatRate;
+        return (gross * BASIS_POINTS + divisor / 2) / divisor;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    ItemDTO item(int line) {
+        return items[line];
+    }
+
+    int quantity(int line) {
+        return quantities[line];
+    }
+
+    int vatRate(int line) {
+        return vatRates[line];
+    }
+
+    /**
+     * Gets the unit price of a line excluding VAT.
+     *
+     * @param line The line number.
+     * @return The unit price in öre.
+     */
+    long unitPrice(int line) {
+        return unitPrices[line];
+    }
+
+    /**
+     * Gets the price of a line excluding VAT, before the discount.
+     *
+     * @param line The line number.
+     * @return Unit price times quantity, in öre.
+     */
+    long grossNet(int line) {
+        return unitPrices[line] * quantities[line];
+    }
+
+    /**
+     * Gets the discount of a line.
+     *
+     * @param line The line number.
+     * @return The discount excluding VAT, in öre.
+     */
+    long discount(int line) {
+        return discounts[line];
+    }
+
+    /**
+     * Sets the discount of a line. A discount larger than the line price makes the line free.
+     *
+     * @param line The line number.
+     * @param discount The discount excluding VAT, in öre.
+     */
+    void setDiscount(int line, long discount) {
+        discounts[line] = discount;
+    }
+
+    /**
+     * Gets the price of a line excluding VAT, after the discount.
+     *
+     * @param line The line number.
+     * @return Unit price times quantity minus the discount, in öre, never negative.
+     */
+    long lineNet(int line) {
+        return netOf(unitPrices[line], quantities[line], discounts[line]);
+    }
+
+    /**
+     * Calculates the price of a line excluding VAT, after the discount.
+     *
+     * @param unitPrice The unit price in öre.
+     * @param quantity The quantity.
+     * @param discount The discount in öre.
+     * @return The discounted line price, never negative.
+     */
+    static long netOf(long unitPrice, int quantity, long discount) {
+        return Math.max(0, unitPrice * quantity - discount);
+    }
+
+    /**
+     * Gets the VAT of a line.
+     *
+     * @param line The line number.
+     * @return The line VAT in öre.
+     */
+    long lineVat(int line) {
+        return vatOf(lineNet(line), vatRates[line]);
+    }
+
+    /**
+     * Gets the total of a line including VAT.
+     *
+     * @param line The line number.
+     * @return The line total in öre.
+     */
+    long lineTotal(int line) {
+        long net = lineNet(line);
+        return net + vatOf(net, vatRates[line]);
+    }
+
+    /**
+     * Finds the line with the specified key.
+     *
+     * @param key The key of the line, the item ID unless the line was added with another key.
+     * @return The line number, or <code>-1</code> if no line has the key.
+     */
+    int find(String key) {
+        int mask = index.length - 1;
+        for (int slot = slotOf(key, mask);; slot = (slot + 1) & mask) {
+            int entry = index[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (keys[entry - 1].equals(key)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Adds one of the specified item, on the line keyed by its item ID.
+     *
+     * @param item The item to add.
+     * @return The line number of the item.
+     */
+    int add(ItemDTO item) {
+        return add(item, item.id());
+    }
+
+    /**
+     * Adds one of the specified item. If a line has the key, its quantity is increased, otherwise
+     * a new last line with quantity one is appended.
+     *
+     * @param item The item to add.
+     * @param key The key of the line.
+     * @return The line number of the item.
+     */
+    int add(ItemDTO item, String key) {
+        int line = find(key);
+        if (line >= 0) {
+            quantities[line]++;
+            return line;
+        }
+        if (size == items.length) {
+            grow();
+        }
+        line = size++;
+        items[line] = item;
+        keys[line] = key;
+        quantities[line] = 1;
+        unitPrices[line] = toMinorUnits(item.price());
+        vatRates[line] = toBasisPoints(item.vatRate());
+        discounts[line] = 0;
+        insertIntoIndex(line);
+        return line;
+    }
+
+    /**
+     * Sets the quantity of a line.
+     *
+     * @param line The line number.
+     * @param quantity The new quantity. Must not be negative.
+     */
+    void setQuantity(int line, int quantity) {
+        quantities[line] = quantity;
+    }
+
+    /**
+     * Removes the last line.
+     */
+    void removeLast() {
+        int line = size - 1;
+        removeFromIndex(line);
+        items[line] = null;
+        keys[line] = null;
+        size--;
+    }
+
+    /**
+     * Takes an immutable snapshot of the current lines. Later changes to these lines are not
+     * visible in the snapshot.
+     *
+     * @return The lines as a lazily materialized list of {@link SaleItemDTO}.
+     */
+    SaleItemList snapshot() {
+        return new SaleItemList(Arrays.copyOf(items, size), Arrays.copyOf(quantities, size),
+                Arrays.copyOf(unitPrices, size), Arrays.copyOf(vatRates, size),
+                Arrays.copyOf(discounts, size));
+    }
+
+    /**
+     * Removes all lines but keeps the allocated storage for reuse.
+     */
+    void clear() {
+        if (size == 0) {
+            return;
+        }
+        Arrays.fill(items, 0, size, null);
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(index, 0);
+        size = 0;
+    }
+
+    private void grow() {
+        int capacity = items.length * 2;
+        items = Arrays.copyOf(items, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        unitPrices = Arrays.copyOf(unitPrices, capacity);
+        vatRates = Arrays.copyOf(vatRates, capacity);
+        discounts = Arrays.copyOf(discounts, capacity);
+        index = new int[capacity * 2];
+        for (int line = 0; line < size; line++) {
+            insertIntoIndex(line);
+        }
+    }
+
+    private void insertIntoIndex(int line) {
+        int mask = index.length - 1;
+        int slot = slotOf(keys[line], mask);
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = line + 1;
+    }
+
+    /**
+     * Removes a line from the index by shifting later entries of the same probe sequence back,
+     * so no tombstones are needed.
+     */
+    private void removeFromIndex(int line) {
+        int mask = index.length - 1;
+        int free = slotOf(keys[line], mask);
+        while (index[free] != line + 1) {
+            free = (free + 1) & mask;
+        }
+        for (int slot = (free + 1) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+            int home = slotOf(keys[index[slot] - 1], mask);
+            if (((slot - home) & mask) >= ((slot - free) & mask)) {
+                index[free] = index[slot];
+                free = slot;
+            }
+        }
+        index[free] = 0;
+    }
+
+    private static int slotOf(String key, int mask) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,105 @@
+package se.kth.iv1350.pos.model;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Keeps finished {@link Sale} instances of one {@link CashRegister} for reuse, so that starting a
+ * new sale does not allocate a new <code>Sale</code> and new line storage for every customer.
+ * <p>
+ * A pool belongs to a single register and is not thread-safe.
+ */
+public class SalePool {
+    private static final int DEFAULT_CAPACITY = 4;
+    private final CashRegister cashRegister;
+    private final SaleIdGenerator idGenerator;
+    private final List<RevenueObserver> revenueObservers;
+    private final ArrayDeque<Sale> idleSales;
+    private final int capacity;
+    private PromotionEngine promotions = PromotionEngine.NONE;
+
+    /**
+     * Creates a new, empty pool with the default capacity.
+     *
+     * @param cashRegister The register all sales from this pool are paid at.
+     * @param idGenerator Creates the ID of every sale handed out by this pool.
+     * @param revenueObservers The observers to attach to every sale handed out by this pool. The
+     *        list is read on every {@link #acquire()}, so observers added later apply to all
+     *        sales acquired after that.
+     */
+    public SalePool(CashRegister cashRegister, SaleIdGenerator idGenerator,
+            List<RevenueObserver> revenueObservers) {
+        this(cashRegister, idGenerator, revenueObservers, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new, empty pool.
+     *
+     * @param cashRegister The register all sales from this pool are paid at.
+     * @param idGenerator Creates the ID of every sale handed out by this pool.
+     * @param revenueObservers The observers to attach to every sale handed out by this pool.
+     * @param capacity The maximum number of idle sales kept for reuse.
+     */
+    public SalePool(CashRegister cashRegister, SaleIdGenerator idGenerator,
+            List<RevenueObserver> revenueObservers, int capacity) {
+        this.cashRegister = cashRegister;
+        this.idGenerator = idGenerator;
+        this.revenueObservers = revenueObservers;
+        this.capacity = capacity;
+        this.idleSales = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Sets the promotions given in all sales acquired after this call. Sales already in progress
+     * keep the promotions they were started with.
+     *
+     * @param promotions The active promotions.
+     */
+    public void setPromotions(PromotionEngine promotions) {
+        this.promotions = promotions;
+    }
+
+    /**
+     * Gets an empty sale in progress, reusing an idle sale if there is one.
+     *
+     * @return A sale with a new ID, no items, the current promotions and all revenue observers
+     *         attached.
+     */
+    public Sale acquire() {
+        Sale sale = idleSales.pollFirst();
+        if (sale == null) {
+            sale = new Sale(cashRegister);
+        }
+        sale.assignId(idGenerator.nextId());
+        sale.usePromotions(promotions);
+        for (RevenueObserver observer : revenueObservers) {
+            sale.addRevenueObserver(observer);
+        }
+        return sale;
+    }
+
+    /**
+     * Returns a sale to the pool. The sale is reset immediately, so neither the sale nor its
+     * receipt may be used by the caller after this call. Sales are dropped if the pool is full.
+     *
+     * @param sale The sale to return. <code>null</code> is ignored.
+     */
+    public void release(Sale sale) {
+        if (sale == null) {
+            return;
+        }
+        sale.reset();
+        if (idleSales.size() < capacity && !idleSales.contains(sale)) {
+            idleSales.addFirst(sale);
+        }
+    }
+
+    /**
+     * Gets the number of idle sales currently kept for reuse.
+     *
+     * @return The number of idle sales.
+     */
+    int idleCount() {
+        return idleSales.size();
+    }
+}
@@ -0,0 +1,34 @@
+package se.kth.iv1350.pos.model;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A way of paying part of a sale other than cash, for example a card or a gift voucher. A tender
+ * must be authorized before the sale is paid. Authorization may take a while, so it is started as
+ * early as possible and runs while the cashier does other things.
+ */
+public interface Tender {
+    /**
+     * Gets the amount of the sale to pay with this tender.
+     *
+     * @return The amount.
+     */
+    Amount amount();
+
+    /**
+     * Starts authorizing this tender. Must not block.
+     *
+     * @param saleId The ID of the sale paid, see {@link SaleIdGenerator}.
+     * @return A future completed with the authorized payment, or completed exceptionally if the
+     *         tender was declined or could not be authorized.
+     */
+    CompletableFuture<PaymentDTO> authorize(long saleId);
+
+    /**
+     * Voids a payment authorized by this tender, so that the amount reserved for it is released.
+     * Must not block.
+     *
+     * @param payment The authorized payment, as completed by {@link #authorize(long)}.
+     */
+    void voidPayment(PaymentDTO payment);
+}
@@ -0,0 +1,148 @@
+package se.kth.iv1350.pos.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Running net and VAT totals per VAT rate, in öre. A sale only has a handful of distinct rates, so
+ * the buckets are kept in small parallel arrays sorted by rate and searched linearly.
+ */
+final class VatBuckets {
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int BASIS_POINTS = 10_000;
+
+    private int[] rates = new int[INITIAL_CAPACITY];
+    private long[] nets = new long[INITIAL_CAPACITY];
+    private long[] vats = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Creates the VAT breakdown of the specified sale lines.
+     *
+     * @param items The sale lines.
+     * @return The totals per rate, ordered by rate.
+     */
+    static List<VatRateTotal> breakdownOf(List<SaleItemDTO> items) {
+        VatBuckets buckets = new VatBuckets();
+        for (SaleItemDTO item : items) {
+            long vat = item.totalVat().toMinorUnits();
+            buckets.add(SaleLines.toBasisPoints(item.item().vatRate()),
+                    item.total().toMinorUnits() - vat, vat);
+        }
+        return buckets.snapshot();
+    }
+
+    /**
+     * Calculates a discount, rounded half up to whole öre.
+     *
+     * @param amount The amount to discount, in öre. Must not be negative.
+     * @param basisPoints The discount in basis points, for example <code>1000</code> for 10%.
+     * @return The discount in öre.
+     */
+    static long discountOf(long amount, int basisPoints) {
+        return (amount * basisPoints + BASIS_POINTS / 2) / BASIS_POINTS;
+    }
+
+    /**
+     * Adds to the totals of a rate. The amounts may be negative, to remove an earlier addition.
+     *
+     * @param vatRate The VAT rate in basis points.
+     * @param net The change of the net total, in öre.
+     * @param vat The change of the VAT total, in öre.
+     */
+    void add(int vatRate, long net, long vat) {
+        int bucket = 0;
+        while (bucket < size && rates[bucket] < vatRate) {
+            bucket++;
+        }
+        if (bucket == size || rates[bucket] != vatRate) {
+            insert(bucket, vatRate);
+        }
+        nets[bucket] += net;
+        vats[bucket] += vat;
+    }
+
+    /**
+     * Removes all buckets but keeps the allocated storage for reuse.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Gets the total including VAT of all rates, after a discount of the whole sale. The net and
+     * VAT of every rate are discounted separately, the same way as in {@link #snapshot(int)}.
+     *
+     * @param discount The discount in basis points.
+     * @return The discounted total in öre.
+     */
+    long discountedTotal(int discount) {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += nets[i] - discountOf(nets[i], discount) + vats[i]
+                    - discountOf(vats[i], discount);
+        }
+        return total;
+    }
+
+    /**
+     * Gets the VAT of all rates, after a discount of the whole sale.
+     *
+     * @param discount The discount in basis points.
+     * @return The discounted VAT in öre.
+     */
+    long discountedVat(int discount) {
+        long vat = 0;
+        for (int i = 0; i < size; i++) {
+            vat += vats[i] - discountOf(vats[i], discount);
+        }
+        return vat;
+    }
+
+    /**
+     * Takes an immutable snapshot of the current totals. Rates whose totals have returned to zero
+     * are left out.
+     *
+     * @return The totals per rate, ordered by rate.
+     */
+    List<VatRateTotal> snapshot() {
+        return snapshot(0);
+    }
+
+    /**
+     * Takes an immutable snapshot of the current totals, after a discount of the whole sale.
+     * Rates whose totals have returned to zero are left out.
+     *
+     * @param discount The discount in basis points.
+     * @return The discounted totals per rate, ordered by rate.
+     */
+    List<VatRateTotal> snapshot(int discount) {
+        List<VatRateTotal> totals = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (nets[i] != 0 || vats[i] != 0) {
+                totals.add(new VatRateTotal(rates[i],
+                        Amount.ofMinorUnits(nets[i] - discountOf(nets[i], discount)),
+                        Amount.ofMinorUnits(vats[i] - discountOf(vats[i], discount))));
+            }
+        }
+        return Collections.unmodifiableList(totals);
+    }
+
+    private void insert(int bucket, int vatRate) {
+        if (size == rates.length) {
+            rates = Arrays.copyOf(rates, size * 2);
+            nets = Arrays.copyOf(nets, size * 2);
+            vats = Arrays.copyOf(vats, size * 2);
+        }
+        int moved = size - bucket;
+        System.arraycopy(rates, bucket, rates, bucket + 1, moved);
+        System.arraycopy(nets, bucket, nets, bucket + 1, moved);
+        System.arraycopy(vats, bucket, vats, bucket + 1, moved);
+        rates[bucket] = vatRate;
+        nets[bucket] = 0;
+        vats[bucket] = 0;
+        size++;
+    }
+}
@@ -0,0 +1,11 @@
+package se.kth.iv1350.pos.model;
+
+/**
+ * Data Transfer Object for the totals of one VAT rate in a sale or a report.
+ *
+ * @param vatRate The VAT rate in basis points, for example <code>2500</code> for 25 percent.
+ * @param net The total price excluding VAT of everything sold at this rate.
+ * @param vat The total VAT at this rate.
+ */
+public record VatRateTotal(int vatRate, Amount net, Amount vat) {
+}
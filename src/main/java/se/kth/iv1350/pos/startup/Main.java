@@ -1,10 +1,21 @@
 package se.kth.iv1350.pos.startup;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
 import se.kth.iv1350.pos.controller.Controller;
 import se.kth.iv1350.pos.integration.ConsolePrinter;
 import se.kth.iv1350.pos.integration.Printer;
 import se.kth.iv1350.pos.integration.RegistryCreator;
+import se.kth.iv1350.pos.model.Amount;
+import se.kth.iv1350.pos.model.Promotion;
+import se.kth.iv1350.pos.model.SaleIdGenerator;
 import se.kth.iv1350.pos.util.TotalRevenueFileOutput;
+import se.kth.iv1350.pos.view.LiveRevenueFeed;
+import se.kth.iv1350.pos.view.LowFloatView;
 import se.kth.iv1350.pos.view.TotalRevenueView;
 import se.kth.iv1350.pos.view.View;
 
@@ -13,19 +24,45 @@ import se.kth.iv1350.pos.view.View;
  * interface.
  */
 public class Main {
+    private static final String NODE_ID_PROPERTY = "pos.nodeId";
+    private static final String LIVE_FEED_PORT_PROPERTY = "pos.liveFeedPort";
+    private static final String LEDGER_DIRECTORY_PROPERTY = "pos.ledgerDirectory";
+    private static final Duration LIVE_FEED_TICK = Duration.ofMillis(250);
 
     /**
-     * Starts the application.
+     * Starts the application. The system property <code>pos.nodeId</code> sets the node ID used in
+     * sale IDs, zero by default, see {@link SaleIdGenerator}. If the system property
+     * <code>pos.liveFeedPort</code> is set, a live revenue feed is also served on that port, see
+     * {@link LiveRevenueFeed}. The system property <code>pos.ledgerDirectory</code> sets where
+     * sales are booked, <code>./ledger</code> by default.
      *
      * @param args Command line arguments, not used in this application.
+     * @throws IOException if the live revenue feed could not be started.
      */
-    public static void main(String[] args) {
-        RegistryCreator registryCreator = RegistryCreator.getInstance();
+    public static void main(String[] args) throws IOException {
+        String ledgerDirectory = System.getProperty(LEDGER_DIRECTORY_PROPERTY);
+        RegistryCreator registryCreator = ledgerDirectory == null ? RegistryCreator.getInstance()
+                : RegistryCreator.withLedgerDirectory(Path.of(ledgerDirectory));
         Printer printer = new ConsolePrinter();
-        Controller controller = new Controller(registryCreator, printer);
+        SaleIdGenerator saleIds =
+                SaleIdGenerator.forNextRegister(Integer.getInteger(NODE_ID_PROPERTY, 0));
+        Controller controller = new Controller(registryCreator, printer, saleIds);
+        controller.setPromotions(List.of(
+                new Promotion.MultiBuy("eggs-3-for-2", "3 for 2 on eggs", Set.of("3"), 3, 2),
+                new Promotion.BasketThreshold("basket-1000", "5% off from 1000 SEK",
+                        Amount.of(1000), 5)));
 
         controller.addRevenueObserver(new TotalRevenueView());
         controller.addRevenueObserver(new TotalRevenueFileOutput());
+        controller.addLowFloatObserver(new LowFloatView());
+        String liveFeedPort = System.getProperty(LIVE_FEED_PORT_PROPERTY);
+        if (liveFeedPort != null) {
+            LiveRevenueFeed feed =
+                    LiveRevenueFeed.start(Integer.parseInt(liveFeedPort), LIVE_FEED_TICK);
+            controller.addRevenueObserver(feed);
+            System.out.println("Live revenue feed at http://localhost:" + feed.getPort()
+                    + "/revenue");
+        }
 
         new View(controller).sampleExecution();
 
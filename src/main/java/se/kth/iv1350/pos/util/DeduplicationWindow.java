@@ -0,0 +1,223 @@
+package se.kth.iv1350.pos.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers recently seen idempotency keys, such as sale IDs, so that a retried operation can be
+ * recognized and skipped. Keys are remembered for at least the window and at most twice the
+ * window. If more than the capacity of keys are seen within one window, the oldest keys are
+ * forgotten earlier, so memory use never grows beyond the capacity.
+ * <p>
+ * Keys are kept in two generations, each an open addressing table of primitive longs. New keys
+ * are added to the current generation. When it is older than the window or full, the previous
+ * generation is cleared and becomes the current one. Adding and checking keys never block each
+ * other, only the rare change of generations waits for calls in progress.
+ */
+public final class DeduplicationWindow {
+    private static final long EMPTY = 0;
+    private static final long REMOVED = -1;
+
+    private final long windowNanos;
+    private final int capacity;
+    private final LongSupplier clock;
+    private final StampedLock generationLock = new StampedLock();
+    private Generation current;
+    private Generation previous;
+
+    /**
+     * Creates an empty window that uses the system clock.
+     *
+     * @param window The shortest time a key is remembered, unless the capacity is exceeded.
+     * @param capacity The number of keys remembered per window.
+     */
+    public DeduplicationWindow(Duration window, int capacity) {
+        this(window, capacity, System::nanoTime);
+    }
+
+    /**
+     * Creates an empty window.
+     *
+     * @param window The shortest time a key is remembered, unless the capacity is exceeded.
+     * @param capacity The number of keys remembered per window.
+     * @param clock Returns the current time in nanoseconds.
+     */
+    DeduplicationWindow(Duration window, int capacity, LongSupplier clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        this.windowNanos = window.toNanos();
+        this.capacity = capacity;
+        this.clock = clock;
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        long now = clock.getAsLong();
+        this.current = new Generation(tableSize, now);
+        this.previous = new Generation(tableSize, now);
+    }
+
+    /**
+     * Remembers a key, unless it is already remembered.
+     *
+     * @param key The key. Must be positive.
+     * @return <code>true</code> if the key was not seen within the window, so the operation it
+     *         identifies should be performed. <code>false</code> if it is a duplicate.
+     */
+    public boolean markIfAbsent(long key) {
+        requirePositive(key);
+        while (true) {
+            long now = clock.getAsLong();
+            long stamp = generationLock.readLock();
+            try {
+                if (!needsRotation(now)) {
+                    return !previous.contains(key) && current.add(key);
+                }
+            } finally {
+                generationLock.unlockRead(stamp);
+            }
+            rotate(now);
+        }
+    }
+
+    /**
+     * Checks if a key is remembered.
+     *
+     * @param key The key. Must be positive.
+     * @return <code>true</code> if the key was marked within the window.
+     */
+    public boolean contains(long key) {
+        requirePositive(key);
+        long stamp = generationLock.readLock();
+        try {
+            return current.contains(key) || previous.contains(key);
+        } finally {
+            generationLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Forgets a key, so that it is no longer a duplicate. Used when the operation it identifies
+     * failed after the key was marked, so that a retry is performed.
+     *
+     * @param key The key. Must be positive.
+     */
+    public void forget(long key) {
+        requirePositive(key);
+        long stamp = generationLock.readLock();
+        try {
+            current.remove(key);
+            previous.remove(key);
+        } finally {
+            generationLock.unlockRead(stamp);
+        }
+    }
+
+    private static void requirePositive(long key) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Keys must be positive.");
+        }
+    }
+
+    private boolean needsRotation(long now) {
+        return now - current.startedAt >= windowNanos || current.size.get() >= capacity;
+    }
+
+    /**
+     * Makes a new, empty generation current, reusing the table of the previous generation. If the
+     * current generation is older than two windows, both are emptied.
+     */
+    private void rotate(long now) {
+        long stamp = generationLock.writeLock();
+        try {
+            if (!needsRotation(now)) {
+                return;
+            }
+            Generation recycled = previous;
+            recycled.clear(now);
+            previous = current;
+            if (now - previous.startedAt >= 2 * windowNanos) {
+                previous.clear(now);
+            }
+            current = recycled;
+        } finally {
+            generationLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * One generation of keys, an open addressing table with linear probing. Slots are claimed with
+     * compare-and-set, so concurrent adds of the same key are resolved to one winner. Removed keys
+     * leave a marker that is skipped but not reused, until the table is cleared.
+     */
+    private static final class Generation {
+        private final AtomicLongArray keys;
+        private final int mask;
+        private final AtomicInteger size = new AtomicInteger();
+        private long startedAt;
+
+        private Generation(int tableSize, long startedAt) {
+            this.keys = new AtomicLongArray(tableSize);
+            this.mask = tableSize - 1;
+            this.startedAt = startedAt;
+        }
+
+        private boolean add(long key) {
+            for (int slot = slotOf(key), probes = 0; probes <= mask; probes++) {
+                long found = keys.get(slot);
+                if (found == key) {
+                    return false;
+                }
+                if (found == EMPTY) {
+                    if (keys.compareAndSet(slot, EMPTY, key)) {
+                        size.incrementAndGet();
+                        return true;
+                    }
+                    probes--;
+                    continue;
+                }
+                slot = (slot + 1) & mask;
+            }
+            throw new IllegalStateException("The deduplication table is full.");
+        }
+
+        private boolean contains(long key) {
+            return indexOf(key) >= 0;
+        }
+
+        private void remove(long key) {
+            int slot = indexOf(key);
+            if (slot >= 0) {
+                keys.compareAndSet(slot, key, REMOVED);
+            }
+        }
+
+        private int indexOf(long key) {
+            for (int slot = slotOf(key), probes = 0; probes <= mask; probes++) {
+                long found = keys.get(slot);
+                if (found == key) {
+                    return slot;
+                }
+                if (found == EMPTY) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void clear(long now) {
+            for (int slot = 0; slot <= mask; slot++) {
+                keys.set(slot, EMPTY);
+            }
+            size.set(0);
+            startedAt = now;
+        }
+
+        private int slotOf(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
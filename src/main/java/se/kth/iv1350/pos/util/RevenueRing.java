@@ -0,0 +1,172 @@
+package se.kth.iv1350.pos.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size ring of revenue buckets of one length of time, such as one minute, stored as
+ * primitive fields in a single {@link AtomicLongArray}. Bucket number <code>b</code> is kept in
+ * slot <code>b % slotCount</code>, so the ring always holds the latest <code>slotCount</code>
+ * buckets. A slot is reused by the first sale in a new bucket that maps to it.
+ * <p>
+ * Writers never lock. Each slot has a count of active writers and a version that is increased
+ * after every write, which lets readers detect a concurrent write and read again, so that the
+ * fields read from one bucket always belong together. So that a steady stream of writes can not
+ * starve a reader, a reader that has failed a number of times raises a gate on the slot. New
+ * writers to the slot wait while the gate is up, which gives the reader a window in which only
+ * writers already inside the slot can interfere. Each write waits for the gate at most once and
+ * for a bounded number of spins, so a reader that is descheduled while holding the gate, or a
+ * stream of readers raising it, can only slow writers down and never stop them.
+ */
+final class RevenueRing {
+    private static final int TAG = 0;
+    private static final int WRITERS = 1;
+    private static final int VERSION = 2;
+    private static final int REVENUE = 3;
+    private static final int SALES = 4;
+    private static final int UNITS = 5;
+    private static final int GATE = 6;
+    private static final int STRIDE = 7;
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final long RESETTING = Long.MIN_VALUE + 1;
+    private static final int OPTIMISTIC_READ_ATTEMPTS = 64;
+    private static final int GATE_WAIT_SPINS = 1024;
+
+    private final long bucketMillis;
+    private final int slotCount;
+    private final AtomicLongArray fields;
+
+    /**
+     * Creates an empty ring.
+     *
+     * @param bucketMillis The length of each bucket in milliseconds.
+     * @param slotCount The number of buckets kept.
+     */
+    RevenueRing(long bucketMillis, int slotCount) {
+        this.bucketMillis = bucketMillis;
+        this.slotCount = slotCount;
+        this.fields = new AtomicLongArray(slotCount * STRIDE);
+        for (int slot = 0; slot < slotCount; slot++) {
+            fields.set(slot * STRIDE + TAG, EMPTY);
+        }
+    }
+
+    long bucketMillis() {
+        return bucketMillis;
+    }
+
+    int slotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Gets the number of the bucket containing a point in time.
+     *
+     * @param millis The time in milliseconds, shifted to local time.
+     * @return The bucket number.
+     */
+    long bucketOf(long millis) {
+        return Math.floorDiv(millis, bucketMillis);
+    }
+
+    /**
+     * Adds a sale to a bucket. If the bucket's slot holds an older bucket, that bucket is
+     * discarded first. Sales for a bucket older than the one in its slot are ignored. If a reader
+     * has raised the gate, waits for it once, and goes ahead after a bounded wait.
+     *
+     * @param bucket The bucket number.
+     * @param revenue The revenue of the sale in öre.
+     * @param units The number of units sold.
+     */
+    void add(long bucket, long revenue, long units) {
+        int base = (int) Math.floorMod(bucket, (long) slotCount) * STRIDE;
+        boolean waitedForGate = false;
+        while (true) {
+            fields.incrementAndGet(base + WRITERS);
+            if (!waitedForGate && fields.get(base + GATE) != 0) {
+                fields.decrementAndGet(base + WRITERS);
+                for (int spin = 0; spin < GATE_WAIT_SPINS && fields.get(base + GATE) != 0;
+                        spin++) {
+                    Thread.onSpinWait();
+                }
+                waitedForGate = true;
+                continue;
+            }
+            long tag = fields.get(base + TAG);
+            if (tag == bucket) {
+                fields.addAndGet(base + REVENUE, revenue);
+                fields.incrementAndGet(base + SALES);
+                fields.addAndGet(base + UNITS, units);
+                fields.incrementAndGet(base + VERSION);
+                fields.decrementAndGet(base + WRITERS);
+                return;
+            }
+            fields.decrementAndGet(base + WRITERS);
+            if (tag != RESETTING && tag > bucket) {
+                return;
+            }
+            if (tag != RESETTING && fields.compareAndSet(base + TAG, tag, RESETTING)) {
+                while (fields.get(base + WRITERS) != 0) {
+                    Thread.onSpinWait();
+                }
+                fields.set(base + REVENUE, 0);
+                fields.set(base + SALES, 0);
+                fields.set(base + UNITS, 0);
+                fields.incrementAndGet(base + VERSION);
+                fields.set(base + TAG, bucket);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Reads a bucket. All values are read from the same state of the bucket.
+     *
+     * @param bucket The bucket number.
+     * @param totals Receives revenue, sale count and unit count, in that order. All are zero if the
+     *        bucket is not in the ring.
+     */
+    void read(long bucket, long[] totals) {
+        int base = (int) Math.floorMod(bucket, (long) slotCount) * STRIDE;
+        for (int attempt = 0; attempt < OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+            if (tryRead(base, bucket, totals)) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+        fields.incrementAndGet(base + GATE);
+        try {
+            while (!tryRead(base, bucket, totals)) {
+                Thread.onSpinWait();
+            }
+        } finally {
+            fields.decrementAndGet(base + GATE);
+        }
+    }
+
+    /**
+     * Reads a bucket if no write is in progress, and checks that no write started meanwhile.
+     *
+     * @return <code>true</code> if the values read belong together.
+     */
+    private boolean tryRead(int base, long bucket, long[] totals) {
+        long version = fields.get(base + VERSION);
+        long tag = fields.get(base + TAG);
+        if (fields.get(base + WRITERS) != 0 || tag == RESETTING) {
+            return false;
+        }
+        totals[0] = fields.get(base + REVENUE);
+        totals[1] = fields.get(base + SALES);
+        totals[2] = fields.get(base + UNITS);
+        if (fields.get(base + WRITERS) != 0 || fields.get(base + VERSION) != version
+                || fields.get(base + TAG) != tag) {
+            return false;
+        }
+        if (tag != bucket) {
+            totals[0] = 0;
+            totals[1] = 0;
+            totals[2] = 0;
+        }
+        return true;
+    }
+}
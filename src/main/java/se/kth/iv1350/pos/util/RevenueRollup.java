@@ -0,0 +1,179 @@
+package se.kth.iv1350.pos.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import se.kth.iv1350.pos.model.Amount;
+import se.kth.iv1350.pos.model.RevenueObserver;
+import se.kth.iv1350.pos.model.SaleDTO;
+import se.kth.iv1350.pos.model.SaleItemDTO;
+
+/**
+ * This class implements the {@link RevenueObserver} interface to roll up revenue, sale count and
+ * units sold per minute, hour and day. Every sale is added to the current bucket of each
+ * resolution, so a dashboard can read any recent period at any moment without scanning history.
+ * <p>
+ * Buckets are kept in fixed-size rings: minutes for the last day, hours for the last week and days
+ * for the last year. Older buckets are overwritten. Sales from many registers can be added at
+ * once without locking, and every bucket read reflects a state with whole sales only.
+ */
+public class RevenueRollup implements RevenueObserver {
+    /**
+     * The bucket lengths kept by the rollup.
+     */
+    public enum Resolution {
+        /** One bucket per minute, kept for a day. */
+        MINUTE(Duration.ofMinutes(1), 24 * 60),
+        /** One bucket per hour, kept for a week. */
+        HOUR(Duration.ofHours(1), 7 * 24),
+        /** One bucket per day, kept for a year. */
+        DAY(Duration.ofDays(1), 366);
+
+        private final Duration length;
+        private final int retained;
+
+        Resolution(Duration length, int retained) {
+            this.length = length;
+            this.retained = retained;
+        }
+    }
+
+    /**
+     * The totals of one bucket, or of several buckets added together.
+     *
+     * @param start The start of the bucket or period.
+     * @param revenue The total revenue, including VAT.
+     * @param saleCount The number of sales.
+     * @param unitCount The number of units sold.
+     */
+    public record RevenueBucket(Instant start, Amount revenue, long saleCount, long unitCount) {
+        /**
+         * Gets the average number of units per sale.
+         *
+         * @return The average basket size, or zero if there were no sales.
+         */
+        public double averageBasketSize() {
+            return saleCount == 0 ? 0 : (double) unitCount / saleCount;
+        }
+
+        /**
+         * Gets the average revenue per sale.
+         *
+         * @return The average sale value, or zero if there were no sales.
+         */
+        public Amount averageSaleValue() {
+            return saleCount == 0 ? Amount.zero()
+                    : Amount.ofMinorUnits(Math.round((double) revenue.toMinorUnits() / saleCount));
+        }
+    }
+
+    private final Clock clock;
+    private final long offsetMillis;
+    private final RevenueRing[] rings = new RevenueRing[Resolution.values().length];
+
+    /**
+     * Creates a new instance using the system clock, with days starting at midnight in the
+     * current offset of the system time zone.
+     */
+    public RevenueRollup() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Creates a new instance using the specified clock. Days start at midnight in the offset of
+     * the clock's time zone when the rollup is created.
+     *
+     * @param clock Tells when sales are completed.
+     */
+    public RevenueRollup(Clock clock) {
+        this.clock = clock;
+        ZoneOffset offset = clock.getZone().getRules().getOffset(clock.instant());
+        this.offsetMillis = offset.getTotalSeconds() * 1000L;
+        for (Resolution resolution : Resolution.values()) {
+            rings[resolution.ordinal()] =
+                    new RevenueRing(resolution.length.toMillis(), resolution.retained);
+        }
+    }
+
+    @Override
+    public void saleCompleted(SaleDTO sale) {
+        long localMillis = clock.millis() + offsetMillis;
+        long revenue = sale.total().toMinorUnits();
+        long units = 0;
+        for (SaleItemDTO line : sale.items()) {
+            units += line.quantity();
+        }
+        for (RevenueRing ring : rings) {
+            ring.add(ring.bucketOf(localMillis), revenue, units);
+        }
+    }
+
+    /**
+     * Gets the buckets of a period, one per bucket length, oldest first. Buckets no longer kept
+     * are returned empty.
+     *
+     * @param resolution The bucket length.
+     * @param from The start of the period, inclusive. Rounded down to a bucket start.
+     * @param to The end of the period, exclusive. Rounded up to a bucket end.
+     * @return The buckets in the period.
+     */
+    public List<RevenueBucket> buckets(Resolution resolution, Instant from, Instant to) {
+        RevenueRing ring = rings[resolution.ordinal()];
+        long first = ring.bucketOf(from.toEpochMilli() + offsetMillis);
+        long end = Math.ceilDiv(to.toEpochMilli() + offsetMillis, ring.bucketMillis());
+        first = Math.max(first, end - ring.slotCount());
+        List<RevenueBucket> buckets = new ArrayList<>((int) Math.max(0, end - first));
+        long[] totals = new long[3];
+        for (long bucket = first; bucket < end; bucket++) {
+            ring.read(bucket, totals);
+            buckets.add(new RevenueBucket(startOf(ring, bucket), Amount.ofMinorUnits(totals[0]),
+                    totals[1], totals[2]));
+        }
+        return buckets;
+    }
+
+    /**
+     * Gets the current bucket of a resolution, for example the revenue so far today.
+     *
+     * @param resolution The bucket length.
+     * @return The bucket containing the current time.
+     */
+    public RevenueBucket current(Resolution resolution) {
+        RevenueRing ring = rings[resolution.ordinal()];
+        long bucket = ring.bucketOf(clock.millis() + offsetMillis);
+        long[] totals = new long[3];
+        ring.read(bucket, totals);
+        return new RevenueBucket(startOf(ring, bucket), Amount.ofMinorUnits(totals[0]), totals[1],
+                totals[2]);
+    }
+
+    /**
+     * Adds up the buckets of a period.
+     *
+     * @param resolution The bucket length.
+     * @param from The start of the period, inclusive. Rounded down to a bucket start.
+     * @param to The end of the period, exclusive. Rounded up to a bucket end.
+     * @return The totals of the period, starting at the first bucket.
+     */
+    public RevenueBucket total(Resolution resolution, Instant from, Instant to) {
+        List<RevenueBucket> buckets = buckets(resolution, from, to);
+        long revenue = 0;
+        long sales = 0;
+        long units = 0;
+        for (RevenueBucket bucket : buckets) {
+            revenue += bucket.revenue().toMinorUnits();
+            sales += bucket.saleCount();
+            units += bucket.unitCount();
+        }
+        Instant start = buckets.isEmpty() ? from : buckets.get(0).start();
+        return new RevenueBucket(start, Amount.ofMinorUnits(revenue), sales, units);
+    }
+
+    private Instant startOf(RevenueRing ring, long bucket) {
+        return Instant.ofEpochMilli(bucket * ring.bucketMillis() - offsetMillis);
+    }
+}
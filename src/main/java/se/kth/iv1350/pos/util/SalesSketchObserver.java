@@ -0,0 +1,152 @@
+package se.kth.iv1350.pos.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import se.kth.iv1350.pos.model.RevenueObserver;
+import se.kth.iv1350.pos.model.SaleDTO;
+import se.kth.iv1350.pos.model.SaleItemDTO;
+
+/**
+ * This class implements the {@link RevenueObserver} interface to keep live sales statistics in
+ * sketches of bounded size, instead of exact counters per item. Units sold per item are counted in
+ * one {@link SpaceSavingSketch} per minute, kept for a fixed retention time, to find the best
+ * selling items of a recent period. Distinct items sold are counted in one {@link HyperLogLog} per
+ * day, kept for a week.
+ * <p>
+ * The sketches of a period can be taken out and merged with the sketches of other registers or
+ * nodes. All methods are thread-safe.
+ */
+public class SalesSketchObserver implements RevenueObserver {
+    private static final long SLOT_MILLIS = Duration.ofMinutes(1).toMillis();
+    private static final int DEFAULT_CAPACITY = 1000;
+    private static final Duration DEFAULT_RETENTION = Duration.ofHours(1);
+    private static final int RETAINED_DAYS = 7;
+
+    private final Clock clock;
+    private final int capacity;
+    private final AtomicReferenceArray<Slot> slots;
+    private final ConcurrentNavigableMap<LocalDate, HyperLogLog> days =
+            new ConcurrentSkipListMap<>();
+
+    /**
+     * The items counted during one minute.
+     */
+    private record Slot(long minute, SpaceSavingSketch sketch) {
+    }
+
+    /**
+     * Creates a new instance that keeps the top items of the last hour, with a thousand counters
+     * per minute, and counts distinct items per day in the system time zone.
+     */
+    public SalesSketchObserver() {
+        this(Clock.systemDefaultZone(), DEFAULT_CAPACITY, DEFAULT_RETENTION);
+    }
+
+    /**
+     * Creates a new instance with the specified clock and sketch sizes.
+     *
+     * @param clock Tells when sales are completed, and in which time zone days start.
+     * @param capacity The number of counters in each per-minute top items sketch.
+     * @param retention How long per-minute sketches are kept. Rounded up to whole minutes.
+     */
+    public SalesSketchObserver(Clock clock, int capacity, Duration retention) {
+        this.clock = clock;
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(
+                (int) Math.max(1, Math.ceilDiv(retention.toMillis(), SLOT_MILLIS)));
+    }
+
+    @Override
+    public void saleCompleted(SaleDTO sale) {
+        SpaceSavingSketch minute = currentSlot(Math.floorDiv(clock.millis(), SLOT_MILLIS));
+        HyperLogLog day = currentDay(LocalDate.now(clock));
+        for (SaleItemDTO line : sale.items()) {
+            String itemID = line.item().id();
+            minute.add(itemID, line.quantity());
+            day.add(itemID);
+        }
+    }
+
+    /**
+     * Gets the best selling items of a recent period, by units sold.
+     *
+     * @param k The maximum number of items to return.
+     * @param period The period, ending now. Rounded up to whole minutes, and limited to the
+     *        retention time.
+     * @return Up to <code>k</code> items, best selling first.
+     */
+    public List<SpaceSavingSketch.Counter> topItems(int k, Duration period) {
+        return topItemsSketch(period).top(k);
+    }
+
+    /**
+     * Gets a sketch of the units sold per item in a recent period, for example to merge with the
+     * sketches of other registers.
+     *
+     * @param period The period, ending now. Rounded up to whole minutes, and limited to the
+     *        retention time.
+     * @return A new sketch of the period.
+     */
+    public SpaceSavingSketch topItemsSketch(Duration period) {
+        long now = Math.floorDiv(clock.millis(), SLOT_MILLIS);
+        long minutes = Math.min(slots.length(), Math.ceilDiv(period.toMillis(), SLOT_MILLIS));
+        SpaceSavingSketch merged = new SpaceSavingSketch(capacity);
+        for (int i = 0; i < slots.length(); i++) {
+            Slot slot = slots.get(i);
+            if (slot != null && slot.minute() <= now && slot.minute() > now - minutes) {
+                merged = merged.merge(slot.sketch());
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Estimates the number of distinct items sold today.
+     *
+     * @return The estimated number of distinct items.
+     */
+    public long distinctItemsToday() {
+        return distinctItemsSketch(LocalDate.now(clock)).estimate();
+    }
+
+    /**
+     * Gets a sketch of the distinct items sold on a day, for example to merge with the sketches of
+     * other registers.
+     *
+     * @param day The day. Only the last week is kept.
+     * @return A new sketch of the day, empty if nothing was sold or the day is no longer kept.
+     */
+    public HyperLogLog distinctItemsSketch(LocalDate day) {
+        HyperLogLog sketch = days.get(day);
+        return sketch == null ? new HyperLogLog() : HyperLogLog.fromByteArray(sketch.toByteArray());
+    }
+
+    private SpaceSavingSketch currentSlot(long minute) {
+        int index = Math.floorMod(minute, slots.length());
+        while (true) {
+            Slot slot = slots.get(index);
+            if (slot != null && slot.minute() >= minute) {
+                return slot.sketch();
+            }
+            Slot fresh = new Slot(minute, new SpaceSavingSketch(capacity));
+            if (slots.compareAndSet(index, slot, fresh)) {
+                return fresh.sketch();
+            }
+        }
+    }
+
+    private HyperLogLog currentDay(LocalDate today) {
+        HyperLogLog sketch = days.get(today);
+        if (sketch == null) {
+            sketch = days.computeIfAbsent(today, day -> new HyperLogLog());
+            days.headMap(today.minusDays(RETAINED_DAYS - 1)).clear();
+        }
+        return sketch;
+    }
+}
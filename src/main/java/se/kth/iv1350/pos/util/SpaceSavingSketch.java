@@ -0,0 +1,209 @@
+package se.kth.iv1350.pos.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Finds the most frequent items in a stream using the Space-Saving algorithm, with memory bounded
+ * by a fixed number of counters. While there are free counters every item is counted exactly.
+ * When all counters are in use, a new item takes over the counter with the lowest count, and
+ * inherits that count as its possible overcount. Every item counted more than
+ * <code>total / capacity</code> times is guaranteed to have a counter.
+ * <p>
+ * Sketches with the same capacity can be merged, for example to combine the sketches of several
+ * time windows or registers, and can be sent between nodes with {@link #toByteArray()}. All methods
+ * are thread-safe.
+ */
+public final class SpaceSavingSketch {
+    private static final Comparator<Counter> BY_COUNT =
+            Comparator.comparingLong(Counter::count).thenComparing(Counter::item);
+
+    /**
+     * The estimated count of one item.
+     *
+     * @param item The item.
+     * @param count The estimated count. The true count is at most this.
+     * @param error The largest possible overcount. The true count is at least
+     *        <code>count - error</code>.
+     */
+    public record Counter(String item, long count, long error) {
+    }
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    private final TreeSet<Counter> byCount = new TreeSet<>(BY_COUNT);
+
+    /**
+     * Creates an empty sketch with the specified number of counters. To find the top
+     * <code>k</code> items reliably, the capacity should be several times <code>k</code>.
+     *
+     * @param capacity The number of counters.
+     */
+    public SpaceSavingSketch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = HashMap.newHashMap(capacity);
+    }
+
+    /**
+     * Gets the number of counters in this sketch.
+     *
+     * @return The capacity.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Counts occurrences of an item.
+     *
+     * @param item The item.
+     * @param count The number of occurrences. Must be positive.
+     */
+    public synchronized void add(String item, long count) {
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            byCount.remove(counter);
+            put(new Counter(item, counter.count() + count, counter.error()));
+        } else if (counters.size() < capacity) {
+            put(new Counter(item, count, 0));
+        } else {
+            Counter smallest = byCount.pollFirst();
+            counters.remove(smallest.item());
+            put(new Counter(item, smallest.count() + count, smallest.count()));
+        }
+    }
+
+    /**
+     * Gets the items with the highest estimated counts.
+     *
+     * @param k The maximum number of items to return.
+     * @return Up to <code>k</code> counters, highest count first.
+     */
+    public synchronized List<Counter> top(int k) {
+        List<Counter> top = new ArrayList<>(Math.min(k, counters.size()));
+        for (Counter counter : byCount.descendingSet()) {
+            if (top.size() == k) {
+                break;
+            }
+            top.add(counter);
+        }
+        return top;
+    }
+
+    /**
+     * Creates a new sketch counting everything counted by this sketch and the specified one. An
+     * item missing from a full sketch may still have occurred up to that sketch's lowest count
+     * times, so that count is added to the item's count and error. Neither sketch is changed.
+     *
+     * @param other The sketch to merge with. Must have the same capacity.
+     * @return The merged sketch.
+     */
+    public SpaceSavingSketch merge(SpaceSavingSketch other) {
+        if (other.capacity != capacity) {
+            throw new IllegalArgumentException("Cannot merge sketches of different capacity.");
+        }
+        Map<String, Counter> mine = copyCounters();
+        Map<String, Counter> theirs = other.copyCounters();
+        long myFloor = floorOf(mine);
+        long theirFloor = other.floorOf(theirs);
+        List<Counter> combined = new ArrayList<>(mine.size() + theirs.size());
+        for (Counter counter : mine.values()) {
+            Counter match = theirs.get(counter.item());
+            combined.add(match == null
+                    ? new Counter(counter.item(), counter.count() + theirFloor,
+                            counter.error() + theirFloor)
+                    : new Counter(counter.item(), counter.count() + match.count(),
+                            counter.error() + match.error()));
+        }
+        for (Counter counter : theirs.values()) {
+            if (!mine.containsKey(counter.item())) {
+                combined.add(new Counter(counter.item(), counter.count() + myFloor,
+                        counter.error() + myFloor));
+            }
+        }
+        combined.sort(BY_COUNT.reversed());
+        SpaceSavingSketch merged = new SpaceSavingSketch(capacity);
+        for (Counter counter : combined.subList(0, Math.min(capacity, combined.size()))) {
+            merged.put(counter);
+        }
+        return merged;
+    }
+
+    /**
+     * Serializes this sketch, so that it can be sent to another node and merged there.
+     *
+     * @return The serialized sketch.
+     */
+    public byte[] toByteArray() {
+        Map<String, Counter> snapshot = copyCounters();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(capacity);
+            out.writeInt(snapshot.size());
+            for (Counter counter : snapshot.values()) {
+                out.writeUTF(counter.item());
+                out.writeLong(counter.count());
+                out.writeLong(counter.error());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Recreates a sketch serialized with {@link #toByteArray()}.
+     *
+     * @param data The serialized sketch.
+     * @return The sketch.
+     * @throws IllegalArgumentException if the data is not a valid sketch.
+     */
+    public static SpaceSavingSketch fromByteArray(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            SpaceSavingSketch sketch = new SpaceSavingSketch(in.readInt());
+            int size = in.readInt();
+            if (size < 0 || size > sketch.capacity) {
+                throw new IllegalArgumentException("Invalid sketch size: " + size);
+            }
+            for (int i = 0; i < size; i++) {
+                sketch.put(new Counter(in.readUTF(), in.readLong(), in.readLong()));
+            }
+            return sketch;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid sketch data.", e);
+        }
+    }
+
+    private synchronized Map<String, Counter> copyCounters() {
+        return new HashMap<>(counters);
+    }
+
+    private long floorOf(Map<String, Counter> snapshot) {
+        if (snapshot.size() < capacity) {
+            return 0;
+        }
+        long floor = Long.MAX_VALUE;
+        for (Counter counter : snapshot.values()) {
+            floor = Math.min(floor, counter.count());
+        }
+        return floor;
+    }
+
+    private void put(Counter counter) {
+        counters.put(counter.item(), counter);
+        byCount.add(counter);
+    }
+}
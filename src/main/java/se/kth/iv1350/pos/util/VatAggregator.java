@@ -0,0 +1,105 @@
+package se.kth.iv1350.pos.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.kth.iv1350.pos.model.Amount;
+import se.kth.iv1350.pos.model.RevenueObserver;
+import se.kth.iv1350.pos.model.SaleDTO;
+import se.kth.iv1350.pos.model.VatRateTotal;
+
+/**
+ * This class implements the {@link RevenueObserver} interface to roll up the VAT of all completed
+ * sales per VAT rate and hour. Every sale adds its VAT breakdown to the bucket of the hour it was
+ * completed in, so a VAT report for a period only sums the buckets of the hours in that period.
+ * <p>
+ * Sales from any number of registers may be added concurrently, and reports may be made while
+ * sales are being added.
+ */
+public class VatAggregator implements RevenueObserver {
+    private static final long HOUR_MILLIS = Duration.ofHours(1).toMillis();
+    private final Clock clock;
+    private final ConcurrentNavigableMap<Long, ConcurrentMap<Integer, RateTotals>> hours =
+            new ConcurrentSkipListMap<>();
+
+    /**
+     * Creates a new instance that files sales under the current system time.
+     */
+    public VatAggregator() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * Creates a new instance that files sales under the time of the specified clock.
+     *
+     * @param clock Tells when a sale was completed.
+     */
+    public VatAggregator(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void saleCompleted(SaleDTO sale) {
+        long hour = Math.floorDiv(clock.millis(), HOUR_MILLIS);
+        ConcurrentMap<Integer, RateTotals> bucket =
+                hours.computeIfAbsent(hour, key -> new ConcurrentHashMap<>());
+        for (VatRateTotal rate : sale.vatBreakdown()) {
+            RateTotals totals = bucket.computeIfAbsent(rate.vatRate(), key -> new RateTotals());
+            totals.net.add(rate.net().toMinorUnits());
+            totals.vat.add(rate.vat().toMinorUnits());
+        }
+    }
+
+    /**
+     * Creates a VAT report for a period. The period is widened to whole hours, so all sales in
+     * the hours that <code>from</code> and <code>to</code> fall in are included.
+     *
+     * @param from The start of the period, inclusive.
+     * @param to The end of the period, exclusive.
+     * @return The totals per VAT rate in the period, ordered by rate.
+     */
+    public List<VatRateTotal> report(Instant from, Instant to) {
+        long fromHour = Math.floorDiv(from.toEpochMilli(), HOUR_MILLIS);
+        long toHour = Math.ceilDiv(to.toEpochMilli(), HOUR_MILLIS);
+        Map<Integer, long[]> sums = new TreeMap<>();
+        for (Map<Integer, RateTotals> bucket : hours.subMap(fromHour, toHour).values()) {
+            bucket.forEach((vatRate, totals) -> {
+                long[] sum = sums.computeIfAbsent(vatRate, key -> new long[2]);
+                sum[0] += totals.net.sum();
+                sum[1] += totals.vat.sum();
+            });
+        }
+        List<VatRateTotal> report = new ArrayList<>(sums.size());
+        sums.forEach((vatRate, sum) -> report.add(new VatRateTotal(vatRate,
+                Amount.ofMinorUnits(sum[0]), Amount.ofMinorUnits(sum[1]))));
+        return report;
+    }
+
+    /**
+     * Removes the buckets of all hours before the specified time, for example once they have been
+     * reported.
+     *
+     * @param before The time before which buckets are removed. The hour it falls in is kept.
+     */
+    public void discardBefore(Instant before) {
+        hours.headMap(Math.floorDiv(before.toEpochMilli(), HOUR_MILLIS)).clear();
+    }
+
+    /**
+     * The running totals of one VAT rate in one hour, in öre.
+     */
+    private static final class RateTotals {
+        private final LongAdder net = new LongAdder();
+        private final LongAdder vat = new LongAdder();
+    }
+}
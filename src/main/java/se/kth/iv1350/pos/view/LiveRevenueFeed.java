@@ -0,0 +1,257 @@
+package se.kth.iv1350.pos.view;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import se.kth.iv1350.pos.model.RevenueObserver;
+import se.kth.iv1350.pos.model.SaleDTO;
+
+/**
+ * A live revenue screen served as Server-Sent Events from a local HTTP endpoint at
+ * <code>/revenue</code>, using the HTTP server built into the JDK. Implements
+ * {@link RevenueObserver} to receive completed sales.
+ * <p>
+ * Sales are only counted when they arrive. Once per tick, if there were new sales or sales have
+ * left the last minute, one update with the total revenue, the sale count and the sales in the
+ * last minute is created and offered to all viewers, so the number of pushes does not grow with
+ * the number of sales. Each viewer is served by its own virtual thread and holds at most one
+ * pending update. A viewer that has not received the previous update when the next one is ready
+ * only gets the newer one, so a slow viewer skips updates instead of building up a backlog.
+ * <p>
+ * While the feed is idle, a comment is sent to all viewers as a heartbeat every 15 seconds, so
+ * viewers that have disconnected are noticed and their threads end.
+ */
+public class LiveRevenueFeed implements RevenueObserver, AutoCloseable {
+    private static final String PATH = "/revenue";
+    private static final Duration WINDOW = Duration.ofMinutes(1);
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+    private static final String HEARTBEAT = ": heartbeat\n\n";
+
+    private final HttpServer server;
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService viewerThreads = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<Viewer> viewers = ConcurrentHashMap.newKeySet();
+    private final LongAdder revenue = new LongAdder();
+    private final LongAdder sales = new LongAdder();
+    private final long[] salesPerTick;
+    private final long tickMillis;
+    private final long heartbeatTicks;
+    private long ticks;
+    private long lastSaleCount;
+    private long salesLastMinute;
+    private volatile String latestUpdate;
+
+    private LiveRevenueFeed(HttpServer server, Duration tick, Duration window,
+            Duration heartbeatInterval) {
+        this.server = server;
+        this.tickMillis = Math.max(1, tick.toMillis());
+        this.salesPerTick = new long[(int) Math.max(1, window.toMillis() / tickMillis)];
+        this.heartbeatTicks = Math.max(1, heartbeatInterval.toMillis() / tickMillis);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "live-revenue-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.latestUpdate = createUpdate(0);
+    }
+
+    /**
+     * Starts a feed on the specified local port.
+     *
+     * @param port The port to listen on, or zero to use any free port.
+     * @param tick How often updates are sent, for example 250 milliseconds.
+     * @return The started feed.
+     * @throws IOException if the server could not be started.
+     */
+    public static LiveRevenueFeed start(int port, Duration tick) throws IOException {
+        return start(port, tick, WINDOW, HEARTBEAT_INTERVAL);
+    }
+
+    /**
+     * Starts a feed on the specified local port, counting the sales in a window of another length
+     * than one minute.
+     *
+     * @param port The port to listen on, or zero to use any free port.
+     * @param tick How often updates are sent.
+     * @param window The length of the window of recent sales.
+     * @param heartbeatInterval How often a heartbeat is sent while the feed is idle.
+     * @return The started feed.
+     * @throws IOException if the server could not be started.
+     */
+    static LiveRevenueFeed start(int port, Duration tick, Duration window,
+            Duration heartbeatInterval) throws IOException {
+        HttpServer server =
+                HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        LiveRevenueFeed feed = new LiveRevenueFeed(server, tick, window, heartbeatInterval);
+        server.createContext(PATH, feed::serve);
+        server.setExecutor(feed.viewerThreads);
+        server.start();
+        feed.ticker.scheduleAtFixedRate(feed::tick, feed.tickMillis, feed.tickMillis,
+                TimeUnit.MILLISECONDS);
+        return feed;
+    }
+
+    /**
+     * Gets the port the feed is listening on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Gets the number of connected viewers.
+     *
+     * @return The number of viewers.
+     */
+    public int getViewerCount() {
+        return viewers.size();
+    }
+
+    @Override
+    public void saleCompleted(SaleDTO sale) {
+        revenue.add(sale.total().toMinorUnits());
+        sales.increment();
+    }
+
+    /**
+     * Stops the server and disconnects all viewers.
+     */
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+        for (Viewer viewer : viewers) {
+            viewer.close();
+        }
+        server.stop(0);
+        viewerThreads.shutdownNow();
+    }
+
+    /**
+     * Runs once per tick on the ticker thread. Creates a new update if there were sales since the
+     * last tick, or sales have left the last minute, and offers it to all viewers. Otherwise sends
+     * a heartbeat if one is due.
+     */
+    private void tick() {
+        long saleCount = sales.sum();
+        long newSales = saleCount - lastSaleCount;
+        lastSaleCount = saleCount;
+        int slot = (int) (ticks++ % salesPerTick.length);
+        long expiredSales = salesPerTick[slot];
+        salesPerTick[slot] = newSales;
+        salesLastMinute += newSales - expiredSales;
+        if (newSales != 0 || expiredSales != 0) {
+            String update = createUpdate(salesLastMinute);
+            latestUpdate = update;
+            for (Viewer viewer : viewers) {
+                viewer.offer(update);
+            }
+        } else if (ticks % heartbeatTicks == 0) {
+            for (Viewer viewer : viewers) {
+                viewer.heartbeat();
+            }
+        }
+    }
+
+    private String createUpdate(long salesLastMinute) {
+        return "event: revenue\ndata: {\"totalRevenue\":"
+                + BigDecimal.valueOf(revenue.sum(), 2).toPlainString() + ",\"saleCount\":"
+                + sales.sum() + ",\"salesLastMinute\":" + salesLastMinute + "}\n\n";
+    }
+
+    /**
+     * Serves one viewer until it disconnects or the feed is closed. Runs on the viewer's own
+     * virtual thread.
+     */
+    private void serve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            Viewer viewer = new Viewer(Thread.currentThread());
+            viewers.add(viewer);
+            try {
+                viewer.offer(latestUpdate);
+                viewer.send(exchange.getResponseBody());
+            } finally {
+                viewers.remove(viewer);
+            }
+        }
+    }
+
+    /**
+     * One connected viewer, with room for a single pending update.
+     */
+    private static final class Viewer {
+        private final Thread thread;
+        private final AtomicReference<String> pending = new AtomicReference<>();
+        private volatile boolean closed;
+
+        private Viewer(Thread thread) {
+            this.thread = thread;
+        }
+
+        /**
+         * Makes the specified update the next one sent, replacing any update not yet sent.
+         */
+        private void offer(String update) {
+            pending.set(update);
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * Sends a heartbeat next, unless an update is already pending.
+         */
+        private void heartbeat() {
+            if (pending.compareAndSet(null, HEARTBEAT)) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void close() {
+            closed = true;
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * Sends updates as they are offered, until the viewer is closed or disconnects.
+         */
+        private void send(OutputStream out) {
+            try {
+                while (!closed) {
+                    String update = pending.getAndSet(null);
+                    if (update == null) {
+                        LockSupport.park(this);
+                        continue;
+                    }
+                    out.write(update.getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // The viewer has disconnected.
+            }
+        }
+    }
+}
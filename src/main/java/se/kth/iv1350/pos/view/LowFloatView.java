@@ -0,0 +1,16 @@
+package se.kth.iv1350.pos.view;
+
+import se.kth.iv1350.pos.model.LowFloatObserver;
+
+/**
+ * Shows an alert on the console when the cash drawer is running low on a denomination.
+ */
+public class LowFloatView implements LowFloatObserver {
+    @Override
+    public void lowFloat(int denomination, int count) {
+        System.out.println("-------------Low float alert--------------");
+        System.out.printf("Only %d left of %d SEK. Please refill the drawer.%n", count,
+                denomination);
+        System.out.println("------------------------------------------\n");
+    }
+}
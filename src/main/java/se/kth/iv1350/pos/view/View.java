@@ -22,6 +22,13 @@ public class View {
     private static final String END_SALE = "End sale:";
     private static final String PAYMENT = "Amount paid: %s SEK";
     private static final String CHANGE = "Change: %s";
+    private static final String ENTER_CUSTOMER = "Discount request for customer %s";
+    private static final String CARD_PAYMENT = "Amount paid by card: %s SEK";
+    private static final String CASH_DUE = "Cash due (rounded): %s";
+    private static final String SALE_CANCELLED = "Sale cancelled.";
+    private static final String PAYMENT_RETRY = "The payment is registered, retrying...";
+    private static final String PAYMENT_COMPLETED_LATER =
+            "The receipt and register updates will be completed in the background.";
 
     private final Controller controller;
     private final PrintStream out;
@@ -79,6 +86,29 @@ public class View {
             double PAYMENT_AMOUNT3 = 500;
             displayChange(PAYMENT_AMOUNT3);
         }
+        // Sample sale with a customer discount, paid partly by card
+        displayStartSale();
+        displayEnterCustomer("1001");
+        displayEnterItem("2");
+        displayEnterItem("3");
+        if (displayEndSale()) {
+            double CARD_AMOUNT = 20;
+            displayCardPayment(CARD_AMOUNT);
+            double PAYMENT_AMOUNT5 = 50;
+            displayChange(PAYMENT_AMOUNT5);
+        }
+
+        // Sample sale with scanned barcodes: weighed ham, priced cheese, milk and a misread
+        displayStartSale();
+        displayEnterItem("2500101004528");
+        displayEnterItem("2000102049950");
+        displayEnterItem("7310865004703");
+        displayEnterItem("7310865004704");
+        if (displayEndSale()) {
+            double PAYMENT_AMOUNT6 = 200;
+            displayChange(PAYMENT_AMOUNT6);
+        }
+
         // Faulty operation
         displayStartSale();
         displayEnterItem("invalid");
@@ -112,11 +142,37 @@ public class View {
             appendLine(builder, String.format(CHANGE, change));
         } catch (OperationFailedException e) {
             handleException(builder, e);
+            if (controller.isPaymentRegistered()) {
+                retryPaymentCompletion(builder, paymentAmount);
+            } else {
+                controller.cancelSale();
+                appendLine(builder, SALE_CANCELLED);
+            }
         }
         endSection(builder);
         print(builder);
     }
 
+    /**
+     * Retries completing a payment that is registered, and hands it over to the background if the
+     * retry fails too. The sale is paid either way, so the change is always displayed.
+     *
+     * @param builder The {@link StringBuilder} to append the outcome to.
+     * @param paymentAmount The amount paid by the customer.
+     */
+    private void retryPaymentCompletion(StringBuilder builder, double paymentAmount) {
+        appendLine(builder, PAYMENT_RETRY);
+        try {
+            Amount change = controller.enterPayment(Amount.of(paymentAmount));
+            appendLine(builder, String.format(CHANGE, change));
+        } catch (OperationFailedException e) {
+            FileLogger.log("Payment completion retry failed: ", e);
+            Amount change = controller.completePaymentInBackground();
+            appendLine(builder, String.format(CHANGE, change));
+            appendLine(builder, PAYMENT_COMPLETED_LATER);
+        }
+    }
+
     /**
      * Displays the running total with item details after adding an item to the sale.
      *
@@ -193,14 +249,51 @@ public class View {
             print(builder);
             return true;
         } else {
+            controller.cancelSale();
             appendLine(builder,
-                    "No items were successfully registered for this sale. Sale cancelled.");
+                    "No items were successfully registered for this sale. " + SALE_CANCELLED);
             endSection(builder);
             print(builder);
             return false;
         }
     }
 
+    /**
+     * Displays the total cost after entering the customer for a discount request.
+     *
+     * @param customerId The ID of the customer.
+     */
+    private void displayEnterCustomer(String customerId) {
+        StringBuilder builder = new StringBuilder();
+        appendLine(builder, String.format(ENTER_CUSTOMER, customerId));
+        try {
+            Amount total = controller.enterCustomer(customerId);
+            appendLine(builder, "Total cost (incl VAT): " + total);
+        } catch (IllegalStateException e) {
+            handleException(builder, e);
+        }
+        endSection(builder);
+        print(builder);
+    }
+
+    /**
+     * Displays the rest of the total cost to pay in cash, after starting a card payment.
+     *
+     * @param cardAmount The amount the customer pays by card.
+     */
+    private void displayCardPayment(double cardAmount) {
+        StringBuilder builder = new StringBuilder();
+        appendLine(builder, String.format(CARD_PAYMENT, cardAmount));
+        try {
+            Amount cashDue = controller.endSale(Amount.of(cardAmount));
+            appendLine(builder, String.format(CASH_DUE, cashDue));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            handleException(builder, e);
+        }
+        endSection(builder);
+        print(builder);
+    }
+
     /**
      * Formats the percentage to a string with the format "0%".
      *
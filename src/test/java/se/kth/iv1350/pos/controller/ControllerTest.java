@@ -1,17 +1,41 @@
 package se.kth.iv1350.pos.controller;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import se.kth.iv1350.pos.integration.AccountingRegistry;
+import se.kth.iv1350.pos.integration.CachedDiscountRegistry;
+import se.kth.iv1350.pos.integration.CardDeclinedException;
+import se.kth.iv1350.pos.integration.CardTender;
 import se.kth.iv1350.pos.integration.ConsolePrinter;
+import se.kth.iv1350.pos.integration.ItemLookupResult;
 import se.kth.iv1350.pos.integration.ItemNotFoundException;
+import se.kth.iv1350.pos.integration.LocalCardAuthorizer;
 import se.kth.iv1350.pos.integration.RegistryCreator;
 import se.kth.iv1350.pos.model.Amount;
+import se.kth.iv1350.pos.model.Promotion;
+import se.kth.iv1350.pos.model.SaleEvent;
 import se.kth.iv1350.pos.model.SaleItemDTO;
 
 /**
@@ -19,14 +43,18 @@ import se.kth.iv1350.pos.model.SaleItemDTO;
  * multiple items, payment, and receipt printing.
  */
 public class ControllerTest {
+    @TempDir
+    Path ledgerDirectory;
+    private RegistryCreator registries;
     private Controller controller;
 
     /**
-     * Sets up a new Controller instance before each test.
+     * Sets up a new Controller instance, with a ledger in a temporary directory, before each test.
      */
     @BeforeEach
     public void setUp() {
-        controller = new Controller(RegistryCreator.getInstance(), new ConsolePrinter());
+        registries = RegistryCreator.withLedgerDirectory(ledgerDirectory);
+        controller = new Controller(registries, new ConsolePrinter());
     }
 
     /**
@@ -90,6 +118,275 @@ public class ControllerTest {
                 "Change should be payment minus total (VAT-inclusive).");
     }
 
+    /**
+     * Verifies that a sale can be split between card and cash, that the cash part is rounded to
+     * whole kronor, and that each part and the rounding are booked on their own accounts.
+     */
+    @Test
+    public void testSplitPayment() throws Exception {
+        AccountingRegistry accounting = registries.getAccountingRegistry();
+        long cashBefore = accounting.getBalance(AccountingRegistry.CASH_ACCOUNT);
+        long cardBefore = accounting.getBalance(AccountingRegistry.TENDER_RECEIVABLE_ACCOUNT);
+        long roundingBefore = accounting.getBalance(AccountingRegistry.ROUNDING_ACCOUNT);
+        controller.startSale();
+        controller.enterItem("1");
+        controller.enterItem("2");
+        Amount cashDue = controller.endSale(Amount.of(10));
+        assertEquals(2100, cashDue.toMinorUnits(), "31.20 minus 10 by card rounds to 21.");
+        Amount change = controller.enterPayment(Amount.of(50));
+        assertEquals(2900, change.toMinorUnits(), "Change should be cash paid minus cash due.");
+        assertEquals(cashBefore + 2100, accounting.getBalance(AccountingRegistry.CASH_ACCOUNT),
+                "The cash part should be booked as cash.");
+        assertEquals(cardBefore + 1000,
+                accounting.getBalance(AccountingRegistry.TENDER_RECEIVABLE_ACCOUNT),
+                "The card part should be booked as receivable.");
+        assertEquals(roundingBefore + 20,
+                accounting.getBalance(AccountingRegistry.ROUNDING_ACCOUNT),
+                "The rounding down should be booked as a cost.");
+    }
+
+    /**
+     * Verifies that a declined card payment fails the payment with the decline as cause, and that
+     * the payment can then be retried in cash.
+     */
+    @Test
+    public void testDeclinedCardPayment() throws Exception {
+        controller.startSale();
+        controller.enterItem("1");
+        controller.endSale();
+        controller.addTender(new CardTender(
+                new LocalCardAuthorizer(Duration.ZERO, Amount.of(5)), Amount.of(10)));
+        OperationFailedException thrown = Assertions.assertThrows(OperationFailedException.class,
+                () -> controller.enterPayment(Amount.zero()));
+        assertTrue(thrown.getCause() instanceof CardDeclinedException,
+                "The decline should be the cause.");
+        assertEquals(0, controller.enterPayment(Amount.of(10)).toMinorUnits(),
+                "The retry should be paid in cash.");
+    }
+
+    /**
+     * Verifies that a tender of more than the rest of the total cost is refused before it is
+     * authorized, so the sale can still be paid.
+     */
+    @Test
+    public void testTenderOverTotalRefused() throws Exception {
+        controller.startSale();
+        controller.enterItem("1");
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> controller.endSale(Amount.of(50)));
+        assertEquals(500, controller.addTender(new CardTender(
+                new LocalCardAuthorizer(Duration.ZERO, Amount.of(100)), Amount.of(5)))
+                .toMinorUnits(), "Half of the 10 SEK sale should be left.");
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> controller.addTender(new CardTender(
+                        new LocalCardAuthorizer(Duration.ZERO, Amount.of(100)), Amount.of(6))));
+        assertEquals(0, controller.enterPayment(Amount.of(5)).toMinorUnits(),
+                "The rest should be paid in cash.");
+    }
+
+    /**
+     * Verifies that a voided tender is removed from the payment and its authorization is voided.
+     */
+    @Test
+    public void testVoidTender() throws Exception {
+        LocalCardAuthorizer authorizer = new LocalCardAuthorizer(Duration.ZERO, Amount.of(100));
+        CardTender tender = new CardTender(authorizer, Amount.of(10));
+        controller.startSale();
+        controller.enterItem("1");
+        controller.endSale();
+        assertEquals(0, controller.addTender(tender).toMinorUnits(), "The card pays it all.");
+        assertEquals(1000, controller.voidTender(tender).toMinorUnits(),
+                "All should be due in cash after the void.");
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> controller.voidTender(tender));
+        assertEquals(0, controller.enterPayment(Amount.of(10)).toMinorUnits(),
+                "The sale should be paid in cash.");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (authorizer.getVoidCount() == 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(1, authorizer.getVoidCount(), "The authorization should be voided.");
+    }
+
+    /**
+     * Verifies that a cancelled sale voids its tenders and lets a new, empty sale be started.
+     */
+    @Test
+    public void testCancelSale() throws Exception {
+        LocalCardAuthorizer authorizer = new LocalCardAuthorizer(Duration.ZERO, Amount.of(100));
+        controller.startSale();
+        controller.enterItem("1");
+        controller.endSale();
+        controller.addTender(new CardTender(authorizer, Amount.of(10)));
+        controller.cancelSale();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (authorizer.getVoidCount() == 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(1, authorizer.getVoidCount(), "The authorization should be voided.");
+        controller.startSale();
+        assertEquals(0, controller.endSale().toMinorUnits(), "The new sale should be empty.");
+        assertEquals(0, controller.enterPayment(Amount.zero()).toMinorUnits(),
+                "The new sale should not be paid by the voided tender.");
+        Assertions.assertThrows(IllegalStateException.class, () -> controller.cancelSale());
+    }
+
+    /**
+     * Verifies that the discount of a customer entered early in the sale is given once, when the
+     * sale is ended, and that a failing discount database does not stop the sale.
+     */
+    @Test
+    public void testCustomerDiscount() throws Exception {
+        CachedDiscountRegistry discounts = registries.getDiscountRegistry();
+        long lookupsBefore = discounts.getHitCount() + discounts.getMissCount();
+        controller.startSale();
+        controller.enterCustomer("1001");
+        controller.enterItem("1");
+        controller.enterItem("1");
+        assertEquals(1800, controller.endSale().toMinorUnits(), "Customer 1001 gets 10% off.");
+        assertEquals(200, controller.enterPayment(Amount.of(20)).toMinorUnits(),
+                "The change should be based on the discounted total.");
+        assertEquals(lookupsBefore + 2, discounts.getHitCount() + discounts.getMissCount(),
+                "The discount should be prefetched and then looked up once.");
+        controller.startSale();
+        controller.enterCustomer("dbfail");
+        controller.enterItem("1");
+        assertEquals(1000, controller.endSale().toMinorUnits(),
+                "The sale should continue without the discount.");
+        controller.enterPayment(Amount.of(10));
+    }
+
+    /**
+     * Verifies that scanned barcodes are looked up by their base SKU, that weighed and priced
+     * packages get the embedded weight or price, and that misreads are rejected.
+     */
+    @Test
+    public void testScannedBarcodes() throws Exception {
+        controller.startSale();
+        SaleItemDTO ham = controller.enterItem("2500101004528");
+        assertEquals("Ham", ham.item().name(), "The base SKU should be looked up.");
+        assertEquals("2500101000001", ham.item().id(), "The line should have the catalog SKU.");
+        assertEquals(7594, ham.total().toMinorUnits(), "452 g at 150 SEK/kg plus 12% VAT.");
+        SaleItemDTO cheese = controller.enterItem("2000102049950");
+        assertEquals(7594 + 4995, cheese.total().toMinorUnits(),
+                "The cheese should cost the price on its label.");
+        controller.enterItem("7310865004703");
+        SaleItemDTO milk = controller.enterItem("07310865004703");
+        assertEquals(2, milk.quantity(), "GTIN-13 and GTIN-14 should be the same item.");
+        Assertions.assertThrows(ItemNotFoundException.class,
+                () -> controller.enterItem("7310865004704"));
+        assertEquals(7594 + 4995 + 3360, controller.endSale().toMinorUnits(),
+                "The misread should not be added.");
+        controller.enterPayment(Amount.of(200));
+    }
+
+    /**
+     * Verifies that promotions on a variable-measure item apply to its weighed packages.
+     */
+    @Test
+    public void testPromotionOnWeighedItem() throws Exception {
+        controller.setPromotions(List.of(new Promotion.PercentOff("deli", "10% off ham",
+                Set.of("2500101000001"), 10)));
+        controller.startSale();
+        assertEquals(6834, controller.enterItem("2500101004528").total().toMinorUnits(),
+                "452 g at 150 SEK/kg, 10% off, plus 12% VAT.");
+        controller.enterPayment(Amount.of(100));
+    }
+
+    /**
+     * Verifies that a failing printer fails the payment with the printer error as cause, that
+     * the payment can then be retried without booking the sale twice, and that a new sale can be
+     * started afterwards.
+     */
+    @Test
+    public void testPaymentCompletionFailure() throws Exception {
+        IllegalStateException printerError = new IllegalStateException("Out of paper");
+        AtomicInteger printAttempts = new AtomicInteger();
+        controller = new Controller(registries, receipt -> {
+            if (printAttempts.incrementAndGet() == 1) {
+                throw printerError;
+            }
+        });
+        AccountingRegistry accounting = registries.getAccountingRegistry();
+        long cashBefore = accounting.getBalance(AccountingRegistry.CASH_ACCOUNT);
+        controller.startSale();
+        controller.enterItem("1");
+        OperationFailedException thrown = Assertions.assertThrows(OperationFailedException.class,
+                () -> controller.enterPayment(Amount.of(100)));
+        assertSame(printerError, thrown.getCause(), "Printer error should be the cause.");
+        assertEquals(cashBefore + 1000, accounting.getBalance(AccountingRegistry.CASH_ACCOUNT),
+                "The printer error should not stop the accounting update.");
+        assertEquals(90.0, controller.enterPayment(Amount.of(100)).asDouble(), 0.001,
+                "The retry should return the change of the first payment.");
+        assertEquals(2, printAttempts.get(), "Only the failed printing should be retried.");
+        assertEquals(cashBefore + 1000, accounting.getBalance(AccountingRegistry.CASH_ACCOUNT),
+                "The sale should be booked once.");
+        controller.startSale();
+    }
+
+    /**
+     * Verifies that a paid sale can not be cancelled, and that its unfinished steps are completed
+     * in the background while a new sale is started.
+     */
+    @Test
+    public void testPaymentCompletedInBackground() throws Exception {
+        CountDownLatch printed = new CountDownLatch(1);
+        AtomicInteger printAttempts = new AtomicInteger();
+        controller = new Controller(registries, receipt -> {
+            if (printAttempts.incrementAndGet() <= 2) {
+                throw new IllegalStateException("Out of paper");
+            }
+            printed.countDown();
+        });
+        controller.startSale();
+        controller.enterItem("1");
+        Assertions.assertThrows(OperationFailedException.class,
+                () -> controller.enterPayment(Amount.of(100)));
+        assertTrue(controller.isPaymentRegistered(), "The payment should be registered.");
+        Assertions.assertThrows(IllegalStateException.class, () -> controller.cancelSale());
+        assertEquals(9000, controller.completePaymentInBackground().toMinorUnits(),
+                "The change of the payment should be returned.");
+        controller.startSale();
+        assertTrue(printed.await(5, TimeUnit.SECONDS), "The receipt should be printed later.");
+    }
+
+    /**
+     * Verifies that a payment fails with a timeout when the printer does not finish within the
+     * payment completion deadline, without waiting for a printer that ignores the interrupt.
+     */
+    @Test
+    public void testPaymentCompletionDeadline() throws Exception {
+        CountDownLatch paperLoaded = new CountDownLatch(1);
+        controller = new Controller(registries, receipt -> {
+            boolean interrupted = false;
+            while (paperLoaded.getCount() > 0) {
+                try {
+                    paperLoaded.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        controller.setPaymentCompletionDeadline(Duration.ofMillis(50));
+        controller.startSale();
+        controller.enterItem("1");
+        try {
+            OperationFailedException thrown = Assertions.assertTimeoutPreemptively(
+                    Duration.ofSeconds(5), () -> Assertions.assertThrows(
+                            OperationFailedException.class,
+                            () -> controller.enterPayment(Amount.of(100))));
+            assertTrue(thrown.getCause() instanceof TimeoutException,
+                    "Cause should be a timeout.");
+            assertTrue(thrown.getMessage().contains("receipt printing (cancelled)"),
+                    "Printing should be reported as cancelled.");
+        } finally {
+            paperLoaded.countDown();
+        }
+    }
+
     /**
      * Verifies that an ItemNotFoundException is thrown for a missing item.
      */
@@ -114,4 +411,80 @@ public class ControllerTest {
                 });
         assertNotNull(thrown, "OperationFailedException should be thrown when database fails.");
     }
+
+    /**
+     * Verifies that tryEnterItem reports found, missing and failed lookups without exceptions.
+     */
+    @Test
+    public void testTryEnterItem() {
+        controller.startSale();
+        ItemEntryResult found = controller.tryEnterItem("1");
+        assertTrue(found.isAdded(), "Existing item should be added.");
+        assertEquals("1", found.saleItem().item().id(), "Added item ID should match.");
+        ItemEntryResult missing = controller.tryEnterItem("notfound");
+        assertEquals(ItemLookupResult.Status.NOT_FOUND, missing.status(),
+                "Unknown item should be reported as not found.");
+        assertNull(missing.saleItem(), "No item should be returned for a miss.");
+        assertEquals(ItemLookupResult.Status.BACKEND_FAILURE,
+                controller.tryEnterItem("dbfail").status(),
+                "Database failure should be reported as a backend failure.");
+    }
+
+    /**
+     * Verifies that asynchronously entered items are added in scan order and that a missing item
+     * completes its future with ItemNotFoundException.
+     */
+    @Test
+    public void testEnterItemAsync() {
+        controller.startSale();
+        CompletableFuture<SaleItemDTO> first = controller.enterItemAsync("1");
+        CompletableFuture<SaleItemDTO> missing = controller.enterItemAsync("notfound");
+        CompletableFuture<SaleItemDTO> second = controller.enterItemAsync("1");
+        assertEquals(1, first.join().quantity(), "First scan should be added first.");
+        assertEquals(2, second.join().quantity(), "Second scan should be added after the first.");
+        CompletionException thrown = Assertions.assertThrows(CompletionException.class,
+                missing::join, "Missing item should fail its future.");
+        assertTrue(thrown.getCause() instanceof ItemNotFoundException,
+                "Cause should be ItemNotFoundException.");
+        assertEquals(20.0, controller.endSale().asDouble(), 0.001,
+                "Total should include both scans of the found item.");
+    }
+
+    /**
+     * Verifies that entered items and completed sales are published as sale events.
+     */
+    @Test
+    public void testSaleEventsPublished() throws Exception {
+        List<SaleEvent.Type> received = new CopyOnWriteArrayList<>();
+        CountDownLatch completed = new CountDownLatch(1);
+        controller.getSaleEvents().subscribe(new Flow.Subscriber<SaleEvent>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(SaleEvent event) {
+                received.add(event.type());
+                if (event.type() == SaleEvent.Type.SALE_COMPLETED) {
+                    completed.countDown();
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        controller.startSale();
+        controller.enterItem("1");
+        controller.enterQuantity(2);
+        controller.enterPayment(Amount.of(100));
+        assertTrue(completed.await(5, TimeUnit.SECONDS), "Completed sale should be published.");
+        assertEquals(List.of(SaleEvent.Type.ITEM_ADDED, SaleEvent.Type.ITEM_UPDATED,
+                SaleEvent.Type.SALE_COMPLETED), received, "Events should arrive in order.");
+    }
 }
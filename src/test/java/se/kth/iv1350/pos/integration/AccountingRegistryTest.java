@@ -1,23 +1,37 @@
 package se.kth.iv1350.pos.integration;
 
+import java.nio.file.Path;
+import java.util.List;
+
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
+import se.kth.iv1350.pos.model.Amount;
+import se.kth.iv1350.pos.model.PaymentDTO;
+import se.kth.iv1350.pos.model.SaleDTO;
+import se.kth.iv1350.pos.model.SaleItemDTO;
+import se.kth.iv1350.pos.model.VatRateTotal;
+
 /**
  * Unit tests for the {@link AccountingRegistry} class.
  */
 public class AccountingRegistryTest {
+    @TempDir
+    Path ledgerDirectory;
     private AccountingRegistry accountingRegistry;
 
     /**
-     * Sets up a new AccountingRegistry instance before each test.
+     * Sets up a new AccountingRegistry instance with a ledger in a temporary directory before each
+     * test.
      */
     @BeforeEach
     public void setUp() {
-        accountingRegistry = AccountingRegistry.getInstance();
+        accountingRegistry = new AccountingRegistry(ledgerDirectory);
     }
 
     /**
@@ -35,4 +49,69 @@ public class AccountingRegistryTest {
     public void testConstructor() {
         assertNotNull(accountingRegistry, "AccountingRegistry should be created.");
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that a sale is booked as cash received against net revenue and VAT per rate.
+     */
+    @Test
+    public void testJournalEntryForSale() {
+        ItemDTO phone = new ItemDTO("4", "Phone", "Smartphone", 40, 0.25);
+        ItemDTO egg = new ItemDTO("3", "Egg", "Free-range eggs", 30, 0.12);
+        SaleDTO unnumbered = new SaleDTO(List.of(
+                new SaleItemDTO(phone, 1, Amount.of(50), Amount.of(10)),
+                new SaleItemDTO(egg, 2, Amount.of(67.2), Amount.of(7.2))),
+                Amount.of(117.2), Amount.of(17.2));
+        SaleDTO sale = new SaleDTO(42, unnumbered.items(), unnumbered.total(),
+                unnumbered.totalVat(), unnumbered.vatBreakdown());
+        Ledger.Entry entry = AccountingRegistry.journalEntryFor(sale, 0);
+        assertEquals(List.of(new Ledger.Posting(AccountingRegistry.CASH_ACCOUNT, 11720),
+                new Ledger.Posting(AccountingRegistry.SALES_ACCOUNT, -10000),
+                new Ledger.Posting(AccountingRegistry.OUTPUT_VAT_25_ACCOUNT, -1000),
+                new Ledger.Posting(AccountingRegistry.OUTPUT_VAT_12_ACCOUNT, -720)),
+                entry.postings(), "Sale should be booked per account.");
+        assertEquals(42, entry.reference(), "The sale ID should be the reference.");
+    }
+
+    /**
+     * Tests that a sale paid by card and cash books each tender on its own account, and the cash
+     * rounding as income.
+     */
+    @Test
+    public void testJournalEntryForSplitPayment() {
+        ItemDTO egg = new ItemDTO("3", "Egg", "Free-range eggs", 30, 0.12);
+        SaleDTO sale = new SaleDTO(43, List.of(
+                new SaleItemDTO(egg, 1, Amount.of(33.6), Amount.of(3.6))),
+                Amount.of(33.6), Amount.of(3.6), List.of(new VatRateTotal(1200, Amount.of(30),
+                        Amount.of(3.6))),
+                List.of(new PaymentDTO(CardTender.METHOD, Amount.of(20), "A1"),
+                        new PaymentDTO(PaymentDTO.CASH, Amount.of(14), null)));
+        Ledger.Entry entry = AccountingRegistry.journalEntryFor(sale, 0);
+        assertEquals(List.of(new Ledger.Posting(AccountingRegistry.TENDER_RECEIVABLE_ACCOUNT, 2000),
+                new Ledger.Posting(AccountingRegistry.CASH_ACCOUNT, 1400),
+                new Ledger.Posting(AccountingRegistry.SALES_ACCOUNT, -3000),
+                new Ledger.Posting(AccountingRegistry.OUTPUT_VAT_12_ACCOUNT, -360),
+                new Ledger.Posting(AccountingRegistry.ROUNDING_ACCOUNT, -40)),
+                entry.postings(), "Each tender and the rounding should be booked.");
+    }
+
+    /**
+     * Tests that a sale paid only by card is remembered as posted when the ledger is reopened, so
+     * a retried update is not booked twice.
+     */
+    @Test
+    public void testCardSaleNotPostedTwiceAfterReopen() throws Exception {
+        ItemDTO egg = new ItemDTO("3", "Egg", "Free-range eggs", 30, 0.12);
+        SaleDTO sale = new SaleDTO(44, List.of(
+                new SaleItemDTO(egg, 1, Amount.of(33.6), Amount.of(3.6))),
+                Amount.of(33.6), Amount.of(3.6), List.of(new VatRateTotal(1200, Amount.of(30),
+                        Amount.of(3.6))),
+                List.of(new PaymentDTO(CardTender.METHOD, Amount.of(33.6), "A1")));
+        accountingRegistry.updateAccounting(sale);
+        accountingRegistry.getLedger().close();
+        accountingRegistry = new AccountingRegistry(ledgerDirectory);
+        accountingRegistry.updateAccounting(sale);
+        assertEquals(3360,
+                accountingRegistry.getBalance(AccountingRegistry.TENDER_RECEIVABLE_ACCOUNT),
+                "The retried sale should not be booked again.");
+    }
+}
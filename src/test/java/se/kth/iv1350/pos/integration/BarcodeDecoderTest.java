@@ -0,0 +1,84 @@
+package se.kth.iv1350.pos.integration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the {@link BarcodeDecoder} class. Covers check digits of all GTIN lengths,
+ * variable-measure barcodes and item IDs.
+ */
+public class BarcodeDecoderTest {
+
+    /**
+     * Tests that valid barcodes of all lengths are decoded to their digits.
+     */
+    @Test
+    public void testDecodeValid() {
+        assertEquals(96385074L, BarcodeDecoder.decode("96385074"), "GTIN-8");
+        assertEquals(36000291452L, BarcodeDecoder.decode("036000291452"), "GTIN-12");
+        assertEquals(7310865004703L, BarcodeDecoder.decode("7310865004703"), "GTIN-13");
+        assertEquals(17310865004700L, BarcodeDecoder.decode("17310865004700"), "GTIN-14");
+        assertEquals(BarcodeDecoder.decode("7310865004703"),
+                BarcodeDecoder.decode("07310865004703"), "Leading zeros should not matter.");
+    }
+
+    /**
+     * Tests that a wrong check digit and swapped digits are rejected as misreads.
+     */
+    @Test
+    public void testDecodeMisread() {
+        assertEquals(BarcodeDecoder.INVALID, BarcodeDecoder.decode("7310865004704"),
+                "A wrong check digit is a misread.");
+        assertEquals(BarcodeDecoder.INVALID, BarcodeDecoder.decode("7310856004703"),
+                "Swapped digits are a misread.");
+        assertEquals(BarcodeDecoder.INVALID, BarcodeDecoder.decode("96385075"),
+                "A wrong GTIN-8 check digit is a misread.");
+    }
+
+    /**
+     * Tests that input that is not a barcode is told apart from misreads.
+     */
+    @Test
+    public void testDecodeNotABarcode() {
+        assertEquals(BarcodeDecoder.NOT_A_BARCODE, BarcodeDecoder.decode("1"), "Too short.");
+        assertEquals(BarcodeDecoder.NOT_A_BARCODE, BarcodeDecoder.decode("dbfail"), "Letters.");
+        assertEquals(BarcodeDecoder.NOT_A_BARCODE, BarcodeDecoder.decode("731086500470x"),
+                "A letter in a barcode.");
+        assertEquals(BarcodeDecoder.NOT_A_BARCODE, BarcodeDecoder.decode("12345678901"),
+                "Eleven digits.");
+    }
+
+    /**
+     * Tests that the weight or price of variable-measure barcodes is extracted, and that all
+     * packages map to the base SKU.
+     */
+    @Test
+    public void testVariableMeasure() {
+        long ham = BarcodeDecoder.decode("2500101004528");
+        assertTrue(BarcodeDecoder.isVariableMeasure(ham), "Prefix 25 is variable measure.");
+        assertTrue(BarcodeDecoder.isEmbeddedWeight(ham), "Prefix 25 embeds a weight.");
+        assertEquals(452, BarcodeDecoder.embeddedValue(ham), "452 grams.");
+        assertEquals("2500101000001", BarcodeDecoder.toItemId(BarcodeDecoder.baseSku(ham)),
+                "The base SKU should have a zero value and a valid check digit.");
+        long cheese = BarcodeDecoder.decode("2000102049950");
+        assertFalse(BarcodeDecoder.isEmbeddedWeight(cheese), "Prefix 20 embeds a price.");
+        assertEquals(4995, BarcodeDecoder.embeddedValue(cheese), "49.95 SEK.");
+        long milk = BarcodeDecoder.decode("7310865004703");
+        assertFalse(BarcodeDecoder.isVariableMeasure(milk), "Prefix 73 is a fixed item.");
+        assertEquals(milk, BarcodeDecoder.baseSku(milk), "A fixed item is its own SKU.");
+    }
+
+    /**
+     * Tests that item IDs are formatted with 13 digits, or 14 with a packaging indicator.
+     */
+    @Test
+    public void testToItemId() {
+        assertEquals("0036000291452", BarcodeDecoder.toItemId(36000291452L), "Padded GTIN-12.");
+        assertEquals("0000096385074", BarcodeDecoder.toItemId(96385074L), "Padded GTIN-8.");
+        assertEquals("17310865004700", BarcodeDecoder.toItemId(17310865004700L), "GTIN-14.");
+        assertEquals(3, BarcodeDecoder.checkDigit(731086500470L), "Check digit of the milk.");
+    }
+}
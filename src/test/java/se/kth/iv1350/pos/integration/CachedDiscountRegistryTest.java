@@ -0,0 +1,160 @@
+package se.kth.iv1350.pos.integration;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the {@link CachedDiscountRegistry} class. Covers prefetching, caching, expiry
+ * and failed lookups.
+ */
+public class CachedDiscountRegistryTest {
+    private final AtomicInteger databaseLookups = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong();
+    private CountDownLatch databaseReply;
+    private CachedDiscountRegistry cache;
+
+    /**
+     * Sets up a cache in front of a database that waits for the test before it replies.
+     */
+    @BeforeEach
+    public void setUp() {
+        databaseReply = new CountDownLatch(0);
+        DiscountRegistry database = customerId -> {
+            databaseLookups.incrementAndGet();
+            try {
+                databaseReply.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if ("dbfail".equals(customerId)) {
+                throw new DiscountDatabaseException(customerId);
+            }
+            return customerId.length();
+        };
+        cache = new CachedDiscountRegistry(database, Duration.ofSeconds(60),
+                Duration.ofMillis(100), 2,
+                Executors.newVirtualThreadPerTaskExecutor(), now::get);
+    }
+
+    /**
+     * Tests that a prefetch does not wait for the database, and that lookups during and after the
+     * prefetch are served by it.
+     */
+    @Test
+    public void testPrefetch() throws DiscountDatabaseException {
+        databaseReply = new CountDownLatch(1);
+        CompletableFuture<Integer> prefetched = cache.prefetch("abc");
+        assertFalse(prefetched.isDone(), "The prefetch should not wait for the database.");
+        databaseReply.countDown();
+        assertEquals(3, cache.getCustomerDiscount("abc"), "The prefetched discount is used.");
+        assertEquals(3, cache.getCustomerDiscount("abc"), "The cached discount is used.");
+        assertEquals(1, databaseLookups.get(), "The database should be asked once.");
+        assertEquals(2, cache.getHitCount(), "Both lookups should be hits.");
+        assertEquals(1, cache.getMissCount(), "Only the prefetch should be a miss.");
+    }
+
+    /**
+     * Tests that a discount is looked up again when it has expired.
+     */
+    @Test
+    public void testExpiry() throws DiscountDatabaseException {
+        cache.getCustomerDiscount("abc");
+        now.addAndGet(Duration.ofSeconds(59).toNanos());
+        cache.getCustomerDiscount("abc");
+        assertEquals(1, databaseLookups.get(), "The discount should still be cached.");
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        cache.getCustomerDiscount("abc");
+        assertEquals(2, databaseLookups.get(), "The expired discount should be looked up.");
+    }
+
+    /**
+     * Tests that a failed lookup is reported and not cached.
+     */
+    @Test
+    public void testFailureNotCached() {
+        assertThrows(DiscountDatabaseException.class, () -> cache.getCustomerDiscount("dbfail"));
+        assertThrows(DiscountDatabaseException.class, () -> cache.getCustomerDiscount("dbfail"));
+        assertEquals(2, databaseLookups.get(), "The failed lookup should be retried.");
+    }
+
+    /**
+     * Tests that the cache keeps no more customers than its capacity.
+     */
+    @Test
+    public void testCapacity() throws DiscountDatabaseException {
+        cache.getCustomerDiscount("a");
+        cache.getCustomerDiscount("bb");
+        cache.getCustomerDiscount("ccc");
+        cache.getCustomerDiscount("a");
+        cache.getCustomerDiscount("bb");
+        cache.getCustomerDiscount("ccc");
+        assertTrue(databaseLookups.get() > 3, "A customer should have been evicted.");
+    }
+
+    /**
+     * Tests that lookups in flight are not evicted, and that the customers looked up first are
+     * evicted first.
+     */
+    @Test
+    public void testEvictsOldestAndKeepsLookupsInFlight() throws Exception {
+        databaseReply = new CountDownLatch(1);
+        CompletableFuture<Integer> first = cache.prefetch("a");
+        CompletableFuture<Integer> second = cache.prefetch("bb");
+        CompletableFuture<Integer> third = cache.prefetch("ccc");
+        databaseReply.countDown();
+        CompletableFuture.allOf(first, second, third).get();
+        assertEquals(1, cache.getCustomerDiscount("a"), "The lookup should still be cached.");
+        assertEquals(3, cache.getCustomerDiscount("ccc"), "The lookup should still be cached.");
+        assertEquals(3, databaseLookups.get(), "No lookup in flight should have been evicted.");
+        cache.getCustomerDiscount("dddd");
+        cache.getCustomerDiscount("ccc");
+        assertEquals(4, databaseLookups.get(), "The newest customer should be kept.");
+        cache.getCustomerDiscount("a");
+        assertEquals(5, databaseLookups.get(), "The oldest customer should have been evicted.");
+    }
+
+    /**
+     * Tests that a batch prefetch looks up every customer once and completes when all lookups
+     * have finished.
+     */
+    @Test
+    public void testPrefetchAll() throws Exception {
+        databaseReply = new CountDownLatch(1);
+        CompletableFuture<Void> prefetched = cache.prefetchAll(List.of("a", "bb", "a"));
+        assertFalse(prefetched.isDone(), "The prefetch should not wait for the database.");
+        databaseReply.countDown();
+        prefetched.get();
+        assertEquals(2, databaseLookups.get(), "Each customer should be looked up once.");
+        assertEquals(2, cache.getCustomerDiscount("bb"), "The prefetched discount is used.");
+    }
+
+    /**
+     * Tests that a lookup in a hanging database times out as a database failure, and that the
+     * lookup is still used once the database replies.
+     */
+    @Test
+    public void testLookupTimeout() throws DiscountDatabaseException {
+        databaseReply = new CountDownLatch(1);
+        DiscountDatabaseException thrown = assertThrows(DiscountDatabaseException.class,
+                () -> cache.getCustomerDiscount("abc"));
+        assertTrue(thrown.getCause() instanceof TimeoutException,
+                "The timeout should be the cause.");
+        databaseReply.countDown();
+        assertEquals(3, cache.getCustomerDiscount("abc"), "The late reply should be used.");
+        assertEquals(1, databaseLookups.get(), "The database should be asked once.");
+    }
+}
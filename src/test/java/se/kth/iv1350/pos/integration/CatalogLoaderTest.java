@@ -0,0 +1,93 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for the {@link CatalogLoader} class. Covers parsing, chunking at line boundaries,
+ * duplicate rows, and malformed input.
+ */
+public class CatalogLoaderTest {
+    @TempDir
+    Path tempDir;
+
+    private record Row(String name, String description, double price, double vatRate,
+            int quantity) {}
+
+    private static Row row(String itemID, String name, String description, double price,
+            double vatRate, int quantity) {
+        return new Row(name, description, price, vatRate, quantity);
+    }
+
+    private Path writeCatalog(String content) throws IOException {
+        Path file = tempDir.resolve("catalog.csv");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    /**
+     * Verifies that all fields of a row are parsed and that the header and comments are skipped.
+     */
+    @Test
+    public void testLoadParsesRows() throws Exception {
+        Path file = writeCatalog("id,name,description,price,vatRate,quantity\n"
+                + "# comment\n" + "1,Medicine,Pain relief medicine,10,0.0,4\n"
+                + "2,Newspaper,Aftonbladet,20.50,0.06,6\r\n" + "\n");
+        Map<String, Row> catalog = CatalogLoader.load(file, CatalogLoaderTest::row);
+        assertEquals(2, catalog.size(), "Header, comment and empty lines should be skipped.");
+        Row newspaper = catalog.get("2");
+        assertNotNull(newspaper, "Row with CRLF line ending should be loaded.");
+        assertEquals("Aftonbladet", newspaper.description(), "Description should match.");
+        assertEquals(20.50, newspaper.price(), "Price should match.");
+        assertEquals(0.06, newspaper.vatRate(), "VAT rate should match.");
+        assertEquals(6, newspaper.quantity(), "Quantity should match.");
+    }
+
+    /**
+     * Verifies that rows are parsed correctly when the file is split into many small chunks.
+     */
+    @Test
+    public void testLoadWithSmallChunks() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append(i).append(",Item ").append(i).append(",Desc,").append(i)
+                    .append(".25,0.12,").append(i).append('\n');
+        }
+        Map<String, Row> catalog =
+                CatalogLoader.load(writeCatalog(content.toString()), CatalogLoaderTest::row, 17);
+        assertEquals(500, catalog.size(), "All rows should be loaded.");
+        assertEquals(321.25, catalog.get("321").price(), "Price should match.");
+        assertEquals("Item 499", catalog.get("499").name(), "Last row should be loaded.");
+    }
+
+    /**
+     * Verifies that the last row wins when an item ID occurs more than once.
+     */
+    @Test
+    public void testLoadDuplicateIdLastRowWins() throws Exception {
+        Path file = writeCatalog("1,Old,Desc,10,0.0,1\n" + "2,Other,Desc,10,0.0,1\n"
+                + "1,New,Desc,12,0.0,1\n");
+        Map<String, Row> catalog = CatalogLoader.load(file, CatalogLoaderTest::row, 8);
+        assertEquals("New", catalog.get("1").name(), "The last row for an ID should win.");
+    }
+
+    /**
+     * Verifies that a malformed row makes the load fail.
+     */
+    @Test
+    public void testLoadMalformedRowThrows() throws Exception {
+        Path file = writeCatalog("1,Medicine,Pain relief medicine,ten,0.0,4\n");
+        IOException thrown = assertThrows(IOException.class,
+                () -> CatalogLoader.load(file, CatalogLoaderTest::row),
+                "A non-numeric price should be rejected.");
+        assertNotNull(thrown);
+    }
+}
@@ -0,0 +1,57 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link CatalogSnapshot} class. Covers versioning, isolation between versions,
+ * and merging the overlay into a new base.
+ */
+public class CatalogSnapshotTest {
+    private CatalogSnapshot<String> snapshot;
+
+    /**
+     * Sets up a snapshot with two entries before each test.
+     */
+    @BeforeEach
+    public void setUp() {
+        Map<String, String> entries = new HashMap<>();
+        entries.put("1", "Medicine");
+        entries.put("2", "Newspaper");
+        snapshot = CatalogSnapshot.of(1, entries);
+    }
+
+    /**
+     * Verifies that changes create a new version and leave the old snapshot untouched.
+     */
+    @Test
+    public void testWithChangesKeepsOldVersion() {
+        CatalogSnapshot<String> changed = snapshot.withChanges(Map.of("1", "Aspirin", "3", "Egg"));
+        assertEquals(2, changed.version(), "Version should be increased.");
+        assertEquals("Aspirin", changed.get("1"), "Changed entry should be visible.");
+        assertEquals("Egg", changed.get("3"), "Added entry should be visible.");
+        assertEquals(3, changed.size(), "Size should count added entries once.");
+        assertEquals("Medicine", snapshot.get("1"), "Old snapshot should keep its entry.");
+        assertNull(snapshot.get("3"), "Old snapshot should not see added entries.");
+    }
+
+    /**
+     * Verifies that all entries survive when a large overlay is merged into a new base.
+     */
+    @Test
+    public void testManyChangesAreMerged() {
+        CatalogSnapshot<String> current = snapshot;
+        for (int i = 0; i < 200; i++) {
+            current = current.withChanges(Map.of("item" + i, "Item " + i));
+        }
+        assertEquals(201, current.version(), "Every batch should create one version.");
+        assertEquals(202, current.size(), "All entries should be present.");
+        assertEquals("Item 0", current.get("item0"), "Early change should survive merging.");
+        assertEquals("Newspaper", current.get("2"), "Base entry should survive merging.");
+    }
+}
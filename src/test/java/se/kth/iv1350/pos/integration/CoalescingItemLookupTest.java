@@ -0,0 +1,107 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link CoalescingItemLookup} class. Covers coalescing of concurrent lookups
+ * and the reported metrics.
+ */
+public class CoalescingItemLookupTest {
+    private static final ItemDTO ITEM = new ItemDTO("1", "Medicine", "Pain relief", 10, 0.0);
+    private CountDownLatch release;
+    private AtomicInteger backendCalls;
+    private CoalescingItemLookup lookup;
+    private ExecutorService executor;
+
+    /**
+     * Sets up a lookup in front of a backend that blocks until released.
+     */
+    @BeforeEach
+    public void setUp() {
+        release = new CountDownLatch(1);
+        backendCalls = new AtomicInteger();
+        lookup = new CoalescingItemLookup(itemID -> {
+            backendCalls.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ItemLookupResult.found(ITEM);
+        });
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Cleans up after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        executor.close();
+    }
+
+    /**
+     * Verifies that concurrent lookups of one ID share a single backend call.
+     */
+    @Test
+    public void testConcurrentLookupsAreCoalesced() throws Exception {
+        List<CompletableFuture<ItemLookupResult>> results = new ArrayList<>();
+        results.add(lookup.lookupItemAsync("1", executor));
+        for (int i = 0; i < 9; i++) {
+            results.add(CompletableFuture.supplyAsync(() -> lookup.lookupItem("1"), executor));
+        }
+        // Wait until the callers have joined the lookup in flight, not only asked for it
+        while (lookup.getCoalescedLookupCount() < 9) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        for (CompletableFuture<ItemLookupResult> result : results) {
+            assertEquals(ITEM, result.get().item(), "Every caller should get the item.");
+        }
+        assertEquals(1, backendCalls.get(), "Backend should be called once.");
+        assertEquals(9, lookup.getCoalescedLookupCount(), "Nine lookups should be coalesced.");
+        assertEquals(0.9, lookup.getCoalescingRatio(), 0.001, "Ratio should be nine in ten.");
+    }
+
+    /**
+     * Verifies that a new lookup is made once the previous one has finished.
+     */
+    @Test
+    public void testSequentialLookupsAreNotCoalesced() {
+        release.countDown();
+        lookup.lookupItem("1");
+        lookup.lookupItem("1");
+        assertEquals(2, backendCalls.get(), "Finished lookups should not be reused.");
+        assertTrue(lookup.getCoalescingRatio() == 0, "Nothing should be coalesced.");
+    }
+
+    /**
+     * Verifies that a lookup rejected by the executor fails at once and does not block later
+     * lookups of the same item.
+     */
+    @Test
+    public void testRejectedLookupNotLeftInFlight() {
+        release.countDown();
+        CompletableFuture<ItemLookupResult> rejected = lookup.lookupItemAsync("1", task -> {
+            throw new RejectedExecutionException("Shut down.");
+        });
+        assertEquals(ItemLookupResult.backendFailure().status(), rejected.join().status(),
+                "The rejected lookup should be a backend failure.");
+        assertEquals(ItemLookupResult.found(ITEM).status(), lookup.lookupItem("1").status(),
+                "A later lookup should reach the backend.");
+    }
+}
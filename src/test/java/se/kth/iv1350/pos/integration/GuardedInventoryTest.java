@@ -0,0 +1,189 @@
+package se.kth.iv1350.pos.integration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import se.kth.iv1350.pos.model.Amount;
+import se.kth.iv1350.pos.model.SaleDTO;
+
+/**
+ * Unit tests for the {@link GuardedInventory} class, using a simulated backend and clock.
+ */
+public class GuardedInventoryTest {
+    private static final ItemDTO ITEM = new ItemDTO("1", "Medicine", "Pain relief", 10, 0.0);
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(5);
+    private AtomicLong clock;
+    private AtomicInteger backendCalls;
+    private List<SaleDTO> written;
+    private List<Runnable> drains;
+    private boolean backendDown;
+    private GuardedInventory inventory;
+
+    /**
+     * Sets up a guarded inventory in front of a backend that fails while it is down.
+     */
+    @BeforeEach
+    public void setUp() {
+        clock = new AtomicLong();
+        backendCalls = new AtomicInteger();
+        written = new ArrayList<>();
+        drains = new ArrayList<>();
+        backendDown = false;
+        ItemLookup backend = itemID -> {
+            backendCalls.incrementAndGet();
+            return backendDown ? ItemLookupResult.backendFailure() : ItemLookupResult.found(ITEM);
+        };
+        ItemLookup replica = itemID -> "1".equals(itemID)
+                ? ItemLookupResult.found(ITEM) : ItemLookupResult.notFound();
+        inventory = new GuardedInventory(backend, () -> replica, sale -> {
+            if (backendDown) {
+                throw new IllegalStateException("Backend down");
+            }
+            written.add(sale);
+        }, clock::get, 3, OPEN_DURATION, Duration.ofSeconds(30), 4, drains::add);
+    }
+
+    /**
+     * Cleans up after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        inventory = null;
+    }
+
+    /**
+     * Tests that the circuit opens after the failure threshold and that lookups are then served
+     * from the replica without calling the backend.
+     */
+    @Test
+    public void testOpensAfterRepeatedFailures() {
+        backendDown = true;
+        for (int i = 0; i < 3; i++) {
+            assertSame(ItemLookupResult.backendFailure(), inventory.lookupItem("1"),
+                    "Failures should be returned while the circuit is closed.");
+        }
+        assertEquals(GuardedInventory.State.OPEN, inventory.getState(), "Circuit should open.");
+        assertEquals(ITEM, inventory.lookupItem("1").item(), "Replica should answer lookups.");
+        assertSame(ItemLookupResult.notFound(), inventory.lookupItem("9"),
+                "Replica should report unknown items.");
+        assertEquals(3, backendCalls.get(), "Backend should not be called while open.");
+        assertEquals(2, inventory.getReplicaReadCount(), "Two lookups should use the replica.");
+    }
+
+    /**
+     * Tests that a success resets the failure count, so only failures in a row open the circuit.
+     */
+    @Test
+    public void testSuccessResetsFailureCount() {
+        backendDown = true;
+        inventory.lookupItem("1");
+        inventory.lookupItem("1");
+        backendDown = false;
+        inventory.lookupItem("1");
+        backendDown = true;
+        inventory.lookupItem("1");
+        inventory.lookupItem("1");
+        assertEquals(GuardedInventory.State.CLOSED, inventory.getState(),
+                "Circuit should stay closed.");
+    }
+
+    /**
+     * Tests that updates are queued while the circuit is open and replayed in order once a probe
+     * has found the backend healthy again.
+     */
+    @Test
+    public void testQueuedWritesReplayedOnRecovery() {
+        SaleDTO first = new SaleDTO(List.of(), Amount.of(1), Amount.of(0));
+        SaleDTO second = new SaleDTO(List.of(), Amount.of(2), Amount.of(0));
+        backendDown = true;
+        for (int i = 0; i < 3; i++) {
+            inventory.lookupItem("1");
+        }
+        inventory.updateInventory(first);
+        inventory.updateInventory(second);
+        assertEquals(2, inventory.getPendingWriteCount(), "Updates should be queued.");
+        backendDown = false;
+        clock.addAndGet(OPEN_DURATION.toNanos());
+        assertEquals(ITEM, inventory.lookupItem("1").item(), "Probe should reach the backend.");
+        assertEquals(GuardedInventory.State.CLOSED, inventory.getState(), "Circuit should close.");
+        assertEquals(List.of(), written, "The lookup should not wait for the replay.");
+        runDrains();
+        assertEquals(List.of(first, second), written, "Updates should be replayed in order.");
+        assertEquals(0, inventory.getPendingWriteCount(), "Queue should be empty.");
+    }
+
+    /**
+     * Tests that an update that failed while the circuit stayed closed is sent after the next
+     * successful lookup, and that only one replay is scheduled at a time.
+     */
+    @Test
+    public void testFailedWriteFlushedWhileClosed() {
+        SaleDTO sale = new SaleDTO(List.of(), Amount.of(1), Amount.of(0));
+        backendDown = true;
+        inventory.updateInventory(sale);
+        assertEquals(GuardedInventory.State.CLOSED, inventory.getState(), "One failure is fine.");
+        assertEquals(1, inventory.getPendingWriteCount(), "The update should be queued.");
+        backendDown = false;
+        inventory.lookupItem("1");
+        inventory.lookupItem("1");
+        assertEquals(1, drains.size(), "One replay should be scheduled.");
+        runDrains();
+        assertEquals(List.of(sale), written, "The replay should send the update.");
+        assertEquals(0, inventory.getPendingWriteCount(), "Queue should be empty.");
+    }
+
+    /**
+     * Tests that an update is refused when the queue is full, and that the queued updates are
+     * kept.
+     */
+    @Test
+    public void testQueueIsBounded() {
+        List<SaleDTO> sales = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            sales.add(new SaleDTO(List.of(), Amount.of(i), Amount.of(0)));
+        }
+        backendDown = true;
+        for (int i = 0; i < 3; i++) {
+            inventory.lookupItem("1");
+        }
+        sales.subList(0, 4).forEach(inventory::updateInventory);
+        assertThrows(IllegalStateException.class, () -> inventory.updateInventory(sales.get(4)));
+        assertEquals(4, inventory.getPendingWriteCount(), "The queue should hold four updates.");
+        backendDown = false;
+        clock.addAndGet(OPEN_DURATION.toNanos());
+        inventory.updateInventory(sales.get(4));
+        assertEquals(sales, written, "All updates should be sent in order.");
+    }
+
+    private void runDrains() {
+        List<Runnable> scheduled = List.copyOf(drains);
+        drains.clear();
+        scheduled.forEach(Runnable::run);
+    }
+
+    /**
+     * Tests that a failed probe opens the circuit again for a new period.
+     */
+    @Test
+    public void testFailedProbeReopens() {
+        backendDown = true;
+        for (int i = 0; i < 3; i++) {
+            inventory.lookupItem("1");
+        }
+        clock.addAndGet(OPEN_DURATION.toNanos());
+        inventory.lookupItem("1");
+        assertEquals(GuardedInventory.State.OPEN, inventory.getState(), "Circuit should reopen.");
+        inventory.lookupItem("1");
+        assertEquals(4, backendCalls.get(), "Only the probe should reach the backend.");
+    }
+}
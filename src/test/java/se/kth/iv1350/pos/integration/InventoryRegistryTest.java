@@ -1,9 +1,13 @@
 package se.kth.iv1350.pos.integration;
 
+import java.util.List;
+
 import org.junit.jupiter.api.AfterEach;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -14,11 +18,12 @@ public class InventoryRegistryTest {
     private InventoryRegistry inventoryRegistry;
 
     /**
-     * Sets up a new InventoryRegistry instance before each test.
+     * Sets up a new InventoryRegistry instance before each test, so that changes made by a test
+     * do not leak into the shared singleton.
      */
     @BeforeEach
     public void setUp() {
-        inventoryRegistry = InventoryRegistry.getInstance();
+        inventoryRegistry = new InventoryRegistry();
     }
 
     /**
@@ -62,4 +67,62 @@ public class InventoryRegistryTest {
         }, "Should throw InventoryDatabaseException for 'dbfail' item ID");
         assertNotNull(thrown);
     }
+
+    /**
+     * Tests that published item updates become visible in a new catalog version.
+     */
+    @Test
+    public void testPublishItemUpdates() throws Exception {
+        long versionBefore = inventoryRegistry.getCatalogVersion();
+        long version = inventoryRegistry.publishItemUpdates(
+                List.of(new ItemDTO("published", "Milk", "Organic milk", 15, 0.12)));
+        assertTrue(version > versionBefore, "Catalog version should increase.");
+        assertEquals(15, inventoryRegistry.findItemById("published").price(),
+                "Published price should be returned.");
+    }
+
+    /**
+     * Tests that quantity updates racing with item updates are all kept.
+     */
+    @Test
+    public void testConcurrentWritesAreNotLost() throws Exception {
+        int writers = 4;
+        int updatesPerWriter = 200;
+        Thread[] threads = new Thread[writers];
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            threads[w] = Thread.ofVirtual().start(() -> {
+                for (int i = 0; i < updatesPerWriter; i++) {
+                    inventoryRegistry.publishItemUpdates(List.of(new ItemDTO(
+                            "w" + writer + "-" + i, "Item", "Added item", 1, 0.25)));
+                    inventoryRegistry.updateQuantity("1", i);
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int w = 0; w < writers; w++) {
+            for (int i = 0; i < updatesPerWriter; i++) {
+                assertTrue(inventoryRegistry.lookupItem("w" + w + "-" + i).isFound(),
+                        "Every published item should be found.");
+            }
+        }
+        assertEquals(1 + writers * updatesPerWriter * 2L, inventoryRegistry.getCatalogVersion(),
+                "Every write should create exactly one version.");
+    }
+
+    /**
+     * Tests that lookupItem reports every outcome with a result instead of an exception.
+     */
+    @Test
+    public void testLookupItem() {
+        ItemLookupResult found = inventoryRegistry.lookupItem("2");
+        assertTrue(found.isFound(), "Existing item should be found.");
+        assertEquals("Newspaper", found.item().name(), "Item name should match.");
+        assertSame(ItemLookupResult.notFound(), inventoryRegistry.lookupItem("notfound"),
+                "A miss should return the shared not-found result.");
+        assertSame(ItemLookupResult.backendFailure(), inventoryRegistry.lookupItem("dbfail"),
+                "A database failure should return the shared failure result.");
+    }
 }
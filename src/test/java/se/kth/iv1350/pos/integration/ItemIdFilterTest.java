@@ -0,0 +1,48 @@
+package se.kth.iv1350.pos.integration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link ItemIdFilter} class. Covers added IDs, false positive rate, and
+ * overload detection.
+ */
+public class ItemIdFilterTest {
+
+    /**
+     * Verifies that every added ID passes the filter and most unknown IDs are rejected.
+     */
+    @Test
+    public void testAddedIdsPassAndUnknownIdsAreRejected() {
+        ItemIdFilter filter = ItemIdFilter.forExpectedItems(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("item" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("item" + i), "Added ID should never be rejected.");
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("unknown" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "Only a small fraction of unknown IDs should pass.");
+        assertTrue(filter.estimatedFalsePositiveRate() < 0.02,
+                "Estimated false positive rate should be low.");
+    }
+
+    /**
+     * Verifies that the filter reports being overloaded when more IDs are added than expected.
+     */
+    @Test
+    public void testOverloaded() {
+        ItemIdFilter filter = ItemIdFilter.forExpectedItems(2);
+        filter.add("1");
+        filter.add("2");
+        assertFalse(filter.isOverloaded(), "Filter should not be overloaded at capacity.");
+        filter.add("3");
+        assertTrue(filter.isOverloaded(), "Filter should be overloaded above capacity.");
+    }
+}
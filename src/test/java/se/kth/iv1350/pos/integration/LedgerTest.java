@@ -0,0 +1,156 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for the {@link Ledger} class. Covers posting, balances, statements, recovery after
+ * reopening and segment rollover.
+ */
+public class LedgerTest {
+    private static final int CASH = 1910;
+    private static final int SALES = 3001;
+    private static final int VAT = 2611;
+    @TempDir
+    Path directory;
+    private Ledger ledger;
+
+    /**
+     * Opens a new ledger in a temporary directory before each test.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        ledger = Ledger.open(directory);
+    }
+
+    /**
+     * Closes the ledger after each test.
+     */
+    @AfterEach
+    public void tearDown() throws IOException {
+        ledger.close();
+    }
+
+    private static Ledger.Entry sale(long net, long vat) {
+        return new Ledger.Entry(1000, 0, List.of(new Ledger.Posting(CASH, net + vat),
+                new Ledger.Posting(SALES, -net), new Ledger.Posting(VAT, -vat)));
+    }
+
+    /**
+     * Tests that posted entries update the account balances.
+     */
+    @Test
+    public void testPostUpdatesBalances() throws IOException {
+        assertEquals(1, ledger.post(sale(1000, 250)), "First entry should have sequence 1.");
+        assertEquals(3, ledger.post(List.of(sale(400, 100), sale(200, 50))),
+                "Batch should end with sequence 3.");
+        assertEquals(2000, ledger.getBalance(CASH), "Cash should be debited.");
+        assertEquals(-1600, ledger.getBalance(SALES), "Sales should be credited.");
+        assertEquals(-400, ledger.getBalance(VAT), "VAT should be credited.");
+        assertEquals(0, ledger.getBalance(1234), "Unused accounts should have no balance.");
+    }
+
+    /**
+     * Tests that an entry that does not balance is rejected.
+     */
+    @Test
+    public void testUnbalancedEntryRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new Ledger.Entry(0, 0,
+                List.of(new Ledger.Posting(CASH, 100), new Ledger.Posting(SALES, -99))),
+                "Unbalanced entries should be rejected.");
+    }
+
+    /**
+     * Tests that a statement lists every posting to an account with running balances.
+     */
+    @Test
+    public void testStatement() throws IOException {
+        ledger.post(sale(1000, 250));
+        ledger.post(sale(400, 100));
+        List<Ledger.StatementLine> statement = ledger.statement(VAT);
+        assertEquals(2, statement.size(), "Statement should have two lines.");
+        assertEquals(-100, statement.get(1).amount(), "Second line amount should match.");
+        assertEquals(-350, statement.get(1).balance(), "Running balance should match.");
+        assertEquals(2, statement.get(1).sequence(), "Sequence should match.");
+    }
+
+    /**
+     * Tests that balances and sequence numbers are rebuilt when the ledger is reopened, and that
+     * a partly written record at the end is cut off.
+     */
+    @Test
+    public void testReopenRecovers() throws IOException {
+        ledger.post(sale(1000, 250));
+        ledger.post(sale(400, 100));
+        ledger.close();
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 60, 1, 2}));
+        }
+        ledger = Ledger.open(directory);
+        assertEquals(1750, ledger.getBalance(CASH), "Cash balance should be rebuilt.");
+        assertEquals(3, ledger.post(sale(100, 25)), "Sequence should continue.");
+        assertEquals(3, ledger.statement(CASH).size(), "Torn record should be cut off.");
+    }
+
+    /**
+     * Tests that new segments are started when a segment is full, and that reads and recovery
+     * cover all segments.
+     */
+    @Test
+    public void testSegmentRollover() throws IOException {
+        ledger.close();
+        ledger = Ledger.open(directory, 200);
+        for (int i = 0; i < 10; i++) {
+            ledger.post(sale(100, 25));
+        }
+        assertTrue(segments().size() > 1, "Ledger should have several segments.");
+        assertEquals(10, ledger.statement(SALES).size(), "Statement should cover all segments.");
+        ledger.close();
+        ledger = Ledger.open(directory, 200);
+        assertEquals(1250, ledger.getBalance(CASH), "Balances should cover all segments.");
+        assertEquals(10, ledger.getLastSequence(), "Last sequence should be rebuilt.");
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files.sorted().toList());
+        }
+    }
+
+    /**
+     * Tests that an interrupted post is not posted, and that the ledger can be posted to
+     * afterwards, although the interrupt closed the segment file.
+     */
+    @Test
+    public void testPostAfterInterrupt() throws IOException {
+        ledger.post(sale(1000, 250));
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(IOException.class, () -> ledger.post(sale(400, 100)),
+                    "An interrupted post should fail.");
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(2, ledger.post(sale(200, 50)), "The failed post should get no sequence.");
+        ledger.close();
+        ledger = Ledger.open(directory);
+        assertEquals(1500, ledger.getBalance(CASH), "Only completed posts should be recovered.");
+    }
+}
@@ -0,0 +1,51 @@
+package se.kth.iv1350.pos.integration;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import se.kth.iv1350.pos.model.Amount;
+import se.kth.iv1350.pos.model.PaymentDTO;
+
+/**
+ * Unit tests for the {@link LocalCardAuthorizer} and {@link CardTender} classes.
+ */
+public class LocalCardAuthorizerTest {
+    private LocalCardAuthorizer authorizer;
+
+    /**
+     * Creates an authorizer without latency and with a limit of 100 SEK before each test.
+     */
+    @BeforeEach
+    public void setUp() {
+        authorizer = new LocalCardAuthorizer(Duration.ZERO, Amount.of(100));
+    }
+
+    /**
+     * Tests that a card tender within the limit is authorized with a code made from the sale ID.
+     */
+    @Test
+    public void testAuthorized() {
+        PaymentDTO payment = new CardTender(authorizer, Amount.of(100)).authorize(36).join();
+        assertEquals(CardTender.METHOD, payment.method(), "Payment should be made by card.");
+        assertEquals(10000, payment.amount().toMinorUnits(), "The whole amount should be paid.");
+        assertEquals("A10", payment.reference(), "The code should be made from the sale ID.");
+    }
+
+    /**
+     * Tests that a card tender over the limit is declined.
+     */
+    @Test
+    public void testDeclinedOverLimit() {
+        CompletionException thrown = assertThrows(CompletionException.class,
+                () -> new CardTender(authorizer, Amount.of(100.01)).authorize(36).join());
+        assertTrue(thrown.getCause() instanceof CardDeclinedException,
+                "The authorization should be declined.");
+    }
+}
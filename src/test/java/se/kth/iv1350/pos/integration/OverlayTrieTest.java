@@ -0,0 +1,67 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link OverlayTrie} class. Covers adding, replacing, colliding hashes and
+ * isolation between versions.
+ */
+public class OverlayTrieTest {
+
+    /**
+     * Verifies that many entries can be added and found, and that every version keeps its own
+     * entries.
+     */
+    @Test
+    public void testAddManyEntries() {
+        OverlayTrie<Integer> trie = OverlayTrie.empty();
+        OverlayTrie<Integer> half = null;
+        for (int i = 0; i < 5000; i++) {
+            trie = trie.with("item" + i, i);
+            if (i == 2499) {
+                half = trie;
+            }
+        }
+        assertEquals(5000, trie.size(), "All entries should be counted.");
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, trie.get("item" + i), "Every entry should be found.");
+        }
+        assertEquals(2500, half.size(), "An older version should keep its size.");
+        assertNull(half.get("item2500"), "An older version should not see later entries.");
+        assertNull(trie.get("unknown"), "An unknown ID should not be found.");
+    }
+
+    /**
+     * Verifies that replacing an entry keeps the size and the old version.
+     */
+    @Test
+    public void testReplaceEntry() {
+        OverlayTrie<String> first = OverlayTrie.<String>empty().with("1", "Medicine");
+        OverlayTrie<String> second = first.with("1", "Aspirin");
+        assertEquals(1, second.size(), "Replacing should not change the size.");
+        assertEquals("Aspirin", second.get("1"), "The new entry should be returned.");
+        assertEquals("Medicine", first.get("1"), "The old version should keep its entry.");
+    }
+
+    /**
+     * Verifies that IDs with the same hash are kept apart.
+     */
+    @Test
+    public void testCollidingHashes() {
+        assertEquals("Aa".hashCode(), "BB".hashCode(), "The IDs should collide.");
+        OverlayTrie<String> trie = OverlayTrie.<String>empty().with("Aa", "first")
+                .with("BB", "second").with("Aa", "third");
+        assertEquals(2, trie.size(), "Both IDs should be counted.");
+        assertEquals("third", trie.get("Aa"), "The replaced entry should be returned.");
+        assertEquals("second", trie.get("BB"), "The colliding entry should be kept.");
+        Map<String, String> visited = new HashMap<>();
+        trie.forEach(visited::put);
+        assertEquals(Map.of("Aa", "third", "BB", "second"), visited,
+                "Every entry should be visited once.");
+    }
+}
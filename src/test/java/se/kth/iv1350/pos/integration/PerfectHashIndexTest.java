@@ -0,0 +1,61 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link PerfectHashIndex} class. Covers lookups of present and missing IDs,
+ * iteration, and small and empty indexes.
+ */
+public class PerfectHashIndexTest {
+
+    /**
+     * Verifies that every ID of a large index is found and missing IDs are not.
+     */
+    @Test
+    public void testLargeIndex() {
+        Map<String, Integer> entries = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            entries.put("item" + i, i);
+        }
+        PerfectHashIndex<Integer> index = PerfectHashIndex.build(entries);
+        assertEquals(50_000, index.size(), "Index should have one slot per ID.");
+        for (int i = 0; i < 50_000; i++) {
+            assertEquals(i, index.get("item" + i), "Every ID should map to its value.");
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertNull(index.get("missing" + i), "Missing IDs should not be found.");
+        }
+    }
+
+    /**
+     * Verifies that forEach visits every entry exactly once.
+     */
+    @Test
+    public void testForEach() {
+        Map<String, String> entries = Map.of("1", "Medicine", "2", "Newspaper", "3", "Egg");
+        PerfectHashIndex<String> index = PerfectHashIndex.build(entries);
+        Set<String> visited = new HashSet<>();
+        index.forEach((id, name) -> {
+            assertEquals(entries.get(id), name, "Value should match the ID.");
+            visited.add(id);
+        });
+        assertEquals(entries.keySet(), visited, "Every ID should be visited.");
+    }
+
+    /**
+     * Verifies that an empty index finds nothing.
+     */
+    @Test
+    public void testEmptyIndex() {
+        PerfectHashIndex<String> index = PerfectHashIndex.build(Map.of());
+        assertEquals(0, index.size(), "Empty index should have no slots.");
+        assertNull(index.get("1"), "Nothing should be found in an empty index.");
+    }
+}
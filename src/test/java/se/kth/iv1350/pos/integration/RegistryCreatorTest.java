@@ -1,22 +1,28 @@
 package se.kth.iv1350.pos.integration;
 
+import java.nio.file.Path;
+
 import org.junit.jupiter.api.AfterEach;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 /**
  * Unit tests for the {@link RegistryCreator} class.
  */
 public class RegistryCreatorTest {
+    @TempDir
+    Path ledgerDirectory;
     private RegistryCreator registryCreator;
 
     /**
-     * Sets up a new RegistryCreator instance before each test.
+     * Sets up a new RegistryCreator instance with a ledger in a temporary directory before each
+     * test.
      */
     @BeforeEach
     public void setUp() {
-        registryCreator = RegistryCreator.getInstance();
+        registryCreator = RegistryCreator.withLedgerDirectory(ledgerDirectory);
     }
 
     /**
@@ -0,0 +1,59 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the {@link SaleUpdates} class. Covers claiming, waiting for a running update and
+ * retrying a failed one.
+ */
+public class SaleUpdatesTest {
+    private SaleUpdates updates;
+
+    /**
+     * Sets up an instance that remembers sales for an hour before each test.
+     */
+    @BeforeEach
+    public void setUp() {
+        updates = new SaleUpdates(Duration.ofHours(1), 16);
+    }
+
+    /**
+     * Tests that a retry of a running update waits for it, and that a sale is only remembered as
+     * updated once its update succeeded.
+     */
+    @Test
+    public void testRetryWaitsForRunningUpdate() {
+        assertNull(updates.claim(7), "The first call should own the update.");
+        CompletableFuture<Void> running = updates.claim(7);
+        assertNotNull(running, "The retry should get the running update.");
+        assertFalse(running.isDone(), "The running update is not done.");
+        updates.finish(7, null);
+        assertTrue(running.isDone() && !running.isCompletedExceptionally(),
+                "The retry should see the update succeed.");
+        assertTrue(updates.claim(7).isDone(), "The sale should be remembered as updated.");
+    }
+
+    /**
+     * Tests that a retry of a running update that fails fails too, and that the sale can then be
+     * updated again.
+     */
+    @Test
+    public void testFailedUpdateNotRemembered() {
+        assertNull(updates.claim(7), "The first call should own the update.");
+        CompletableFuture<Void> running = updates.claim(7);
+        updates.finish(7, new IOException("Disk full."));
+        assertThrows(IllegalStateException.class, () -> SaleUpdates.await(running));
+        assertNull(updates.claim(7), "The next retry should own a new update.");
+    }
+}
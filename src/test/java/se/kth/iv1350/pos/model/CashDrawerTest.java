@@ -0,0 +1,111 @@
+package se.kth.iv1350.pos.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link CashDrawer} class.
+ */
+public class CashDrawerTest {
+    private static final int[] NO_LEVELS = new int[CashDrawer.DENOMINATIONS.length];
+    private CashDrawer drawer;
+
+    /**
+     * Sets up a drawer with the default float.
+     */
+    @BeforeEach
+    public void setUp() {
+        drawer = new CashDrawer();
+    }
+
+    /**
+     * Cleans up after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        drawer = null;
+    }
+
+    /**
+     * Tests that the fewest pieces are used when the drawer holds them.
+     */
+    @Test
+    public void testFewestPiecesFromTable() {
+        assertArrayEquals(new int[] {2, 1, 2, 0, 1, 2, 0, 1, 2, 0},
+                CashDrawer.fewestPieces(2999), "2999 should be made from 13 pieces.");
+    }
+
+    /**
+     * Tests that change respects what the drawer holds, even when the fewest pieces overall are
+     * not available.
+     */
+    @Test
+    public void testChangeFromPiecesHeld() {
+        drawer = new CashDrawer(new int[] {0, 0, 0, 0, 1, 3, 0, 0, 0, 0}, NO_LEVELS);
+        drawer.registerPayment(Amount.zero(), Amount.of(60));
+        assertEquals(5000, drawer.getTotal().toMinorUnits(), "60 should be given as three 20 notes.");
+        assertEquals(0, drawer.count().get(20), "All 20 notes should be used.");
+    }
+
+    /**
+     * Tests that the drawer is left unchanged when it can not give the change.
+     */
+    @Test
+    public void testChangeNotAvailable() {
+        drawer = new CashDrawer(new int[] {0, 0, 0, 0, 1, 0, 0, 0, 0, 0}, NO_LEVELS);
+        assertThrows(IllegalStateException.class,
+                () -> drawer.registerPayment(Amount.of(100), Amount.of(30)));
+        assertEquals(5000, drawer.getTotal().toMinorUnits(), "Nothing should be paid in.");
+        assertNull(CashDrawer.fewestPieces(30, new int[] {0, 0, 0, 0, 1, 0, 0, 0, 0, 0}),
+                "30 can not be made from a 50 note.");
+    }
+
+    /**
+     * Tests that change is not given from the pieces just paid in, and that the drawer is then
+     * left unchanged.
+     */
+    @Test
+    public void testChangeNotFromCashPaid() {
+        drawer = new CashDrawer(new int[] {0, 0, 0, 0, 0, 0, 0, 0, 0, 0}, NO_LEVELS);
+        assertThrows(IllegalStateException.class,
+                () -> drawer.registerPayment(Amount.of(150), Amount.of(50)));
+        assertEquals(0, drawer.getTotal().toMinorUnits(), "The drawer should stay empty.");
+        assertEquals(0, drawer.count().get(50), "No count should go negative.");
+    }
+
+    /**
+     * Tests that paid cash is added to the drawer and change is taken from it.
+     */
+    @Test
+    public void testPaymentAddsCash() {
+        long before = drawer.getTotal().toMinorUnits();
+        drawer.registerPayment(Amount.of(500), Amount.of(120));
+        assertEquals(before + 38000, drawer.getTotal().toMinorUnits(),
+                "The total should grow by the cost of the sale.");
+    }
+
+    /**
+     * Tests that observers are notified once when a denomination drops below its level.
+     */
+    @Test
+    public void testLowFloatAlert() {
+        int[] levels = NO_LEVELS.clone();
+        levels[5] = 2;
+        drawer = new CashDrawer(new int[] {0, 0, 0, 0, 0, 3, 0, 0, 0, 0}, levels);
+        List<Integer> alerts = new ArrayList<>();
+        drawer.addLowFloatObserver((denomination, count) -> alerts.add(denomination));
+        drawer.registerPayment(Amount.zero(), Amount.of(20));
+        assertEquals(List.of(), alerts, "Two 20 notes are not below the level.");
+        drawer.registerPayment(Amount.zero(), Amount.of(20));
+        drawer.registerPayment(Amount.zero(), Amount.of(20));
+        assertEquals(List.of(20), alerts, "The alert should be raised once.");
+    }
+}
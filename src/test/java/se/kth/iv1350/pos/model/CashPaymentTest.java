@@ -59,4 +59,27 @@ public class CashPaymentTest {
         assertEquals(0.0, cashPayment.getAmountPaid().asDouble(), 0.001,
                 "Exact payment should result in zero change.");
     }
+
+    /**
+     * Verifies that amounts are rounded half up to whole kronor.
+     */
+    @Test
+    public void testRoundToKrona() {
+        assertEquals(3100, CashPayment.roundToKrona(Amount.of(31.49)).toMinorUnits(),
+                "Below half a krona should round down.");
+        assertEquals(3200, CashPayment.roundToKrona(Amount.of(31.50)).toMinorUnits(),
+                "Half a krona should round up.");
+    }
+
+    /**
+     * Verifies that the total cost is rounded before the change is calculated.
+     */
+    @Test
+    public void testChangeOfRoundedTotal() {
+        Sale oddSale = new Sale(new CashRegister());
+        oddSale.addItem(new ItemDTO("odd", "Odd Item", "Odd price", 99.6, 0.0));
+        cashPayment.calculateTotalCost(oddSale);
+        assertEquals(5000, cashPayment.getAmountPaid().toMinorUnits(),
+                "99.60 should be rounded to 100 before the change is calculated.");
+    }
 }
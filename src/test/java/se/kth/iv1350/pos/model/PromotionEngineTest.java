@@ -0,0 +1,120 @@
+package se.kth.iv1350.pos.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import se.kth.iv1350.pos.integration.ItemDTO;
+
+/**
+ * Unit tests for the {@link PromotionEngine} class, applied to a {@link Sale}. Covers multi-buy,
+ * percent off, basket threshold and customer discounts, and how discounts follow changed lines.
+ */
+public class PromotionEngineTest {
+    private static final ItemDTO EGG = new ItemDTO("3", "Egg", "Free-range eggs", 30, 0.12);
+    private static final ItemDTO MILK = new ItemDTO("5", "Milk", "Whole milk", 15, 0.12);
+    private static final ItemDTO PHONE = new ItemDTO("4", "Phone", "Smartphone", 400, 0.25);
+    private Sale sale;
+
+    /**
+     * Sets up a new sale with a 3 for 2 on dairy, 10% off phones, 5% off sales from 500 SEK and
+     * 10% off for one customer.
+     */
+    @BeforeEach
+    public void setUp() {
+        sale = new Sale(new CashRegister());
+        sale.usePromotions(new PromotionEngine(List.of(
+                new Promotion.MultiBuy("dairy", "3 for 2 on dairy", Set.of("3", "5"), 3, 2),
+                new Promotion.PercentOff("phones", "10% off phones", Set.of("4"), 10),
+                new Promotion.BasketThreshold("basket", "5% from 500 SEK", Amount.of(500), 5),
+                new Promotion.CustomerDiscount("member", "Member discount", Set.of("c1"), 10))));
+    }
+
+    /**
+     * Tests that every third dairy item is free, the cheapest ones first, and that the discount
+     * is taken back when the quantity is lowered.
+     */
+    @Test
+    public void testMultiBuyFollowsQuantity() {
+        sale.addItem(EGG);
+        sale.addItem(EGG);
+        assertEquals(6720, sale.getTotalCost().toMinorUnits(), "Two eggs should be paid.");
+        sale.addItem(MILK);
+        assertEquals(6720, sale.getTotalCost().toMinorUnits(), "The milk should be free.");
+        assertEquals(1680, sale.getDiscount().toMinorUnits(), "The discount is the milk.");
+        sale.setLastItemQuantity(0);
+        assertEquals(6720, sale.getTotalCost().toMinorUnits(), "Removing milk ends the offer.");
+        assertEquals(0, sale.getDiscount().toMinorUnits(), "No discount should be left.");
+    }
+
+    /**
+     * Tests that a percentage off lowers the line price and the VAT of the line.
+     */
+    @Test
+    public void testPercentOffLowersVat() {
+        sale.addItem(PHONE);
+        assertEquals(45000, sale.getTotalCost().toMinorUnits(), "360 plus 25% VAT.");
+        assertEquals(9000, sale.getTotalVat().toMinorUnits(), "VAT should be on 360.");
+        assertEquals(45000, sale.toDTO().items().get(0).total().toMinorUnits(),
+                "The line total should be discounted.");
+    }
+
+    /**
+     * Tests that the basket threshold is reached after item discounts, and that the customer
+     * discount is taken off after it, with the VAT breakdown adding up to the total.
+     */
+    @Test
+    public void testBasketAndCustomerDiscounts() {
+        sale.addItem(PHONE);
+        sale.addItem(PHONE);
+        assertEquals(85500, sale.getTotalCost().toMinorUnits(), "900 minus 5%.");
+        assertEquals(76950, sale.setCustomer("c1").toMinorUnits(), "855 minus 10%.");
+        assertEquals(85500, sale.setCustomer("c2").toMinorUnits(),
+                "Another customer should not get the member discount.");
+        sale.setCustomer("c1");
+        SaleDTO dto = sale.toDTO();
+        long breakdown = 0;
+        for (VatRateTotal rate : dto.vatBreakdown()) {
+            breakdown += rate.net().toMinorUnits() + rate.vat().toMinorUnits();
+        }
+        assertEquals(dto.total().toMinorUnits(), breakdown, "The breakdown should add up.");
+        assertEquals(100000 - 76950, dto.discount().toMinorUnits(),
+                "The discount should be the full price minus the total.");
+    }
+
+    /**
+     * Tests that only the rules naming a scanned item are evaluated, and that thousands of
+     * promotions on other items leave the sale unchanged.
+     */
+    @Test
+    public void testManyPromotions() {
+        List<Promotion> promotions = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            promotions.add(new Promotion.PercentOff("p" + i, "Offer " + i, Set.of("x" + i), 50));
+        }
+        promotions.add(new Promotion.MultiBuy("eggs", "2 for 1 on eggs", Set.of("3"), 2, 1));
+        PromotionEngine engine = new PromotionEngine(promotions);
+        assertEquals(5001, engine.itemRuleCount(), "All item rules should be compiled.");
+        assertEquals(1, engine.rulesFor("3").length, "Eggs should be named by one rule.");
+        sale.usePromotions(engine);
+        sale.addItem(EGG);
+        sale.addItem(EGG);
+        sale.addItem(EGG);
+        assertEquals(6720, sale.getTotalCost().toMinorUnits(), "One of three eggs is free.");
+    }
+
+    /**
+     * Tests that a multi-buy must give something away.
+     */
+    @Test
+    public void testInvalidMultiBuy() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new Promotion.MultiBuy("bad", "3 for 3", Set.of("3"), 3, 3));
+    }
+}
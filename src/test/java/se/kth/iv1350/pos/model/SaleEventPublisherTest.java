@@ -0,0 +1,155 @@
+package se.kth.iv1350.pos.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import se.kth.iv1350.pos.integration.ItemDTO;
+
+/**
+ * Unit tests for the {@link SaleEventPublisher} class. Deliveries run on the publishing thread, so
+ * every signal has been received when a call returns.
+ */
+public class SaleEventPublisherTest {
+    private static final SaleItemDTO ITEM = new SaleItemDTO(
+            new ItemDTO("1", "Medicine", "Pain relief", 10, 0.0), 1, Amount.of(10), Amount.zero());
+    private SaleEventPublisher publisher;
+
+    /**
+     * Sets up a publisher with a log of eight events.
+     */
+    @BeforeEach
+    public void setUp() {
+        publisher = new SaleEventPublisher(8, Runnable::run);
+    }
+
+    /**
+     * Cleans up after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        publisher = null;
+    }
+
+    /**
+     * A subscriber that records what it receives and requests nothing by itself.
+     */
+    private static final class RecordingSubscriber implements Flow.Subscriber<SaleEvent> {
+        private final List<Long> sequences = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(SaleEvent event) {
+            sequences.add(event.sequence());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private void publish(int count) {
+        for (int i = 0; i < count; i++) {
+            publisher.publishItemAdded(1, ITEM);
+        }
+    }
+
+    /**
+     * Tests that events are only delivered as they are requested.
+     */
+    @Test
+    public void testDeliveryFollowsDemand() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publish(3);
+        assertTrue(subscriber.sequences.isEmpty(), "Nothing should be delivered unrequested.");
+        subscriber.subscription.request(2);
+        assertEquals(List.of(1L, 2L), subscriber.sequences, "Two events were requested.");
+        subscriber.subscription.request(5);
+        publish(1);
+        assertEquals(List.of(1L, 2L, 3L, 4L), subscriber.sequences, "Remaining demand is used.");
+    }
+
+    /**
+     * Tests that a subscriber can replay events still in the log.
+     */
+    @Test
+    public void testReplayFromSequence() {
+        publish(5);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber, SaleEventPublisher.BufferPolicy.FAIL, 8, 3);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(List.of(3L, 4L, 5L), subscriber.sequences, "Events from 3 should replay.");
+    }
+
+    /**
+     * Tests that a slow subscriber with the drop oldest policy skips to its buffer size.
+     */
+    @Test
+    public void testDropOldestSkipsAhead() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber, SaleEventPublisher.BufferPolicy.DROP_OLDEST, 2, 1);
+        publish(6);
+        subscriber.subscription.request(10);
+        assertEquals(List.of(5L, 6L), subscriber.sequences, "Only the newest two should remain.");
+    }
+
+    /**
+     * Tests that a slow subscriber with the fail policy gets an error and is cancelled.
+     */
+    @Test
+    public void testFailPolicySignalsError() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber, SaleEventPublisher.BufferPolicy.FAIL, 2, 1);
+        publish(3);
+        subscriber.subscription.request(10);
+        assertTrue(subscriber.error instanceof IllegalStateException, "An error should be sent.");
+        publish(1);
+        assertTrue(subscriber.sequences.isEmpty(), "Nothing should be delivered after failing.");
+    }
+
+    /**
+     * Tests that closing completes subscribers once they have received all events.
+     */
+    @Test
+    public void testCloseCompletes() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publish(1);
+        publisher.close();
+        assertTrue(!subscriber.completed, "Subscriber has not received all events yet.");
+        subscriber.subscription.request(1);
+        assertTrue(subscriber.completed, "Subscriber should be completed.");
+    }
+
+    /**
+     * Tests that events published after the publisher is closed are ignored.
+     */
+    @Test
+    public void testPublishAfterCloseIsIgnored() {
+        publish(1);
+        publisher.close();
+        publish(1);
+        publisher.saleCompleted(new SaleDTO(List.of(), Amount.of(10), Amount.zero()));
+        assertEquals(1, publisher.getLastSequence(), "No event should be published after close.");
+    }
+}
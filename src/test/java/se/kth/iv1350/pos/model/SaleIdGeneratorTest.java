@@ -0,0 +1,123 @@
+package se.kth.iv1350.pos.model;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link SaleIdGenerator} class.
+ */
+public class SaleIdGeneratorTest {
+    private static final long NOW = Instant.parse("2026-10-19T12:00:00Z").toEpochMilli();
+
+    /**
+     * Tests that the parts of an ID can be read back.
+     */
+    @Test
+    public void testIdParts() {
+        long id = new SaleIdGenerator(3, 17, () -> NOW).nextId();
+        assertTrue(id > 0, "IDs should be positive.");
+        assertEquals(3, SaleIdGenerator.nodeOf(id), "Node ID should be kept.");
+        assertEquals(17, SaleIdGenerator.registerOf(id), "Register ID should be kept.");
+        assertEquals(Instant.ofEpochMilli(NOW), SaleIdGenerator.timestampOf(id),
+                "Timestamp should be kept.");
+    }
+
+    /**
+     * Tests that IDs keep increasing when the sequence of a millisecond is used up and when the
+     * clock is turned back.
+     */
+    @Test
+    public void testIdsIncreaseWithoutClock() {
+        AtomicLong clock = new AtomicLong(NOW);
+        SaleIdGenerator generator = new SaleIdGenerator(0, 0, clock::get);
+        long previous = 0;
+        for (int i = 0; i < 200; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous, "IDs should increase within one millisecond.");
+            previous = id;
+        }
+        clock.set(NOW - 1000);
+        assertTrue(generator.nextId() > previous, "IDs should increase after the clock is reset.");
+    }
+
+    /**
+     * Tests that different registers never create the same ID at the same time.
+     */
+    @Test
+    public void testRegistersDoNotCollide() {
+        SaleIdGenerator first = new SaleIdGenerator(1, 1, () -> NOW);
+        SaleIdGenerator second = new SaleIdGenerator(1, 2, () -> NOW);
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add(first.nextId());
+            ids.add(second.nextId());
+        }
+        assertEquals(200, ids.size(), "All IDs should be unique.");
+    }
+
+    /**
+     * Tests that concurrent calls to one generator create unique IDs.
+     */
+    @Test
+    public void testConcurrentIdsUnique() throws Exception {
+        SaleIdGenerator generator = new SaleIdGenerator(0, 0);
+        Set<Long> ids = new HashSet<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            Callable<long[]> task = () -> {
+                long[] batch = new long[10_000];
+                for (int i = 0; i < batch.length; i++) {
+                    batch[i] = generator.nextId();
+                }
+                return batch;
+            };
+            List<Future<long[]>> batches = executor.invokeAll(Collections.nCopies(4, task));
+            for (Future<long[]> batch : batches) {
+                for (long id : batch.get()) {
+                    ids.add(id);
+                }
+            }
+        }
+        assertEquals(40_000, ids.size(), "All IDs should be unique.");
+    }
+
+    /**
+     * Tests that IDs out of range are rejected.
+     */
+    @Test
+    public void testInvalidRegisterId() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SaleIdGenerator(0, SaleIdGenerator.MAX_REGISTER_ID + 1));
+    }
+
+    /**
+     * Tests that register IDs are not reused when they run out.
+     */
+    @Test
+    public void testRegisterIdsExhausted() {
+        AtomicInteger registerIds = new AtomicInteger();
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i <= SaleIdGenerator.MAX_REGISTER_ID; i++) {
+            used.add(SaleIdGenerator.registerOf(
+                    SaleIdGenerator.forNextRegister(0, registerIds).nextId()));
+        }
+        assertEquals(SaleIdGenerator.MAX_REGISTER_ID + 1, used.size(), "All IDs should be used.");
+        assertThrows(IllegalStateException.class,
+                () -> SaleIdGenerator.forNextRegister(0, registerIds));
+        assertThrows(IllegalStateException.class,
+                () -> SaleIdGenerator.forNextRegister(0, registerIds));
+    }
+}
@@ -0,0 +1,107 @@
+package se.kth.iv1350.pos.model;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import se.kth.iv1350.pos.integration.ItemDTO;
+
+/**
+ * Unit tests for the {@link SaleLines} class. Covers merging of repeated items, insertion order,
+ * removal of the last line, growth, and minor-unit price calculations.
+ */
+public class SaleLinesTest {
+    private SaleLines lines;
+
+    /**
+     * Sets up a new SaleLines instance before each test.
+     */
+    @BeforeEach
+    public void setUp() {
+        lines = new SaleLines();
+    }
+
+    /**
+     * Cleans up after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        lines = null;
+    }
+
+    private static ItemDTO item(String id) {
+        return new ItemDTO(id, "Item " + id, "Description", 10.0, 0.25);
+    }
+
+    /**
+     * Verifies that adding the same item twice merges into one line.
+     */
+    @Test
+    public void testAddSameItemMergesLine() {
+        int first = lines.add(item("a"));
+        int second = lines.add(item("a"));
+        assertEquals(first, second, "Same item should use the same line.");
+        assertEquals(1, lines.size(), "Only one line should exist.");
+        assertEquals(2, lines.quantity(first), "Quantity should be increased.");
+    }
+
+    /**
+     * Verifies that lines of one item with different keys are kept apart and found by key.
+     */
+    @Test
+    public void testAddWithKey() {
+        int first = lines.add(item("a"), "barcode1");
+        int second = lines.add(item("a"), "barcode2");
+        assertEquals(2, lines.size(), "Each key should get its own line.");
+        assertEquals("a", lines.item(second).id(), "The line should keep the item ID.");
+        assertEquals(first, lines.find("barcode1"), "The line should be found by its key.");
+        assertEquals(-1, lines.find("a"), "The item ID is not the key of the lines.");
+        assertEquals(first, lines.add(item("a"), "barcode1"), "The same key shares a line.");
+    }
+
+    /**
+     * Verifies that many items keep their insertion order and can still be found after growing.
+     */
+    @Test
+    public void testManyItemsKeepOrder() {
+        for (int i = 0; i < 1000; i++) {
+            lines.add(item("item" + i));
+        }
+        assertEquals(1000, lines.size(), "All items should have a line.");
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("item" + i, lines.item(i).id(), "Lines should keep insertion order.");
+            assertEquals(i, lines.find("item" + i), "Every item should be found.");
+        }
+    }
+
+    /**
+     * Verifies that removing the last line removes it from the index but keeps other lines.
+     */
+    @Test
+    public void testRemoveLast() {
+        for (int i = 0; i < 20; i++) {
+            lines.add(item("item" + i));
+        }
+        for (int i = 19; i >= 10; i--) {
+            lines.removeLast();
+            assertEquals(-1, lines.find("item" + i), "Removed item should not be found.");
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, lines.find("item" + i), "Remaining items should still be found.");
+        }
+        assertEquals(10, lines.add(item("item15")), "Removed item should get a new last line.");
+    }
+
+    /**
+     * Verifies that line amounts are calculated in öre with the VAT rounded half up.
+     */
+    @Test
+    public void testLineAmounts() {
+        int line = lines.add(new ItemDTO("x", "X", "X", 0.10, 0.25));
+        lines.setQuantity(line, 3);
+        assertEquals(30, lines.lineNet(line), "Net should be unit price times quantity.");
+        assertEquals(8, lines.lineVat(line), "VAT of 7.5 öre should round up to 8 öre.");
+        assertEquals(38, lines.lineTotal(line), "Total should be net plus VAT.");
+    }
+}
@@ -0,0 +1,99 @@
+package se.kth.iv1350.pos.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import se.kth.iv1350.pos.integration.ItemDTO;
+
+/**
+ * Unit tests for the {@link SalePool} class. Covers reuse of sales and resetting their state.
+ */
+public class SalePoolTest {
+    private SalePool salePool;
+    private List<RevenueObserver> observers;
+
+    /**
+     * Sets up a new SalePool instance before each test.
+     */
+    @BeforeEach
+    public void setUp() {
+        observers = new ArrayList<>();
+        salePool = new SalePool(new CashRegister(), new SaleIdGenerator(0, 0), observers);
+    }
+
+    /**
+     * Cleans up after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        salePool = null;
+        observers = null;
+    }
+
+    /**
+     * Verifies that a released sale is reused and starts out empty and in progress.
+     */
+    @Test
+    public void testReleasedSaleIsReusedEmpty() {
+        Sale sale = salePool.acquire();
+        sale.addItem(new ItemDTO("test1", "Test Item", "Test Description", 100.0, 0.0));
+        sale.processPayment(Amount.of(100));
+        salePool.release(sale);
+
+        Sale reused = salePool.acquire();
+        assertSame(sale, reused, "The released sale should be reused.");
+        assertEquals(0.0, reused.getTotalCost().asDouble(), 0.001, "Total should be reset.");
+        assertEquals(0, reused.getItems().size(), "Items should be removed.");
+        assertNull(reused.getReceipt(), "Receipt should be removed.");
+        reused.addItem(new ItemDTO("test2", "Other Item", "Other Description", 50.0, 0.0));
+        assertEquals(50.0, reused.getTotalCost().asDouble(), 0.001,
+                "Reused sale should accept items again.");
+    }
+
+    /**
+     * Verifies that observers are attached once per acquired sale, not once per reuse.
+     */
+    @Test
+    public void testObserversAttachedOncePerSale() {
+        List<SaleDTO> completed = new ArrayList<>();
+        observers.add(completed::add);
+        Sale sale = salePool.acquire();
+        salePool.release(sale);
+        sale = salePool.acquire();
+        sale.addItem(new ItemDTO("test1", "Test Item", "Test Description", 100.0, 0.0));
+        sale.processPayment(Amount.of(100));
+        assertEquals(1, completed.size(), "Observer should be notified exactly once.");
+    }
+
+    /**
+     * Verifies that every acquired sale gets a new ID, also when the instance is reused.
+     */
+    @Test
+    public void testAcquiredSalesGetNewIds() {
+        Sale sale = salePool.acquire();
+        long firstId = sale.getId();
+        salePool.release(sale);
+        Sale reused = salePool.acquire();
+        assertTrue(reused.getId() > firstId, "A reused sale should get a new, later ID.");
+        assertEquals(reused.getId(), reused.toDTO().saleId(), "The DTO should carry the ID.");
+    }
+
+    /**
+     * Verifies that releasing the same sale twice keeps only one idle copy.
+     */
+    @Test
+    public void testDoubleReleaseKeepsOneCopy() {
+        Sale sale = salePool.acquire();
+        salePool.release(sale);
+        salePool.release(sale);
+        assertEquals(1, salePool.idleCount(), "Sale should only be pooled once.");
+    }
+}
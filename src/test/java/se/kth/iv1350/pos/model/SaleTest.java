@@ -1,7 +1,12 @@
 package se.kth.iv1350.pos.model;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.jupiter.api.AfterEach;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -129,4 +134,69 @@ public class SaleTest {
         assertEquals(0, anotherSale.getTotalCost().asDouble(), 0.001,
                 "Total should not change after adding zero quantity.");
     }
+
+    /**
+     * Verifies that a paid sale shares one DTO with its receipt, and that the DTO is not affected
+     * when the sale is reset for reuse.
+     */
+    @Test
+    public void testCompletedSaleDTOIsShared() {
+        ItemDTO testItem = new ItemDTO("test1", "Test Item", "Test Description", 100.0, 0.25);
+        sale.addItem(testItem);
+        sale.processPayment(Amount.of(200));
+        SaleDTO completed = sale.toDTO();
+        assertSame(completed, sale.toDTO(), "The completed sale DTO should be created once.");
+        assertSame(completed.items(), sale.getReceipt().toDTO().items(),
+                "Receipt should share the item list of the completed sale.");
+        sale.reset();
+        assertEquals(1, completed.items().size(), "Snapshot should keep its lines after reset.");
+        assertEquals(125.0, completed.items().get(0).total().asDouble(), 0.001,
+                "Line total should include VAT.");
+    }
+
+    /**
+     * Tests that the VAT per rate follows additions and quantity changes, and that rates whose
+     * lines are removed are left out.
+     */
+    @Test
+    public void testVatBreakdown() {
+        sale.addItem(new ItemDTO("2", "Newspaper", "Aftonbladet", 20, 0.06));
+        sale.addItem(new ItemDTO("4", "Phone", "Smartphone", 40, 0.25));
+        sale.addItem(new ItemDTO("4", "Phone", "Smartphone", 40, 0.25));
+        List<VatRateTotal> breakdown = sale.toDTO().vatBreakdown();
+        assertEquals(2, breakdown.size(), "There should be two rates.");
+        assertEquals(600, breakdown.get(0).vatRate(), "Rates should be ordered.");
+        assertEquals(2500, breakdown.get(1).vatRate(), "Second rate should be 25%.");
+        assertEquals(2000, breakdown.get(1).vat().toMinorUnits(), "25% VAT should be 20 SEK.");
+        assertEquals(8000, breakdown.get(1).net().toMinorUnits(), "25% net should be 80 SEK.");
+        sale.setLastItemQuantity(0);
+        breakdown = sale.toDTO().vatBreakdown();
+        assertEquals(1, breakdown.size(), "Removed rate should be left out.");
+        assertEquals(120, breakdown.get(0).vat().toMinorUnits(), "6% VAT should be 1.20 SEK.");
+    }
+
+    /**
+     * Verifies that a failing revenue observer does not fail the payment, and that the sale is
+     * paid so the cash can not be registered twice.
+     */
+    @Test
+    public void testFailingObserverDoesNotFailPayment() {
+        CashRegister register = new CashRegister();
+        long before = register.getDrawer().getTotal().toMinorUnits();
+        sale = new Sale(register);
+        List<Long> notified = new ArrayList<>();
+        sale.addRevenueObserver(completed -> {
+            throw new IllegalStateException("Observer closed.");
+        });
+        sale.addRevenueObserver(completed -> notified.add(completed.saleId()));
+        sale.addItem(new ItemDTO("test1", "Test Item", "Test Description", 100.0, 0.0));
+        assertEquals(0, sale.processPayment(Amount.of(100), List.of()).toMinorUnits(),
+                "The payment should succeed.");
+        assertTrue(sale.isPaid(), "The sale should be paid.");
+        assertEquals(1, notified.size(), "Later observers should still be notified.");
+        assertThrows(IllegalStateException.class,
+                () -> sale.processPayment(Amount.of(100), List.of()));
+        assertEquals(before + 10000, register.getDrawer().getTotal().toMinorUnits(),
+                "The cash should be registered once.");
+    }
 }
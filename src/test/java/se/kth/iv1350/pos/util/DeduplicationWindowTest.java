@@ -0,0 +1,83 @@
+package se.kth.iv1350.pos.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link DeduplicationWindow} class.
+ */
+public class DeduplicationWindowTest {
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+    private AtomicLong clock;
+    private DeduplicationWindow window;
+
+    /**
+     * Sets up a window of ten seconds for four keys.
+     */
+    @BeforeEach
+    public void setUp() {
+        clock = new AtomicLong();
+        window = new DeduplicationWindow(Duration.ofSeconds(10), 4, clock::get);
+    }
+
+    /**
+     * Cleans up after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        window = null;
+        clock = null;
+    }
+
+    /**
+     * Tests that a key is only marked once within the window.
+     */
+    @Test
+    public void testDuplicateRejected() {
+        assertTrue(window.markIfAbsent(7), "A new key should be marked.");
+        assertFalse(window.markIfAbsent(7), "A duplicate should be rejected.");
+        clock.set(15 * SECOND);
+        assertFalse(window.markIfAbsent(7), "The key should be kept for a whole window.");
+        assertTrue(window.markIfAbsent(8), "Other keys should still be marked.");
+    }
+
+    /**
+     * Tests that keys are forgotten after two windows.
+     */
+    @Test
+    public void testKeysExpire() {
+        window.markIfAbsent(7);
+        clock.set(25 * SECOND);
+        assertTrue(window.markIfAbsent(7), "The key should have expired.");
+    }
+
+    /**
+     * Tests that a forgotten key can be marked again.
+     */
+    @Test
+    public void testForget() {
+        window.markIfAbsent(7);
+        window.forget(7);
+        assertFalse(window.contains(7), "The key should be forgotten.");
+        assertTrue(window.markIfAbsent(7), "The key should be marked again.");
+    }
+
+    /**
+     * Tests that the oldest keys are forgotten when more keys than the capacity are marked.
+     */
+    @Test
+    public void testCapacityBoundsMemory() {
+        for (long key = 1; key <= 8; key++) {
+            assertTrue(window.markIfAbsent(key), "Every key is new.");
+        }
+        assertTrue(window.contains(8), "The newest keys should be kept.");
+        window.markIfAbsent(9);
+        assertFalse(window.contains(1), "The oldest keys should be forgotten.");
+    }
+}
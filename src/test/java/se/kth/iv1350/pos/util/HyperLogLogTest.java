@@ -0,0 +1,66 @@
+package se.kth.iv1350.pos.util;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link HyperLogLog} class.
+ */
+public class HyperLogLogTest {
+    private HyperLogLog sketch;
+
+    /**
+     * Sets up an empty sketch before each test.
+     */
+    @BeforeEach
+    public void setUp() {
+        sketch = new HyperLogLog();
+    }
+
+    /**
+     * Cleans up after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        sketch = null;
+    }
+
+    /**
+     * Tests that repeated items are only counted once and small counts are close to exact.
+     */
+    @Test
+    public void testSmallCount() {
+        for (int i = 0; i < 3; i++) {
+            sketch.add("1");
+            sketch.add("2");
+        }
+        assertEquals(2, sketch.estimate(), "Two distinct items should be estimated exactly.");
+    }
+
+    /**
+     * Tests that a large count is estimated within a few percent.
+     */
+    @Test
+    public void testLargeCount() {
+        for (int i = 0; i < 1_000_000; i++) {
+            sketch.add("SKU-" + i);
+        }
+        assertEquals(1_000_000, sketch.estimate(), 30_000, "Estimate should be within 3%.");
+    }
+
+    /**
+     * Tests that merging counts the union of both sketches, and survives serialization.
+     */
+    @Test
+    public void testMergeAndSerialize() {
+        HyperLogLog other = new HyperLogLog();
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add("SKU-" + i);
+            other.add("SKU-" + (i + 5_000));
+        }
+        HyperLogLog merged = HyperLogLog.fromByteArray(sketch.merge(other).toByteArray());
+        assertEquals(15_000, merged.estimate(), 450, "Union should be estimated within 3%.");
+    }
+}
@@ -0,0 +1,146 @@
+package se.kth.iv1350.pos.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import se.kth.iv1350.pos.integration.ItemDTO;
+import se.kth.iv1350.pos.model.Amount;
+import se.kth.iv1350.pos.model.SaleDTO;
+import se.kth.iv1350.pos.model.SaleItemDTO;
+import se.kth.iv1350.pos.util.RevenueRollup.Resolution;
+import se.kth.iv1350.pos.util.RevenueRollup.RevenueBucket;
+
+/**
+ * Unit tests for the {@link RevenueRollup} class, using a clock controlled by the test.
+ */
+public class RevenueRollupTest {
+    private static final Instant START = Instant.parse("2024-05-01T12:00:00Z");
+    private volatile Instant now;
+    private RevenueRollup rollup;
+
+    /**
+     * Sets up a rollup with days starting at midnight UTC.
+     */
+    @BeforeEach
+    public void setUp() {
+        now = START;
+        rollup = new RevenueRollup(new Clock() {
+            @Override
+            public Instant instant() {
+                return now;
+            }
+
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+        });
+    }
+
+    /**
+     * Cleans up after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        rollup = null;
+    }
+
+    private static SaleDTO sale(double total, int units) {
+        ItemDTO item = new ItemDTO("1", "Medicine", "", total / units, 0);
+        return new SaleDTO(List.of(new SaleItemDTO(item, units, Amount.of(total), Amount.zero())),
+                Amount.of(total), Amount.zero());
+    }
+
+    /**
+     * Tests that sales are rolled up per minute, hour and day.
+     */
+    @Test
+    public void testRollupPerResolution() {
+        rollup.saleCompleted(sale(100, 2));
+        now = START.plus(Duration.ofMinutes(1));
+        rollup.saleCompleted(sale(50, 4));
+        List<RevenueBucket> minutes =
+                rollup.buckets(Resolution.MINUTE, START, START.plus(Duration.ofMinutes(2)));
+        assertEquals(2, minutes.size(), "There should be two minute buckets.");
+        assertEquals(10000, minutes.get(0).revenue().toMinorUnits(), "First minute revenue.");
+        assertEquals(START, minutes.get(0).start(), "First minute should start at noon.");
+        RevenueBucket today = rollup.current(Resolution.DAY);
+        assertEquals(Instant.parse("2024-05-01T00:00:00Z"), today.start(), "Day should start.");
+        assertEquals(2, today.saleCount(), "Two sales today.");
+        assertEquals(3.0, today.averageBasketSize(), 0.001, "Average basket should be 3 units.");
+        assertEquals(7500, today.averageSaleValue().toMinorUnits(), "Average sale 75 SEK.");
+        assertEquals(15000, rollup.current(Resolution.HOUR).revenue().toMinorUnits(),
+                "Hour revenue should include both sales.");
+    }
+
+    /**
+     * Tests that buckets older than the ring are reported empty once overwritten.
+     */
+    @Test
+    public void testOldBucketsOverwritten() {
+        rollup.saleCompleted(sale(100, 1));
+        now = START.plus(Duration.ofDays(1));
+        rollup.saleCompleted(sale(30, 1));
+        RevenueBucket old = rollup.total(Resolution.MINUTE, START, START.plusSeconds(60));
+        assertEquals(0, old.saleCount(), "Overwritten minute should be empty.");
+        assertEquals(13000, rollup.total(Resolution.DAY, START, now.plusSeconds(1)).revenue()
+                .toMinorUnits(), "Day buckets should still hold both sales.");
+    }
+
+    /**
+     * Tests that concurrent writers lose no sales, and that readers never see half a sale.
+     */
+    @Test
+    public void testConcurrentWritesAreConsistent() throws Exception {
+        int writers = 8;
+        int salesPerWriter = 20_000;
+        AtomicBoolean done = new AtomicBoolean();
+        try (ExecutorService executor = Executors.newFixedThreadPool(writers + 1)) {
+            Future<Integer> reader = executor.submit(() -> {
+                int inconsistent = 0;
+                while (!done.get()) {
+                    RevenueBucket bucket = rollup.current(Resolution.MINUTE);
+                    if (bucket.revenue().toMinorUnits() != bucket.saleCount() * 100
+                            || bucket.unitCount() != bucket.saleCount()) {
+                        inconsistent++;
+                    }
+                }
+                return inconsistent;
+            });
+            List<Future<?>> writing = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                writing.add(executor.submit(() -> {
+                    for (int i = 0; i < salesPerWriter; i++) {
+                        rollup.saleCompleted(sale(1, 1));
+                    }
+                }));
+            }
+            for (Future<?> writer : writing) {
+                writer.get();
+            }
+            done.set(true);
+            assertEquals(0, reader.get(), "Readers should only see whole sales.");
+        }
+        assertEquals(writers * salesPerWriter, rollup.current(Resolution.MINUTE).saleCount(),
+                "No sale should be lost.");
+    }
+}
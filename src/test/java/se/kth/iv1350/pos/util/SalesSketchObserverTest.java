@@ -0,0 +1,97 @@
+package se.kth.iv1350.pos.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import se.kth.iv1350.pos.integration.ItemDTO;
+import se.kth.iv1350.pos.model.Amount;
+import se.kth.iv1350.pos.model.SaleDTO;
+import se.kth.iv1350.pos.model.SaleItemDTO;
+
+/**
+ * Unit tests for the {@link SalesSketchObserver} class, using a clock controlled by the test.
+ */
+public class SalesSketchObserverTest {
+    private static final Instant START = Instant.parse("2024-05-01T12:00:00Z");
+    private Instant now;
+    private SalesSketchObserver observer;
+
+    /**
+     * Sets up an observer keeping ten minutes of top items.
+     */
+    @BeforeEach
+    public void setUp() {
+        now = START;
+        Clock clock = new Clock() {
+            @Override
+            public Instant instant() {
+                return now;
+            }
+
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+        };
+        observer = new SalesSketchObserver(clock, 100, Duration.ofMinutes(10));
+    }
+
+    /**
+     * Cleans up after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        observer = null;
+    }
+
+    private static SaleDTO sale(String itemID, int quantity) {
+        ItemDTO item = new ItemDTO(itemID, "Item " + itemID, "", 10, 0.25);
+        return new SaleDTO(List.of(new SaleItemDTO(item, quantity, Amount.zero(), Amount.zero())),
+                Amount.zero(), Amount.zero());
+    }
+
+    /**
+     * Tests that top items only include sales within the requested period.
+     */
+    @Test
+    public void testTopItemsPerPeriod() {
+        observer.saleCompleted(sale("1", 5));
+        now = START.plus(Duration.ofMinutes(3));
+        observer.saleCompleted(sale("2", 2));
+        observer.saleCompleted(sale("2", 2));
+        assertEquals("1", observer.topItems(1, Duration.ofMinutes(5)).get(0).item(),
+                "Item 1 should lead the last five minutes.");
+        assertEquals("2", observer.topItems(1, Duration.ofMinutes(1)).get(0).item(),
+                "Item 2 should lead the last minute.");
+        now = START.plus(Duration.ofMinutes(14));
+        assertEquals(0, observer.topItems(5, Duration.ofHours(1)).size(),
+                "Sales older than the retention time should be dropped.");
+    }
+
+    /**
+     * Tests that distinct items are counted per day.
+     */
+    @Test
+    public void testDistinctItemsPerDay() {
+        observer.saleCompleted(sale("1", 1));
+        observer.saleCompleted(sale("2", 1));
+        observer.saleCompleted(sale("1", 1));
+        assertEquals(2, observer.distinctItemsToday(), "Two distinct items were sold today.");
+        now = START.plus(Duration.ofDays(1));
+        assertEquals(0, observer.distinctItemsToday(), "Nothing was sold the next day.");
+    }
+}
@@ -0,0 +1,83 @@
+package se.kth.iv1350.pos.util;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link SpaceSavingSketch} class.
+ */
+public class SpaceSavingSketchTest {
+    private SpaceSavingSketch sketch;
+
+    /**
+     * Sets up an empty sketch before each test.
+     */
+    @BeforeEach
+    public void setUp() {
+        sketch = new SpaceSavingSketch(10);
+    }
+
+    /**
+     * Cleans up after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        sketch = null;
+    }
+
+    /**
+     * Tests that items are counted exactly while there are free counters.
+     */
+    @Test
+    public void testExactWhileNotFull() {
+        sketch.add("a", 3);
+        sketch.add("b", 5);
+        sketch.add("a", 4);
+        List<SpaceSavingSketch.Counter> top = sketch.top(5);
+        assertEquals(List.of(new SpaceSavingSketch.Counter("a", 7, 0),
+                new SpaceSavingSketch.Counter("b", 5, 0)), top, "Counts should be exact.");
+    }
+
+    /**
+     * Tests that heavy hitters are found in a long stream of rare items.
+     */
+    @Test
+    public void testFindsHeavyHitters() {
+        sketch = new SpaceSavingSketch(50);
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add("rare" + i, 1);
+            if (i % 10 == 0) {
+                sketch.add("hot", 1);
+            }
+            if (i % 20 == 0) {
+                sketch.add("warm", 1);
+            }
+        }
+        List<SpaceSavingSketch.Counter> top = sketch.top(2);
+        assertEquals("hot", top.get(0).item(), "Most frequent item should be first.");
+        assertEquals("warm", top.get(1).item(), "Second most frequent item should be second.");
+        assertTrue(top.get(0).count() - top.get(0).error() <= 1000, "Lower bound should hold.");
+        assertTrue(top.get(0).count() >= 1000, "Upper bound should hold.");
+    }
+
+    /**
+     * Tests that merged sketches count the items of both, and survive serialization.
+     */
+    @Test
+    public void testMergeAndSerialize() {
+        SpaceSavingSketch other = new SpaceSavingSketch(10);
+        sketch.add("a", 3);
+        other.add("a", 2);
+        other.add("b", 4);
+        SpaceSavingSketch merged = SpaceSavingSketch.fromByteArray(sketch.merge(other)
+                .toByteArray());
+        assertEquals(List.of(new SpaceSavingSketch.Counter("a", 5, 0),
+                new SpaceSavingSketch.Counter("b", 4, 0)), merged.top(10),
+                "Merged counts should be summed.");
+    }
+}
@@ -0,0 +1,104 @@
+package se.kth.iv1350.pos.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import se.kth.iv1350.pos.model.Amount;
+import se.kth.iv1350.pos.model.SaleDTO;
+import se.kth.iv1350.pos.model.VatRateTotal;
+
+/**
+ * Unit tests for the {@link VatAggregator} class.
+ */
+public class VatAggregatorTest {
+    private static final Instant NOON = Instant.parse("2024-05-01T12:00:00Z");
+    private Instant now;
+    private VatAggregator aggregator;
+
+    /**
+     * Sets up an aggregator with a clock controlled by the test.
+     */
+    @BeforeEach
+    public void setUp() {
+        now = NOON;
+        aggregator = new VatAggregator(new Clock() {
+            @Override
+            public Instant instant() {
+                return now;
+            }
+
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+        });
+    }
+
+    /**
+     * Cleans up after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        aggregator = null;
+    }
+
+    private static SaleDTO sale(VatRateTotal... rates) {
+        return new SaleDTO(List.of(), Amount.zero(), Amount.zero(), List.of(rates));
+    }
+
+    private static VatRateTotal rate(int vatRate, double net, double vat) {
+        return new VatRateTotal(vatRate, Amount.of(net), Amount.of(vat));
+    }
+
+    private static void assertReport(List<VatRateTotal> report, long... rateNetVat) {
+        assertEquals(rateNetVat.length / 3, report.size(), "Report should have one row per rate.");
+        for (int i = 0; i < report.size(); i++) {
+            VatRateTotal row = report.get(i);
+            assertEquals(rateNetVat[i * 3], row.vatRate(), "Rate should match.");
+            assertEquals(rateNetVat[i * 3 + 1], row.net().toMinorUnits(), "Net should match.");
+            assertEquals(rateNetVat[i * 3 + 2], row.vat().toMinorUnits(), "VAT should match.");
+        }
+    }
+
+    /**
+     * Tests that sales are summed per VAT rate, ordered by rate.
+     */
+    @Test
+    public void testReportSumsPerRate() {
+        aggregator.saleCompleted(sale(rate(600, 20, 1.2), rate(2500, 40, 10)));
+        aggregator.saleCompleted(sale(rate(2500, 40, 10)));
+        List<VatRateTotal> report = aggregator.report(NOON, NOON.plus(Duration.ofHours(1)));
+        assertReport(report, 600, 2000, 120, 2500, 8000, 2000);
+    }
+
+    /**
+     * Tests that a report only includes the hours in its period, and that discarded hours are not
+     * reported.
+     */
+    @Test
+    public void testReportCoversPeriodOnly() {
+        aggregator.saleCompleted(sale(rate(1200, 30, 3.6)));
+        now = NOON.plus(Duration.ofMinutes(90));
+        aggregator.saleCompleted(sale(rate(1200, 30, 3.6)));
+        assertReport(aggregator.report(NOON.plus(Duration.ofHours(1)), now), 1200, 3000, 360);
+        assertReport(aggregator.report(NOON, now), 1200, 6000, 720);
+        aggregator.discardBefore(now);
+        assertTrue(aggregator.report(NOON, NOON.plus(Duration.ofMinutes(30))).isEmpty(),
+                "Discarded hours should not be reported.");
+    }
+}
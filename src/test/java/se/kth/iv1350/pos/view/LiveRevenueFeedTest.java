@@ -0,0 +1,134 @@
+package se.kth.iv1350.pos.view;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import se.kth.iv1350.pos.model.Amount;
+import se.kth.iv1350.pos.model.SaleDTO;
+
+/**
+ * Unit tests for the {@link LiveRevenueFeed} class, using a real HTTP connection.
+ */
+public class LiveRevenueFeedTest {
+    private LiveRevenueFeed feed;
+    private HttpClient client;
+
+    /**
+     * Starts a feed on a free port before each test.
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+        feed = LiveRevenueFeed.start(0, Duration.ofMillis(50));
+        client = HttpClient.newHttpClient();
+    }
+
+    /**
+     * Stops the feed after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        feed.close();
+        client.close();
+    }
+
+    private BufferedReader connect() throws Exception {
+        HttpRequest request = HttpRequest
+                .newBuilder(URI.create("http://localhost:" + feed.getPort() + "/revenue")).build();
+        HttpResponse<InputStream> response =
+                client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals("text/event-stream",
+                response.headers().firstValue("Content-Type").orElse(""),
+                "Response should be an event stream.");
+        return new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8));
+    }
+
+    private static String nextData(BufferedReader events) throws Exception {
+        String line;
+        while ((line = events.readLine()) != null) {
+            if (line.startsWith("data: ")) {
+                return line.substring("data: ".length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tests that a viewer first gets the current state, and that a burst of sales is coalesced
+     * into few updates.
+     */
+    @Test
+    public void testBurstOfSalesIsCoalesced() {
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            BufferedReader events = connect();
+            assertEquals("{\"totalRevenue\":0.00,\"saleCount\":0,\"salesLastMinute\":0}",
+                    nextData(events), "First update should be the current state.");
+            SaleDTO sale = new SaleDTO(List.of(), Amount.of(12.5), Amount.zero());
+            for (int i = 0; i < 100; i++) {
+                feed.saleCompleted(sale);
+            }
+            int updates = 0;
+            String update;
+            do {
+                update = nextData(events);
+                updates++;
+            } while (!update.contains("\"saleCount\":100,"));
+            assertEquals("{\"totalRevenue\":1250.00,\"saleCount\":100,\"salesLastMinute\":100}",
+                    update, "Last update should cover the whole burst.");
+            assertTrue(updates <= 2, "A burst should not give one update per sale.");
+            assertEquals(1, feed.getViewerCount(), "There should be one viewer.");
+        });
+    }
+
+    /**
+     * Tests that an update is sent when sales leave the window, although there are no new sales.
+     */
+    @Test
+    public void testUpdateWhenSalesLeaveWindow() throws Exception {
+        feed.close();
+        feed = LiveRevenueFeed.start(0, Duration.ofMillis(50), Duration.ofMillis(200),
+                Duration.ofMinutes(1));
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            BufferedReader events = connect();
+            nextData(events);
+            feed.saleCompleted(new SaleDTO(List.of(), Amount.of(10), Amount.zero()));
+            assertEquals("{\"totalRevenue\":10.00,\"saleCount\":1,\"salesLastMinute\":1}",
+                    nextData(events), "The sale should be pushed.");
+            assertEquals("{\"totalRevenue\":10.00,\"saleCount\":1,\"salesLastMinute\":0}",
+                    nextData(events), "The sale should leave the window.");
+        });
+    }
+
+    /**
+     * Tests that an idle feed sends heartbeats.
+     */
+    @Test
+    public void testHeartbeatWhileIdle() throws Exception {
+        feed.close();
+        feed = LiveRevenueFeed.start(0, Duration.ofMillis(50), Duration.ofMinutes(1),
+                Duration.ofMillis(100));
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            BufferedReader events = connect();
+            nextData(events);
+            String line;
+            do {
+                line = events.readLine();
+            } while (line != null && line.isEmpty());
+            assertEquals(": heartbeat", line, "An idle feed should send a heartbeat.");
+        });
+    }
+}